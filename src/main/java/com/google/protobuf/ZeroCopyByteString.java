@@ -0,0 +1,40 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protobuf;
+
+/**
+ * Wraps byte arrays in a {@link ByteString} without copying them.
+ * <p>
+ * protobuf-lite 3.0 has no public API for this (UnsafeByteOperations came
+ * later), so this class lives in the protobuf package to reach the
+ * package-private {@link ByteString#wrap} factories. The caller must not
+ * modify the array after wrapping it.
+ */
+public final class ZeroCopyByteString {
+  private ZeroCopyByteString() {
+  }
+
+  /** Wraps the given array without copying it. */
+  public static ByteString wrap(byte[] bytes) {
+    return ByteString.wrap(bytes);
+  }
+
+  /** Wraps the given slice of the array without copying it. */
+  public static ByteString wrap(byte[] bytes, int offset, int length) {
+    return ByteString.wrap(bytes, offset, length);
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The endpoints of the RetroStore API.
+ */
+enum ApiEndpoint {
+  GET_APP("getApp"),
+  LIST_APPS("listApps"),
+  LIST_APPS_NANO("listAppsNano"),
+  FETCH_MEDIA_IMAGES("fetchMediaImages"),
+  FETCH_MEDIA_IMAGE_REFS("fetchMediaImageRefs"),
+  FETCH_MEDIA_IMAGE_REGION("fetchMediaImageRegion"),
+  UPLOAD_STATE("uploadState"),
+  DOWNLOAD_STATE("downloadState"),
+  DOWNLOAD_STATE_MEMORY_REGION("downloadStateMemoryRegion");
+
+  /** The name of the endpoint as used in the URL. */
+  final String name;
+
+  ApiEndpoint(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Resolves the URLs of all endpoints.
+   *
+   * @param serverUrl the server URL with a '%s' placeholder for the endpoint name.
+   * @throws IllegalArgumentException if the resulting URLs are malformed.
+   */
+  static Map<ApiEndpoint, URL> resolveAll(String serverUrl) {
+    Map<ApiEndpoint, URL> urls = new EnumMap<>(ApiEndpoint.class);
+    for (ApiEndpoint endpoint : values()) {
+      try {
+        urls.put(endpoint, new URL(String.format(serverUrl, endpoint.name)));
+      } catch (MalformedURLException e) {
+        throw new IllegalArgumentException("Invalid server URL: " + serverUrl, e);
+      }
+    }
+    return urls;
+  }
+}
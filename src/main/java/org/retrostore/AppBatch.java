@@ -0,0 +1,66 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore;
+
+import com.google.common.collect.ForwardingMap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.retrostore.client.common.proto.App;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The result of {@link RetrostoreClient#getApps(java.util.Collection)}: an
+ * immutable map from app ID to the apps that were found, in the order the IDs
+ * were given.
+ * <p>
+ * IDs that the server does not know are reported by {@link #getMissingIds()},
+ * IDs whose request failed by {@link #getFailures()}. Neither are keys of the
+ * map.
+ */
+public final class AppBatch extends ForwardingMap<String, App> {
+  private final ImmutableMap<String, App> mApps;
+  private final ImmutableSet<String> mMissingIds;
+  private final ImmutableMap<String, ApiException> mFailures;
+
+  AppBatch(Map<String, App> apps, Set<String> missingIds, Map<String, ApiException> failures) {
+    mApps = ImmutableMap.copyOf(apps);
+    mMissingIds = ImmutableSet.copyOf(missingIds);
+    mFailures = ImmutableMap.copyOf(failures);
+  }
+
+  @Override
+  protected Map<String, App> delegate() {
+    return mApps;
+  }
+
+  /** The IDs of apps that do not exist. */
+  public Set<String> getMissingIds() {
+    return mMissingIds;
+  }
+
+  /** The exceptions of the requests that failed, by app ID. */
+  public Map<String, ApiException> getFailures() {
+    return mFailures;
+  }
+
+  /** Whether every app was either found or reported missing. */
+  public boolean isComplete() {
+    return mFailures.isEmpty();
+  }
+}
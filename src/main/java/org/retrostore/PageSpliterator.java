@@ -0,0 +1,153 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A spliterator over a paged listing that fetches pages lazily.
+ * <p>
+ * The size of the listing is unknown up front, so splitting first fetches
+ * the next page to make sure the listing continues, then hands the following
+ * range of pages to the new spliterator without fetching it. The handed-off
+ * range doubles with every split, up to a limit, so that parallel streams fan
+ * the page requests out while only one page per split is fetched serially.
+ * Pages are fetched with {@link Pager#fetchPage}, so the listing ends with a
+ * short or empty page.
+ *
+ * @param <T> the type of the listed items.
+ */
+final class PageSpliterator<T> implements Spliterator<T> {
+  private static final int UNBOUNDED = Integer.MAX_VALUE;
+  private static final int MAX_SPLIT_PAGES = 64;
+
+  private final Pager.PageSource<T> mSource;
+  private final int mPageSize;
+  /** The index of the first item not fetched yet. */
+  private int mNext;
+  /** The index past the last item to fetch, or {@link #UNBOUNDED}. */
+  private int mEnd;
+  private List<T> mPage = Collections.emptyList();
+  private int mPageIndex;
+  private boolean mExhausted;
+  private int mSplitPages = 1;
+
+  private PageSpliterator(Pager.PageSource<T> source, int pageSize, int start, int end) {
+    mSource = source;
+    mPageSize = pageSize;
+    mNext = start;
+    mEnd = end;
+  }
+
+  /** Creates a spliterator over the complete listing. */
+  static <T> PageSpliterator<T> of(Pager.PageSource<T> source, int pageSize) {
+    Preconditions.checkArgument(pageSize > 0, "pageSize must be positive.");
+    return new PageSpliterator<>(source, pageSize, 0, UNBOUNDED);
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super T> action) {
+    if (mPageIndex >= mPage.size() && !fetchPage()) {
+      return false;
+    }
+    action.accept(mPage.get(mPageIndex++));
+    return true;
+  }
+
+  @Override
+  public Spliterator<T> trySplit() {
+    if (mEnd != UNBOUNDED) {
+      // Split the remaining pages in half. The buffered page stays in front.
+      int pages = (int) (((long) mEnd - mNext + mPageSize - 1) / mPageSize);
+      if (pages < 2 || mExhausted) {
+        return null;
+      }
+      return handOff(mNext + (pages / 2) * mPageSize);
+    }
+    // Make sure the listing goes on before handing off any pages.
+    if (mPageIndex >= mPage.size() && !fetchPage()) {
+      return null;
+    }
+    if (mExhausted) {
+      return null;
+    }
+    long end = (long) mNext + (long) mSplitPages * mPageSize;
+    if (end >= UNBOUNDED) {
+      return null;
+    }
+    mSplitPages = Math.min(mSplitPages * 2, MAX_SPLIT_PAGES);
+    return handOff((int) end);
+  }
+
+  /** Hands the buffered page and the pages up to `end` to a new spliterator. */
+  private PageSpliterator<T> handOff(int end) {
+    PageSpliterator<T> prefix = new PageSpliterator<>(mSource, mPageSize, mNext, end);
+    prefix.mPage = mPage;
+    prefix.mPageIndex = mPageIndex;
+    mPage = Collections.emptyList();
+    mPageIndex = 0;
+    mNext = end;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    if (mEnd == UNBOUNDED) {
+      return Long.MAX_VALUE;
+    }
+    return (mExhausted ? 0 : mEnd - mNext) + (mPage.size() - mPageIndex);
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL;
+  }
+
+  /**
+   * Fetches the next non-empty page into the buffer.
+   *
+   * @return whether there was one.
+   * @throws UncheckedApiException if a request failed.
+   */
+  private boolean fetchPage() {
+    while (!mExhausted && mNext < mEnd) {
+      int num = Math.min(mPageSize, mEnd - mNext);
+      List<T> page;
+      try {
+        page = Pager.fetchPage(mSource, mNext, num);
+      } catch (ApiException e) {
+        throw new UncheckedApiException(e);
+      }
+      mNext += num;
+      if (page.size() < num) {
+        mExhausted = true;
+      }
+      if (!page.isEmpty()) {
+        mPage = page;
+        mPageIndex = 0;
+        return true;
+      }
+    }
+    mExhausted = true;
+    return false;
+  }
+}
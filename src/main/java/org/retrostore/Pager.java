@@ -0,0 +1,121 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pages through a listing such as
+ * {@link RetrostoreClient#fetchAppsNano(int, int)}, which has
+ * no total count and reports a start past its end as a server error.
+ * <p>
+ * A listing ends with a short page. If the last page happens to be full, or
+ * a page is requested past the end, the request fails instead. To tell that
+ * apart from a real server error, the items before the failed page are
+ * requested together with its first one: if that first item does not come
+ * back, the listing has ended. Otherwise the original error is thrown, so
+ * that a failing page never silently truncates a listing.
+ * <p>
+ * A pager is not thread-safe; {@link #fetchPage} may be called concurrently.
+ *
+ * @param <T> the type of the listed items.
+ */
+public final class Pager<T> {
+  /** Fetches up to `num` items of the listing, starting at index `start`. */
+  @FunctionalInterface
+  public interface PageSource<T> {
+    List<T> fetch(int start, int num) throws ApiException;
+  }
+
+  private final PageSource<T> mSource;
+  private int mNext;
+  private boolean mEnded;
+
+  /** Creates a pager that starts at the given index. */
+  public Pager(PageSource<T> source, int start) {
+    Preconditions.checkArgument(start >= 0, "start must not be negative.");
+    mSource = Preconditions.checkNotNull(source);
+    mNext = start;
+  }
+
+  /** The index of the next item to fetch. */
+  public int getNext() {
+    return mNext;
+  }
+
+  /**
+   * Fetches the next page of at most `num` items.
+   *
+   * @return The page, or null once the listing has ended.
+   */
+  public List<T> next(int num) throws ApiException {
+    Preconditions.checkArgument(num > 0, "num must be positive.");
+    if (mEnded) {
+      return null;
+    }
+    List<T> page = fetchPage(mSource, mNext, num);
+    mNext += page.size();
+    if (page.size() < num) {
+      mEnded = true;
+    }
+    return page.isEmpty() ? null : page;
+  }
+
+  /**
+   * Fetches up to `num` items starting at `start`.
+   *
+   * @return The items, which are fewer than `num` at the end of the listing
+   * and none if `start` is past it.
+   * @throws ApiException if the request failed for any other reason.
+   */
+  public static <T> List<T> fetchPage(PageSource<T> source, int start, int num)
+      throws ApiException {
+    try {
+      return source.fetch(start, num);
+    } catch (ApiException e) {
+      // Transport errors carry their cause. The first page cannot be past the end.
+      if (e.getCause() != null || start == 0 || !isPastEnd(source, start)) {
+        throw e;
+      }
+      return Collections.emptyList();
+    }
+  }
+
+  /**
+   * Whether the listing ends at or before `start`. Walks back from `start` in
+   * growing steps until a request succeeds, then checks whether that page
+   * stops short of `start`.
+   */
+  private static <T> boolean isPastEnd(PageSource<T> source, int start) {
+    for (long step = 1; ; step *= 2) {
+      int probe = (int) Math.max(0, start - step);
+      List<T> page;
+      try {
+        page = source.fetch(probe, start - probe + 1);
+      } catch (ApiException e) {
+        if (e.getCause() != null || probe == 0) {
+          return false;
+        }
+        continue;
+      }
+      return page.size() <= start - probe;
+    }
+  }
+}
@@ -16,15 +16,23 @@
 
 package org.retrostore;
 
+import org.retrostore.buffer.SegmentedBuffer;
 import org.retrostore.client.common.proto.App;
 import org.retrostore.client.common.proto.AppNano;
 import org.retrostore.client.common.proto.MediaImage;
 import org.retrostore.client.common.proto.MediaImageRef;
 import org.retrostore.client.common.proto.MediaType;
 import org.retrostore.client.common.proto.SystemState;
+import org.retrostore.wire.AppNanoFlyweight;
+import org.retrostore.wire.SegmentedMediaImage;
 
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Common Retrostore client interface.
@@ -39,6 +47,16 @@ public interface RetrostoreClient {
    */
   App getApp(String appId) throws ApiException;
 
+  /**
+   * Fetches the apps with the given IDs concurrently. Duplicate IDs are
+   * fetched once.
+   *
+   * @return The apps found, by ID. IDs that do not exist and requests that
+   * failed are reported separately by the result.
+   * @throws ApiException if interrupted while waiting for the requests.
+   */
+  AppBatch getApps(Collection<String> appIds) throws ApiException;
+
   /**
    * Fetches a number of RetroStore app items. Blocks until results are
    * received.
@@ -57,6 +75,15 @@ public interface RetrostoreClient {
                       Set<MediaType> hasMediaTypes)
       throws ApiException;
 
+  /**
+   * Like {@link #fetchApps(int, int, String, Set)} but decodes the apps one at
+   * a time while the response is received and hands each to the consumer,
+   * instead of holding the complete response in memory.
+   */
+  void fetchAppsStreaming(int start, int num, String searchQuery,
+                          Set<MediaType> hasMediaTypes, Consumer<App> consumer)
+      throws ApiException;
+
   /**
    * Fetches a number of RetroStore app items. Blocks until results are
    * received.
@@ -75,6 +102,32 @@ public interface RetrostoreClient {
                               Set<MediaType> hasMediaTypes)
       throws ApiException;
 
+  /**
+   * Like {@link #fetchAppsNano(int, int, String, Set)} but does not
+   * materialize the apps. Instead, a flyweight reader over the raw response
+   * is returned, which is suitable for rendering lists without allocating
+   * per app.
+   */
+  AppNanoFlyweight fetchAppsNanoFlyweight(int start, int num, String searchQuery,
+                                          Set<MediaType> hasMediaTypes)
+      throws ApiException;
+
+  /**
+   * Lists all apps matching the given options as a lazy stream, which fetches
+   * pages through {@link #fetchApps(int, int, String, Set)} as it is
+   * consumed. Parallel streams fetch pages concurrently.
+   * <p>
+   * Failed requests are thrown as {@link UncheckedApiException} by the
+   * terminal operation.
+   */
+  Stream<App> streamApps(String searchQuery, Set<MediaType> hasMediaTypes);
+
+  /**
+   * Like {@link #streamApps(String, Set)} but fetches pages through
+   * {@link #fetchAppsNano(int, int, String, Set)}.
+   */
+  Stream<AppNano> streamAppsNano(String searchQuery, Set<MediaType> hasMediaTypes);
+
   /**
    * Fetches the media images for the app with the given ID.
    *
@@ -92,6 +145,23 @@ public interface RetrostoreClient {
    */
   List<MediaImage> fetchMediaImages(String appId, Set<MediaType> types) throws ApiException;
 
+  /**
+   * Like {@link #fetchMediaImages(String, Set)} but decodes the media images
+   * one at a time while the response is received and hands each to the
+   * consumer. Memory use is bounded by the largest single image.
+   */
+  void fetchMediaImagesStreaming(String appId, Set<MediaType> types,
+                                 Consumer<MediaImage> consumer) throws ApiException;
+
+  /**
+   * Like {@link #fetchMediaImages(String, Set)} but reads the data of each
+   * image into pooled chunks instead of a single array, which avoids large
+   * contiguous allocations. The caller owns the returned images and should
+   * close them to return their chunks to the pool.
+   */
+  List<SegmentedMediaImage> fetchMediaImagesSegmented(String appId, Set<MediaType> types)
+      throws ApiException;
+
   /**
    * Fetches the media image references for the app with the given ID.
    *
@@ -119,6 +189,29 @@ public interface RetrostoreClient {
    */
   byte[] fetchMediaImageRegion(MediaImageRef ref, int start, int length) throws ApiException;
 
+  /**
+   * Like {@link #fetchMediaImageRegion(MediaImageRef, int, int)} but writes the
+   * region into the given array at the given offset instead of allocating a
+   * new one.
+   */
+  void fetchMediaImageRegion(MediaImageRef ref, int start, int length,
+                             byte[] dest, int destOffset) throws ApiException;
+
+  /**
+   * Like {@link #fetchMediaImageRegion(MediaImageRef, int, int)} but writes the
+   * region into the given buffer at its position, which is then advanced by
+   * `length`. Direct buffers are supported.
+   */
+  void fetchMediaImageRegion(MediaImageRef ref, int start, int length,
+                             ByteBuffer dest) throws ApiException;
+
+  /**
+   * Like {@link #fetchMediaImageRegion(MediaImageRef, int, int)} but reads the
+   * region into pooled chunks. The caller should close the returned buffer.
+   */
+  SegmentedBuffer fetchMediaImageRegionSegmented(MediaImageRef ref, int start, int length)
+      throws ApiException;
+
   /**
    * Uploads a new system state.
    *
@@ -126,6 +219,24 @@ public interface RetrostoreClient {
    */
   long uploadState(SystemState state) throws ApiException;
 
+  /**
+   * Like {@link #uploadState(SystemState)} but encodes the state directly onto
+   * the connection using chunked transfer encoding, so that no serialized copy
+   * of the state is held in memory.
+   *
+   * @return A unique token that can be used to fetch this state later.
+   */
+  long uploadStateStreaming(SystemState state) throws ApiException;
+
+  /**
+   * Uploads a new system state that was previously serialized to the given
+   * file. The file is sent straight from disk.
+   *
+   * @param serializedState a file containing a serialized {@link SystemState}.
+   * @return A unique token that can be used to fetch this state later.
+   */
+  long uploadState(Path serializedState) throws ApiException;
+
   /**
    * Fetches a system state associated with the given token.
    *
@@ -159,4 +270,27 @@ public interface RetrostoreClient {
    * @return The memory region requested.
    */
   byte[] downloadSystemStateMemoryRegion(long token, int start, int length) throws ApiException;
+
+  /**
+   * Like {@link #downloadSystemStateMemoryRegion(long, int, int)} but writes
+   * the region into the given array at the given offset, e.g. straight into an
+   * emulator's memory array.
+   */
+  void downloadSystemStateMemoryRegion(long token, int start, int length,
+                                       byte[] dest, int destOffset) throws ApiException;
+
+  /**
+   * Like {@link #downloadSystemStateMemoryRegion(long, int, int)} but writes
+   * the region into the given buffer at its position, which is then advanced
+   * by `length`. Direct buffers are supported.
+   */
+  void downloadSystemStateMemoryRegion(long token, int start, int length,
+                                       ByteBuffer dest) throws ApiException;
+
+  /**
+   * Like {@link #downloadSystemStateMemoryRegion(long, int, int)} but reads the
+   * region into pooled chunks. The caller should close the returned buffer.
+   */
+  SegmentedBuffer downloadSystemStateMemoryRegionSegmented(long token, int start, int length)
+      throws ApiException;
 }
@@ -18,6 +18,20 @@ package org.retrostore;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.GeneratedMessageLite;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import com.google.protobuf.WireFormat;
+import org.retrostore.buffer.SegmentedBuffer;
 import org.retrostore.client.common.FetchMediaImagesApiParams;
 import org.retrostore.client.common.GetAppApiParams;
 import org.retrostore.client.common.ListAppsApiParams;
@@ -41,54 +55,342 @@ import org.retrostore.client.common.proto.MediaImageRef;
 import org.retrostore.client.common.proto.MediaType;
 import org.retrostore.client.common.proto.SystemState;
 import org.retrostore.client.common.proto.UploadSystemStateParams;
+import org.retrostore.net.ByteBudget;
+import org.retrostore.net.ResponseBody;
 import org.retrostore.net.UrlFetcher;
 import org.retrostore.net.UrlFetcherImpl;
+import org.retrostore.wire.ApiResponseStreamReader;
+import org.retrostore.wire.AppNanoFlyweight;
+import org.retrostore.wire.SegmentedMediaImage;
+import org.retrostore.wire.SegmentedMediaImageReader;
+import org.retrostore.wire.ZeroCopy;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class RetrostoreClientImpl implements RetrostoreClient {
   private static final String DEFAULT_SERVER_URL = "https://retrostore.org/api/%s";
   private static final boolean DEFAULT_GZIP_ENABLED = false;
+  private static final int UPLOAD_BUFFER_SIZE = 8 * 1024;
+  private static final int STREAM_PAGE_SIZE = 50;
+  private static final int DEFAULT_BATCH_PARALLELISM = 8;
 
   private final String mApiKey;
-  private final String mServerUrl;
+  private final Map<ApiEndpoint, URL> mEndpoints;
   private final UrlFetcher mUrlFetcher;
   private final Executor mExecutor;
+  private final boolean mAliasResponseBytes;
+  private final ByteBudget mByteBudget;
+  private final int mListWindowSize;
+  private final ExecutorService mListExecutor;
+  /** Created on the first {@link #getApps} call, as most clients never make one. */
+  private final Supplier<ExecutorService> mBatchExecutor;
+  private final Cache<String, App> mAppCache;
 
   RetrostoreClientImpl(String apiKey,
                        String serverUrl,
                        boolean enableGzip,
                        UrlFetcher urlFetcher,
                        Executor executor) {
+    this(apiKey, serverUrl, enableGzip, urlFetcher, executor, false, null, 0, null,
+        DEFAULT_BATCH_PARALLELISM, null);
+  }
+
+  private RetrostoreClientImpl(String apiKey,
+                               String serverUrl,
+                               boolean enableGzip,
+                               UrlFetcher urlFetcher,
+                               Executor executor,
+                               boolean aliasResponseBytes,
+                               ByteBudget byteBudget,
+                               int listWindowSize,
+                               ExecutorService listExecutor,
+                               int batchParallelism,
+                               Cache<String, App> appCache) {
     mApiKey = apiKey;
-    mServerUrl = serverUrl;
+    mEndpoints = ApiEndpoint.resolveAll(serverUrl);
     mUrlFetcher = urlFetcher;
     mExecutor = executor;
+    mAliasResponseBytes = aliasResponseBytes;
+    mByteBudget = byteBudget;
+    mListWindowSize = listWindowSize;
+    mListExecutor = listExecutor;
+    mBatchExecutor = Suppliers.memoize(() -> newBatchExecutor(batchParallelism));
+    mAppCache = appCache;
+  }
+
+  private static ExecutorService newBatchExecutor(int parallelism) {
+    return Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("retrostore-batch-%d")
+        .build());
   }
 
   public static RetrostoreClientImpl getDefault(String apiKey) {
-    return new RetrostoreClientImpl(apiKey, DEFAULT_SERVER_URL, DEFAULT_GZIP_ENABLED, new
-        UrlFetcherImpl(), Executors.newSingleThreadExecutor());
+    return newBuilder(apiKey).build();
   }
 
+  /**
+   * Creates a client for the given server.
+   *
+   * @throws IllegalArgumentException if the server URL is malformed.
+   */
   @SuppressWarnings("WeakerAccess") // This is the public API.
   public static RetrostoreClientImpl get(String apiKey, String serverUrl, boolean enableGzip) {
     // Use default URL fetcher and executor.
-    return new RetrostoreClientImpl(apiKey, serverUrl, enableGzip, new UrlFetcherImpl(),
-        Executors.newSingleThreadExecutor());
+    return newBuilder(apiKey).setServerUrl(serverUrl).setGzipEnabled(enableGzip).build();
+  }
+
+  /** Creates a builder for a client with non-default options. */
+  public static Builder newBuilder(String apiKey) {
+    return new Builder(apiKey);
+  }
+
+  /** Builds {@link RetrostoreClientImpl} instances. */
+  public static final class Builder {
+    private final String mApiKey;
+    private String mServerUrl = DEFAULT_SERVER_URL;
+    private boolean mGzipEnabled = DEFAULT_GZIP_ENABLED;
+    private UrlFetcher mUrlFetcher;
+    private Executor mExecutor;
+    private boolean mAliasResponseBytes;
+    private ByteBudget mByteBudget;
+    private int mListWindowSize;
+    private int mListParallelism;
+    private int mBatchParallelism = DEFAULT_BATCH_PARALLELISM;
+    private int mAppCacheSize;
+
+    private Builder(String apiKey) {
+      mApiKey = apiKey;
+    }
+
+    /**
+     * The server URL, with a '%s' placeholder for the API endpoint name.
+     * Endpoint URLs are resolved once when the client is built, so a
+     * malformed URL makes {@link #build()} fail instead of every request.
+     */
+    public Builder setServerUrl(String serverUrl) {
+      mServerUrl = Preconditions.checkNotNull(serverUrl);
+      return this;
+    }
+
+    public Builder setGzipEnabled(boolean gzipEnabled) {
+      mGzipEnabled = gzipEnabled;
+      return this;
+    }
+
+    /** The URL fetcher to use. Defaults to {@link UrlFetcherImpl}. */
+    public Builder setUrlFetcher(UrlFetcher urlFetcher) {
+      mUrlFetcher = Preconditions.checkNotNull(urlFetcher);
+      return this;
+    }
+
+    public Builder setExecutor(Executor executor) {
+      mExecutor = Preconditions.checkNotNull(executor);
+      return this;
+    }
+
+    /**
+     * Whether the bytes fields of parsed media images and system states should
+     * alias the response bytes instead of being copied out of them. This saves
+     * a copy of every image, but a single retained image keeps its complete
+     * response reachable.
+     */
+    public Builder setAliasResponseBytes(boolean aliasResponseBytes) {
+      mAliasResponseBytes = aliasResponseBytes;
+      return this;
+    }
+
+    /**
+     * Limits the payload bytes that may be in flight at the same time across all
+     * downloads of this client. Region downloads are charged their requested
+     * length by every overload, including those reading into the caller's
+     * arrays and buffers. Other responses are charged by the URL fetcher: their
+     * Content-Length, or their size so far as they grow if there is none. The
+     * default fetcher shares this budget, a custom one needs to be given the
+     * same budget. Requests larger than the budget fail right away.
+     */
+    public Builder setByteBudget(ByteBudget byteBudget) {
+      mByteBudget = Preconditions.checkNotNull(byteBudget);
+      return this;
+    }
+
+    /**
+     * Splits listings of more than `windowSize` apps into windows of that size,
+     * which are requested concurrently, at most `parallelism` at a time, and
+     * merged in order. This applies to {@link #fetchApps} and
+     * {@link #fetchAppsNano}, not to the streaming and flyweight variants.
+     */
+    public Builder setListSplitting(int windowSize, int parallelism) {
+      Preconditions.checkArgument(windowSize > 0, "windowSize must be positive.");
+      Preconditions.checkArgument(parallelism > 0, "parallelism must be positive.");
+      mListWindowSize = windowSize;
+      mListParallelism = parallelism;
+      return this;
+    }
+
+    /** The maximum number of concurrent requests made by {@link #getApps}. */
+    public Builder setBatchParallelism(int batchParallelism) {
+      Preconditions.checkArgument(batchParallelism > 0, "batchParallelism must be positive.");
+      mBatchParallelism = batchParallelism;
+      return this;
+    }
+
+    /**
+     * Keeps up to the given number of apps fetched by {@link #getApp} and
+     * {@link #getApps} in memory and serves them from there. Apps that do not
+     * exist are not cached.
+     */
+    public Builder setAppCacheSize(int appCacheSize) {
+      Preconditions.checkArgument(appCacheSize > 0, "appCacheSize must be positive.");
+      mAppCacheSize = appCacheSize;
+      return this;
+    }
+
+    /** @throws IllegalArgumentException if the server URL is malformed. */
+    public RetrostoreClientImpl build() {
+      ExecutorService listExecutor = mListWindowSize > 0
+          ? Executors.newFixedThreadPool(mListParallelism, new ThreadFactoryBuilder()
+              .setDaemon(true)
+              .setNameFormat("retrostore-list-%d")
+              .build())
+          : null;
+      return new RetrostoreClientImpl(
+          mApiKey,
+          mServerUrl,
+          mGzipEnabled,
+          mUrlFetcher != null
+              ? mUrlFetcher
+              : new UrlFetcherImpl(UrlFetcherImpl.DEFAULT_SPILL_THRESHOLD, null, mByteBudget),
+          mExecutor != null ? mExecutor : Executors.newSingleThreadExecutor(),
+          mAliasResponseBytes,
+          mByteBudget,
+          mListWindowSize,
+          listExecutor,
+          mBatchParallelism,
+          mAppCacheSize > 0
+              ? CacheBuilder.newBuilder().maximumSize(mAppCacheSize).<String, App>build()
+              : null);
+    }
   }
 
   @Override
   public App getApp(String appId) throws ApiException {
     Preconditions.checkArgument(!Strings.isNullOrEmpty(appId), "appId missing.");
-    return getAppInternal(GetAppParams.newBuilder().setAppId(appId).build());
+    App app = mAppCache != null ? mAppCache.getIfPresent(appId) : null;
+    if (app != null) {
+      return app;
+    }
+    app = getAppInternal(GetAppParams.newBuilder().setAppId(appId).build());
+    if (app != null && mAppCache != null) {
+      mAppCache.put(appId, app);
+    }
+    return app;
+  }
+
+  @Override
+  public AppBatch getApps(Collection<String> appIds) throws ApiException {
+    Set<String> ids = new LinkedHashSet<>(appIds);
+    // Validate all IDs first, so that an invalid one does not leave earlier requests running.
+    for (String id : ids) {
+      Preconditions.checkArgument(!Strings.isNullOrEmpty(id), "appId missing.");
+    }
+    Map<String, CompletableFuture<App>> requests = new LinkedHashMap<>();
+    for (String id : ids) {
+      App cached = mAppCache != null ? mAppCache.getIfPresent(id) : null;
+      requests.put(id, cached != null
+          ? CompletableFuture.completedFuture(cached)
+          : CompletableFuture.supplyAsync(() -> {
+            try {
+              return getApp(id);
+            } catch (ApiException e) {
+              throw new CompletionException(e);
+            }
+          }, mBatchExecutor.get()));
+    }
+
+    Map<String, App> apps = new LinkedHashMap<>();
+    Set<String> missingIds = new LinkedHashSet<>();
+    Map<String, ApiException> failures = new LinkedHashMap<>();
+    try {
+      for (Map.Entry<String, CompletableFuture<App>> request : requests.entrySet()) {
+        try {
+          App app = request.getValue().get();
+          if (app != null) {
+            apps.put(request.getKey(), app);
+          } else {
+            missingIds.add(request.getKey());
+          }
+        } catch (ExecutionException e) {
+          failures.put(request.getKey(), e.getCause() instanceof ApiException
+              ? (ApiException) e.getCause()
+              : new ApiException("Fetching app failed.", e.getCause()));
+        }
+      }
+    } catch (InterruptedException e) {
+      requests.values().forEach(r -> r.cancel(true));
+      Thread.currentThread().interrupt();
+      throw new ApiException("Interrupted while fetching apps.", e);
+    }
+    return new AppBatch(apps, missingIds, failures);
+  }
+
+  /**
+   * Reads a region response of the given length straight from the connection
+   * into pooled chunks.
+   */
+  private SegmentedBuffer fetchRegionSegmented(URL url, GeneratedMessageLite<?, ?> params,
+                                               int length) throws ApiException {
+    Preconditions.checkArgument(length >= 0, "length must not be negative.");
+    acquireBudget(length);
+    SegmentedBuffer.Builder builder = SegmentedBuffer.newBuilder();
+    try (InputStream in = mUrlFetcher.fetchUrlAsStream(url, params)) {
+      builder.readFrom(in, length);
+      if (in.read() >= 0) {
+        throw new ApiException(String.format("Length received exceeds " +
+            "length requested (%d)", length));
+      }
+      return builder.build();
+    } catch (EOFException e) {
+      builder.discard();
+      throw new ApiException(String.format("Length received (%d) does not " +
+          "match length requested (%d)", builder.size(), length), e);
+    } catch (IOException e) {
+      builder.discard();
+      throw new ApiException("Unable to make request to server.", e);
+    } catch (ApiException | RuntimeException e) {
+      builder.discard();
+      throw e;
+    } finally {
+      releaseBudget(length);
+    }
   }
 
   /** Note: Testing legacy JSON code path for older clients. */
@@ -99,9 +401,9 @@ public class RetrostoreClientImpl implements RetrostoreClient {
   }
 
   private App getAppInternal(Object params) throws ApiException {
-    String url = String.format(mServerUrl, "getApp");
+    URL url = mEndpoints.get(ApiEndpoint.GET_APP);
     try {
-      byte[] content = mUrlFetcher.fetchUrl(url, params);
+      byte[] content = fetchUrl(url, params);
       ApiResponseApps apiResponse = ApiResponseApps.parseFrom(content);
 
       if (!apiResponse.getSuccess()) {
@@ -120,7 +422,8 @@ public class RetrostoreClientImpl implements RetrostoreClient {
 
   @Override
   public List<App> fetchApps(int start, int num) throws ApiException {
-    return fetchAppsInternal(ListAppsParams.newBuilder().setStart(start).setNum(num).build());
+    return fetchSplit(ListAppsParams.newBuilder().setStart(start).setNum(num).build(),
+        this::fetchAppsInternal);
   }
 
   /** Note: Testing legacy JSON code path for older clients. */
@@ -136,13 +439,37 @@ public class RetrostoreClientImpl implements RetrostoreClient {
       hasMediaTypes = new HashSet<>();
     }
 
-    return fetchAppsInternal(
+    return fetchSplit(
         ListAppsParams.newBuilder()
             .setStart(start)
             .setNum(num)
             .setQuery(searchQuery)
             .setTrs80(ListAppsParams.Trs80Params.newBuilder().addAllMediaTypes(hasMediaTypes))
-            .build());
+            .build(),
+        this::fetchAppsInternal);
+  }
+
+  @Override
+  public void fetchAppsStreaming(int start, int num, String searchQuery,
+                                 Set<MediaType> hasMediaTypes, Consumer<App> consumer)
+      throws ApiException {
+    if (hasMediaTypes == null) {
+      hasMediaTypes = new HashSet<>();
+    }
+    ListAppsParams params = ListAppsParams.newBuilder()
+        .setStart(start)
+        .setNum(num)
+        .setQuery(searchQuery)
+        .setTrs80(ListAppsParams.Trs80Params.newBuilder().addAllMediaTypes(hasMediaTypes))
+        .build();
+    URL url = mEndpoints.get(ApiEndpoint.LIST_APPS);
+
+    try (ApiResponseStreamReader<App> apiResponse =
+             ApiResponseStreamReader.forApps(mUrlFetcher.fetchUrlAsStream(url, params))) {
+      readStreaming(apiResponse, consumer);
+    } catch (IOException e) {
+      throw new ApiException("Unable to make request to server.", e);
+    }
   }
 
   @Override
@@ -151,7 +478,7 @@ public class RetrostoreClientImpl implements RetrostoreClient {
         .setStart(start)
         .setNum(num)
         .build();
-    return fetchAppsNanoInternal(params);
+    return fetchSplit(params, this::fetchAppsNanoInternal);
   }
 
   @Override
@@ -166,11 +493,132 @@ public class RetrostoreClientImpl implements RetrostoreClient {
         .setQuery(searchQuery)
         .setTrs80(ListAppsParams.Trs80Params.newBuilder().addAllMediaTypes(hasMediaTypes))
         .build();
-    return fetchAppsNanoInternal(params);
+    return fetchSplit(params, this::fetchAppsNanoInternal);
+  }
+
+  @Override
+  public AppNanoFlyweight fetchAppsNanoFlyweight(int start, int num, String searchQuery,
+                                                 Set<MediaType> hasMediaTypes)
+      throws ApiException {
+    if (hasMediaTypes == null) {
+      hasMediaTypes = new HashSet<>();
+    }
+    ListAppsParams params = ListAppsParams.newBuilder()
+        .setStart(start)
+        .setNum(num)
+        .setQuery(searchQuery)
+        .setTrs80(ListAppsParams.Trs80Params.newBuilder().addAllMediaTypes(hasMediaTypes))
+        .build();
+    URL url = mEndpoints.get(ApiEndpoint.LIST_APPS_NANO);
+
+    try {
+      byte[] content = mUrlFetcher.fetchUrl(url, params);
+      AppNanoFlyweight apiResponse = AppNanoFlyweight.of(content);
+
+      if (!apiResponse.isSuccess()) {
+        throw new ApiException(String.format(
+            "Server reported error: '%s'", apiResponse.getMessage()));
+      }
+      return apiResponse;
+    } catch (IOException e) {
+      throw new ApiException("Unable to make request to server.", e);
+    }
+  }
+
+  @Override
+  public Stream<App> streamApps(String searchQuery, Set<MediaType> hasMediaTypes) {
+    return StreamSupport.stream(PageSpliterator.of(
+        (start, num) -> fetchApps(start, num, searchQuery, hasMediaTypes), STREAM_PAGE_SIZE),
+        false);
+  }
+
+  @Override
+  public Stream<AppNano> streamAppsNano(String searchQuery, Set<MediaType> hasMediaTypes) {
+    return StreamSupport.stream(PageSpliterator.of(
+        (start, num) -> fetchAppsNano(start, num, searchQuery, hasMediaTypes), STREAM_PAGE_SIZE),
+        false);
+  }
+
+  /** Fetches one listing request. */
+  private interface ListCall<T> {
+    List<T> fetch(ListAppsParams params) throws ApiException;
+  }
+
+  /**
+   * Runs the given listing request, split into concurrent windows if list
+   * splitting is enabled and the request is large enough. The windows are
+   * merged in order, so the server's sort order is preserved, and the first
+   * short window ends the listing.
+   * <p>
+   * A window starting past the end of the listing fails on the server. When
+   * every earlier window was full, a single request for the item before the
+   * failed window tells that apart from a real error, as in {@link Pager}.
+   */
+  private <T> List<T> fetchSplit(ListAppsParams params, ListCall<T> call) throws ApiException {
+    int num = params.getNum();
+    if (mListWindowSize <= 0 || num <= mListWindowSize) {
+      return call.fetch(params);
+    }
+    List<ListAppsParams> windows = new ArrayList<>();
+    List<Future<List<T>>> pages = new ArrayList<>();
+    for (int offset = 0; offset < num; offset += mListWindowSize) {
+      ListAppsParams window = params.toBuilder()
+          .setStart(params.getStart() + offset)
+          .setNum(Math.min(mListWindowSize, num - offset))
+          .build();
+      windows.add(window);
+      pages.add(mListExecutor.submit(() -> call.fetch(window)));
+    }
+
+    List<T> result = new ArrayList<>(num);
+    try {
+      for (int i = 0; i < pages.size(); ++i) {
+        List<T> page;
+        try {
+          page = pages.get(i).get();
+        } catch (ExecutionException e) {
+          if (!(e.getCause() instanceof ApiException)) {
+            throw new ApiException("Listing apps failed.", e.getCause());
+          }
+          ApiException error = (ApiException) e.getCause();
+          // Transport errors carry their cause. The first window fails like an unsplit request.
+          if (error.getCause() != null || i == 0 || !isPastEnd(windows.get(i), call)) {
+            throw error;
+          }
+          break;
+        }
+        result.addAll(page);
+        if (page.size() < windows.get(i).getNum()) {
+          break;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ApiException("Interrupted while listing apps.", e);
+    } finally {
+      // Windows past the end of the listing are not needed anymore.
+      pages.forEach(p -> p.cancel(true));
+    }
+    return result;
+  }
+
+  /**
+   * Whether the listing ends right before the given window, given that it
+   * reaches the item before it.
+   */
+  private static <T> boolean isPastEnd(ListAppsParams window, ListCall<T> call) {
+    try {
+      return call.fetch(window.toBuilder()
+          .setStart(window.getStart() - 1)
+          .setNum(2)
+          .build()).size() < 2;
+    } catch (ApiException e) {
+      return false;
+    }
   }
 
   private List<AppNano> fetchAppsNanoInternal(ListAppsParams params) throws ApiException {
-    String url = String.format(mServerUrl, "listAppsNano");
+    URL url = mEndpoints.get(ApiEndpoint.LIST_APPS_NANO);
 
     try {
       byte[] content = mUrlFetcher.fetchUrl(url, params);
@@ -202,9 +650,9 @@ public class RetrostoreClientImpl implements RetrostoreClient {
   }
 
   private List<App> fetchAppsInternal(Object params) throws ApiException {
-    String url = String.format(mServerUrl, "listApps");
+    URL url = mEndpoints.get(ApiEndpoint.LIST_APPS);
     try {
-      byte[] content = mUrlFetcher.fetchUrl(url, params);
+      byte[] content = fetchUrl(url, params);
       ApiResponseApps apiResponse = ApiResponseApps.parseFrom(content);
 
       if (!apiResponse.getSuccess()) {
@@ -237,6 +685,118 @@ public class RetrostoreClientImpl implements RetrostoreClient {
         .collect(Collectors.toList());
   }
 
+  @Override
+  public void fetchMediaImagesStreaming(String appId, Set<MediaType> types,
+                                        Consumer<MediaImage> consumer) throws ApiException {
+    FetchMediaImagesParams params = FetchMediaImagesParams.newBuilder()
+        .addAllMediaType(types)
+        .setAppId(appId)
+        .build();
+    URL url = mEndpoints.get(ApiEndpoint.FETCH_MEDIA_IMAGES);
+
+    try (ApiResponseStreamReader<MediaImage> apiResponse =
+             ApiResponseStreamReader.forMediaImages(mUrlFetcher.fetchUrlAsStream(url, params))) {
+      // Like fetchMediaImages, skip zero-size "UNKNOWN" entries.
+      readStreaming(apiResponse, img -> {
+        if (img.getData().size() > 0) {
+          consumer.accept(img);
+        }
+      });
+    } catch (IOException e) {
+      throw new ApiException("Unable to make request to server.", e);
+    }
+  }
+
+  @Override
+  public List<SegmentedMediaImage> fetchMediaImagesSegmented(String appId, Set<MediaType> types)
+      throws ApiException {
+    FetchMediaImagesParams params = FetchMediaImagesParams.newBuilder()
+        .addAllMediaType(types)
+        .setAppId(appId)
+        .build();
+    URL url = mEndpoints.get(ApiEndpoint.FETCH_MEDIA_IMAGES);
+
+    List<SegmentedMediaImage> images = new ArrayList<>();
+    try (SegmentedMediaImageReader apiResponse =
+             new SegmentedMediaImageReader(mUrlFetcher.fetchUrlAsStream(url, params))) {
+      while (apiResponse.advance()) {
+        SegmentedMediaImage image = apiResponse.next();
+        // Like fetchMediaImages, skip zero-size "UNKNOWN" entries.
+        if (image.getData().size() > 0) {
+          images.add(image);
+        } else {
+          image.close();
+        }
+      }
+      if (!apiResponse.isSuccess()) {
+        throw new ApiException(String.format(
+            "Server reported error: '%s'", apiResponse.getMessage()));
+      }
+      return images;
+    } catch (IOException e) {
+      images.forEach(SegmentedMediaImage::close);
+      throw new ApiException("Unable to make request to server.", e);
+    } catch (ApiException | RuntimeException e) {
+      images.forEach(SegmentedMediaImage::close);
+      throw e;
+    }
+  }
+
+  /**
+   * Fetches the given URL. Protobuf params take the regular path, any other
+   * params are sent through the legacy JSON code path.
+   */
+  @SuppressWarnings("deprecation")
+  private byte[] fetchUrl(URL url, Object params) throws IOException {
+    if (params instanceof GeneratedMessageLite) {
+      return mUrlFetcher.fetchUrl(url, (GeneratedMessageLite<?, ?>) params);
+    }
+    return mUrlFetcher.fetchUrl(url.toString(), params);
+  }
+
+  /** Like {@link #fetchUrl(URL, Object)} but returns a body that may be spilled to disk. */
+  @SuppressWarnings("deprecation")
+  private ResponseBody fetchBody(URL url, Object params) throws IOException {
+    if (params instanceof GeneratedMessageLite) {
+      return mUrlFetcher.fetchUrlAsBody(url, (GeneratedMessageLite<?, ?>) params);
+    }
+    return ResponseBody.ofBytes(mUrlFetcher.fetchUrl(url.toString(), params));
+  }
+
+  /**
+   * Parses a response whose bytes fields may be large. Bodies on the heap are
+   * aliased if enabled, spilled bodies are parsed from their mapped file.
+   * Spilled media image responses take {@link #readSpilledMediaImages}
+   * instead, as parsing would copy each image into a single array.
+   */
+  private <T> T parse(ResponseBody content, Parser<T> parser) throws IOException {
+    if (content.hasArray()) {
+      return mAliasResponseBytes
+          ? ZeroCopy.parseAliased(content.array(), 0, content.size(), parser)
+          : parser.parseFrom(content.array(), 0, content.size());
+    }
+    CodedInputStream input = CodedInputStream.newInstance(content.openStream());
+    // Spilled bodies may exceed the default limit of 64 MB.
+    input.setSizeLimit(Integer.MAX_VALUE);
+    return parser.parseFrom(input, ExtensionRegistryLite.getEmptyRegistry());
+  }
+
+  /**
+   * Hands all entries of the response to the consumer and checks the response
+   * status once it has been read completely.
+   */
+  private static <T extends MessageLite> void readStreaming(
+      ApiResponseStreamReader<T> apiResponse, Consumer<? super T> consumer)
+      throws IOException, ApiException {
+    while (apiResponse.advance()) {
+      consumer.accept(apiResponse.next());
+    }
+    if (!apiResponse.isSuccess()) {
+      throw new ApiException(String.format(
+          "Server reported error: '%s'", apiResponse.getMessage()));
+    }
+  }
+
   @Override
   public List<MediaImageRef> fetchMediaImageRefs(String appId) throws ApiException {
     return fetchMediaImageRefs(appId, new HashSet<>());
@@ -245,7 +805,7 @@ public class RetrostoreClientImpl implements RetrostoreClient {
   @Override
   public List<MediaImageRef> fetchMediaImageRefs(String appId,
                                                  Set<MediaType> types) throws ApiException {
-    String url = String.format(mServerUrl, "fetchMediaImageRefs");
+    URL url = mEndpoints.get(ApiEndpoint.FETCH_MEDIA_IMAGE_REFS);
     FetchMediaImageRefsParams params = FetchMediaImageRefsParams.newBuilder()
         .setAppId(appId)
         .addAllMediaType(types)
@@ -267,7 +827,38 @@ public class RetrostoreClientImpl implements RetrostoreClient {
   @Override
   public byte[] fetchMediaImageRegion(MediaImageRef ref, int start,
                                       int length) throws ApiException {
-    long startTime = System.currentTimeMillis();
+    acquireBudget(length);
+    try {
+      byte[] bytes = new byte[length];
+      fetchMediaImageRegionUncharged(ref, start, length, ByteBuffer.wrap(bytes));
+      return bytes;
+    } finally {
+      releaseBudget(length);
+    }
+  }
+
+  @Override
+  public void fetchMediaImageRegion(MediaImageRef ref, int start, int length,
+                                    byte[] dest, int destOffset) throws ApiException {
+    Preconditions.checkPositionIndexes(destOffset, destOffset + length, dest.length);
+    fetchMediaImageRegion(ref, start, length, ByteBuffer.wrap(dest, destOffset, length));
+  }
+
+  @Override
+  public void fetchMediaImageRegion(MediaImageRef ref, int start, int length,
+                                    ByteBuffer dest) throws ApiException {
+    // The destination is the caller's, but the request still counts towards
+    // the bytes in flight, so that concurrent downloaders are limited too.
+    acquireBudget(length);
+    try {
+      fetchMediaImageRegionUncharged(ref, start, length, dest);
+    } finally {
+      releaseBudget(length);
+    }
+  }
+
+  private void fetchMediaImageRegionUncharged(MediaImageRef ref, int start, int length,
+                                              ByteBuffer dest) throws ApiException {
     FetchMediaImageRegionParams params = FetchMediaImageRegionParams
         .newBuilder()
         .setToken(ref.getToken())
@@ -275,17 +866,62 @@ public class RetrostoreClientImpl implements RetrostoreClient {
         .setLength(length)
         .build();
 
-    String url = String.format(mServerUrl, "fetchMediaImageRegion");
+    URL url = mEndpoints.get(ApiEndpoint.FETCH_MEDIA_IMAGE_REGION);
+    fetchRegion(url, params, length, dest);
+  }
 
+  @Override
+  public SegmentedBuffer fetchMediaImageRegionSegmented(MediaImageRef ref, int start, int length)
+      throws ApiException {
+    FetchMediaImageRegionParams params = FetchMediaImageRegionParams
+        .newBuilder()
+        .setToken(ref.getToken())
+        .setStart(start)
+        .setLength(length)
+        .build();
+    return fetchRegionSegmented(mEndpoints.get(ApiEndpoint.FETCH_MEDIA_IMAGE_REGION), params,
+        length);
+  }
+
+  /** Waits until the given number of bytes fits into the in-flight budget, if any. */
+  private void acquireBudget(int bytes) throws ApiException {
+    if (mByteBudget == null) {
+      return;
+    }
     try {
-      byte[] bytes = mUrlFetcher.fetchUrl(url, params);
-      if (bytes.length != params.getLength()) {
+      mByteBudget.acquire(bytes);
+    } catch (IOException e) {
+      throw new ApiException("Request not admitted by the in-flight budget.", e);
+    }
+  }
+
+  private void releaseBudget(int bytes) {
+    if (mByteBudget != null) {
+      mByteBudget.release(bytes);
+    }
+  }
+
+  /**
+   * Reads a region response of the given length into the buffer at its
+   * position. The buffer is only advanced if the complete region was read.
+   */
+  private void fetchRegion(URL url, GeneratedMessageLite<?, ?> params, int length,
+                           ByteBuffer dest) throws ApiException {
+    Preconditions.checkArgument(length >= 0, "length must not be negative.");
+    Preconditions.checkArgument(dest.remaining() >= length,
+        "Buffer has %s bytes remaining, but %s are needed.", dest.remaining(), length);
+    // Limit the window to the requested length, so that responses that are too
+    // long are detected.
+    ByteBuffer window = dest.duplicate();
+    window.limit(window.position() + length);
+
+    try {
+      int received = mUrlFetcher.fetchUrl(url, params, window);
+      if (received != length) {
         throw new ApiException(String.format("Length received (%d) does not " +
-            "match length requested (%d)", bytes.length, params.getLength()));
+            "match length requested (%d)", received, length));
       }
-      long duration = System.currentTimeMillis() - startTime;
-      System.out.printf("Fetching media image region took %d ms\n", duration);
-      return bytes;
+      dest.position(dest.position() + length);
     } catch (IOException e) {
       throw new ApiException("Unable to make request to server.", e);
     }
@@ -298,10 +934,12 @@ public class RetrostoreClientImpl implements RetrostoreClient {
   }
 
   private List<MediaImage> fetchMediaImagesInternal(Object params) throws ApiException {
-    String url = String.format(mServerUrl, "fetchMediaImages");
-    try {
-      byte[] content = mUrlFetcher.fetchUrl(url, params);
-      ApiResponseMediaImages apiResponse = ApiResponseMediaImages.parseFrom(content);
+    URL url = mEndpoints.get(ApiEndpoint.FETCH_MEDIA_IMAGES);
+    try (ResponseBody content = fetchBody(url, params)) {
+      if (!content.hasArray()) {
+        return readSpilledMediaImages(content);
+      }
+      ApiResponseMediaImages apiResponse = parse(content, ApiResponseMediaImages.parser());
 
       if (!apiResponse.getSuccess()) {
         throw new ApiException(String.format(
@@ -313,24 +951,101 @@ public class RetrostoreClientImpl implements RetrostoreClient {
     }
   }
 
+  /**
+   * Decodes the images of a spilled response through pooled chunks, so that
+   * their data ends up in chunk-sized pieces, see
+   * {@link SegmentedMediaImage#toMediaImage()}.
+   */
+  private static List<MediaImage> readSpilledMediaImages(ResponseBody content)
+      throws IOException, ApiException {
+    List<MediaImage> images = new ArrayList<>();
+    try (SegmentedMediaImageReader apiResponse =
+             new SegmentedMediaImageReader(content.openStream())) {
+      while (apiResponse.advance()) {
+        try (SegmentedMediaImage image = apiResponse.next()) {
+          images.add(image.toMediaImage());
+        }
+      }
+      if (!apiResponse.isSuccess()) {
+        throw new ApiException(String.format(
+            "Server reported error: '%s'", apiResponse.getMessage()));
+      }
+    }
+    return images;
+  }
+
   @Override
   public long uploadState(SystemState state) throws ApiException {
     UploadSystemStateParams params = UploadSystemStateParams.newBuilder().setState(state).build();
-    String url = String.format(mServerUrl, "uploadState");
+    URL url = mEndpoints.get(ApiEndpoint.UPLOAD_STATE);
 
     try {
-      byte[] content = mUrlFetcher.fetchUrl(url, params);
-      ApiResponseUploadSystemState apiResponse = ApiResponseUploadSystemState.parseFrom(content);
-      if (!apiResponse.getSuccess()) {
-        throw new ApiException(String.format(
-            "Server reported error: '%s'", apiResponse.getMessage()));
+      return parseUploadResponse(mUrlFetcher.fetchUrl(url, params));
+    } catch (IOException e) {
+      throw new ApiException("Unable to make request to server.", e);
+    }
+  }
+
+  @Override
+  public long uploadStateStreaming(SystemState state) throws ApiException {
+    URL url = mEndpoints.get(ApiEndpoint.UPLOAD_STATE);
+    // Encodes UploadSystemStateParams directly, without building it first.
+    UrlFetcher.RequestBody body = out -> {
+      CodedOutputStream codedOut = CodedOutputStream.newInstance(out, UPLOAD_BUFFER_SIZE);
+      codedOut.writeMessage(UploadSystemStateParams.STATE_FIELD_NUMBER, state);
+      codedOut.flush();
+    };
+
+    try {
+      return parseUploadResponse(mUrlFetcher.fetchUrl(url, body, -1));
+    } catch (IOException e) {
+      throw new ApiException("Unable to make request to server.", e);
+    }
+  }
+
+  @Override
+  public long uploadState(Path serializedState) throws ApiException {
+    URL url = mEndpoints.get(ApiEndpoint.UPLOAD_STATE);
+
+    try (FileChannel channel = FileChannel.open(serializedState, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new ApiException("State file too large: " + size);
       }
-      return apiResponse.getToken();
+      // UploadSystemStateParams consists of just the length-delimited state.
+      byte[] header = new byte[CodedOutputStream.computeTagSize(
+          UploadSystemStateParams.STATE_FIELD_NUMBER)
+          + CodedOutputStream.computeUInt32SizeNoTag((int) size)];
+      CodedOutputStream headerOut = CodedOutputStream.newInstance(header);
+      headerOut.writeTag(UploadSystemStateParams.STATE_FIELD_NUMBER,
+          WireFormat.WIRETYPE_LENGTH_DELIMITED);
+      headerOut.writeUInt32NoTag((int) size);
+      headerOut.checkNoSpaceLeft();
+
+      UrlFetcher.RequestBody body = out -> {
+        out.write(header);
+        WritableByteChannel target = Channels.newChannel(out);
+        long position = 0;
+        while (position < size) {
+          position += channel.transferTo(position, size - position, target);
+        }
+      };
+      return parseUploadResponse(mUrlFetcher.fetchUrl(url, body, header.length + size));
     } catch (IOException e) {
       throw new ApiException("Unable to make request to server.", e);
     }
   }
 
+  private static long parseUploadResponse(byte[] content)
+      throws InvalidProtocolBufferException, ApiException {
+    ApiResponseUploadSystemState apiResponse = ApiResponseUploadSystemState.parseFrom(content);
+    if (!apiResponse.getSuccess()) {
+      throw new ApiException(String.format(
+          "Server reported error: '%s'", apiResponse.getMessage()));
+    }
+    return apiResponse.getToken();
+  }
+
   @Override
   public SystemState downloadState(long token) throws ApiException {
     return downloadState(token, false);
@@ -345,12 +1060,11 @@ public class RetrostoreClientImpl implements RetrostoreClient {
             .setToken(token)
             .setExcludeMemoryRegionData(exclude_memory_region_data)
             .build();
-    String url = String.format(mServerUrl, "downloadState");
+    URL url = mEndpoints.get(ApiEndpoint.DOWNLOAD_STATE);
 
-    try {
-      byte[] content = mUrlFetcher.fetchUrl(url, params);
+    try (ResponseBody content = mUrlFetcher.fetchUrlAsBody(url, params)) {
       ApiResponseDownloadSystemState apiResponse =
-          ApiResponseDownloadSystemState.parseFrom(content);
+          parse(content, ApiResponseDownloadSystemState.parser());
 
       if (!apiResponse.getSuccess()) {
         throw new ApiException(String.format(
@@ -366,26 +1080,58 @@ public class RetrostoreClientImpl implements RetrostoreClient {
   public byte[] downloadSystemStateMemoryRegion(long token,
                                                 int start,
                                                 int length) throws ApiException {
-    long startTime = System.currentTimeMillis();
+    acquireBudget(length);
+    try {
+      byte[] bytes = new byte[length];
+      downloadSystemStateMemoryRegionUncharged(token, start, length, ByteBuffer.wrap(bytes));
+      return bytes;
+    } finally {
+      releaseBudget(length);
+    }
+  }
+
+  @Override
+  public void downloadSystemStateMemoryRegion(long token, int start, int length,
+                                              byte[] dest, int destOffset) throws ApiException {
+    Preconditions.checkPositionIndexes(destOffset, destOffset + length, dest.length);
+    downloadSystemStateMemoryRegion(token, start, length,
+        ByteBuffer.wrap(dest, destOffset, length));
+  }
+
+  @Override
+  public void downloadSystemStateMemoryRegion(long token, int start, int length,
+                                              ByteBuffer dest) throws ApiException {
+    acquireBudget(length);
+    try {
+      downloadSystemStateMemoryRegionUncharged(token, start, length, dest);
+    } finally {
+      releaseBudget(length);
+    }
+  }
+
+  private void downloadSystemStateMemoryRegionUncharged(long token, int start, int length,
+                                                        ByteBuffer dest) throws ApiException {
     DownloadSystemStateMemoryRegionParams params =
         DownloadSystemStateMemoryRegionParams.newBuilder()
             .setToken(token)
             .setStart(start)
             .setLength(length)
             .build();
-    String url = String.format(mServerUrl, "downloadStateMemoryRegion");
+    URL url = mEndpoints.get(ApiEndpoint.DOWNLOAD_STATE_MEMORY_REGION);
+    fetchRegion(url, params, length, dest);
+  }
 
-    try {
-      byte[] bytes = mUrlFetcher.fetchUrl(url, params);
-      if (bytes.length != params.getLength()) {
-        throw new ApiException(String.format("Length received (%d) does not " +
-            "match length requested (%d)", bytes.length, params.getLength()));
-      }
-      long duration = System.currentTimeMillis() - startTime;
-      System.out.printf("Downloading memory region took %d ms\n", duration);
-      return bytes;
-    } catch (IOException e) {
-      throw new ApiException("Unable to make request to server.", e);
-    }
+  @Override
+  public SegmentedBuffer downloadSystemStateMemoryRegionSegmented(long token, int start,
+                                                                  int length)
+      throws ApiException {
+    DownloadSystemStateMemoryRegionParams params =
+        DownloadSystemStateMemoryRegionParams.newBuilder()
+            .setToken(token)
+            .setStart(start)
+            .setLength(length)
+            .build();
+    return fetchRegionSegmented(mEndpoints.get(ApiEndpoint.DOWNLOAD_STATE_MEMORY_REGION), params,
+        length);
   }
 }
@@ -20,6 +20,8 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableSet;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.retrostore.buffer.SegmentedBuffer;
 import org.retrostore.client.common.proto.App;
 import org.retrostore.client.common.proto.AppNano;
 import org.retrostore.client.common.proto.MediaImage;
@@ -27,13 +29,24 @@ import org.retrostore.client.common.proto.MediaImageRef;
 import org.retrostore.client.common.proto.MediaType;
 import org.retrostore.client.common.proto.SystemState;
 import org.retrostore.client.common.proto.Trs80Model;
-
+import org.retrostore.flow.MediaRegionPublisher;
+import org.retrostore.media.AppLauncher;
+import org.retrostore.media.LaunchBundle;
+import org.retrostore.wire.AppNanoFlyweight;
+import org.retrostore.wire.SegmentedMediaImage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
 import java.util.stream.Collectors;
 
 /**
@@ -45,14 +58,21 @@ public class TestCli {
       new FetchMultipleNanoTest(),
       new FetchMultipleNanoQueryWithoutTypes(),
       new FetchMultipleNanoQueryWithTypes(),
+      new FetchMultipleNanoFlyweightTest(),
       new FetchMultipleTest(),
       new FetchSingleTest(),
+      new GetAppsTest(),
       new FilterByMediaTypeTest(),
       new BasicFileTypeTest(),
       new SortTest(),
+      new SplitListingTest(),
+      new StreamAppsTest(),
       new FetchMediaImagesTest(),
       new FetchMediaImageRefsTest(),
       new FetchMediaImageRangeTest(),
+      new FetchMediaImageSegmentedTest(),
+      new MediaRegionPublisherTest(),
+      new LaunchAppTest(),
       new UploadAndDownloadStateTest(),
       new UploadBadMemoryRegionsStateTest(),
       new ExcludeMemoryRegionDataDownloadSystemStateTest(),
@@ -313,6 +333,39 @@ public class TestCli {
     }
   }
 
+  static class FetchMultipleNanoFlyweightTest implements RetroStoreApiTest {
+    @Override
+    public boolean runTest(RetrostoreClient retrostore) throws ApiException {
+      List<AppNano> items = retrostore.fetchAppsNano(0, 10, "", null);
+      AppNanoFlyweight flyweight = retrostore.fetchAppsNanoFlyweight(0, 10, "", null);
+
+      if (flyweight.getAppCount() != items.size()) {
+        System.err.printf("Flyweight has %d apps but expected %d%n",
+            flyweight.getAppCount(), items.size());
+        return false;
+      }
+      try {
+        for (AppNano item : items) {
+          if (!flyweight.next()) {
+            System.err.println("Flyweight ended early.");
+            return false;
+          }
+          if (!flyweight.toAppNano().equals(item)) {
+            System.err.println("Flyweight app does not match: " + item.getId());
+            return false;
+          }
+          if (!item.getName().contentEquals(flyweight.getNameView())) {
+            System.err.println("Flyweight name view does not match: " + item.getName());
+            return false;
+          }
+        }
+        return !flyweight.next();
+      } catch (InvalidProtocolBufferException e) {
+        System.err.println("Flyweight cannot parse response: " + e.getMessage());
+        return false;
+      }
+    }
+  }
 
   static class FetchSingleTest implements RetroStoreApiTest {
     @Override
@@ -413,6 +466,45 @@ public class TestCli {
     }
   }
 
+  static class SplitListingTest implements RetroStoreApiTest {
+
+    @Override
+    public boolean runTest(RetrostoreClient retrostore) throws ApiException {
+      // Window size 3 makes the last window short for most catalog sizes.
+      RetrostoreClient split = RetrostoreClientImpl.newBuilder("n/a")
+          .setListSplitting(3, 4)
+          .build();
+      List<String> want = retrostore.fetchAppsNano(0, 1000).stream()
+          .map(AppNano::getName).collect(Collectors.toList());
+      List<String> got = split.fetchAppsNano(0, 1000).stream()
+          .map(AppNano::getName).collect(Collectors.toList());
+      if (!got.equals(want)) {
+        System.err.printf("Split listing differs:%n[%s]%n[%s]%n",
+            Joiner.on(",").join(want), Joiner.on(",").join(got));
+        return false;
+      }
+      return true;
+    }
+  }
+
+  static class StreamAppsTest implements RetroStoreApiTest {
+
+    @Override
+    public boolean runTest(RetrostoreClient retrostore) throws ApiException {
+      List<String> want = retrostore.fetchAppsNano(0, 1000).stream()
+          .map(AppNano::getName).collect(Collectors.toList());
+      // A parallel stream still has to keep the listing in order.
+      List<String> got = retrostore.streamAppsNano("", null).parallel()
+          .map(AppNano::getName).collect(Collectors.toList());
+      if (!got.equals(want)) {
+        System.err.printf("Streamed listing differs:%n[%s]%n[%s]%n",
+            Joiner.on(",").join(want), Joiner.on(",").join(got));
+        return false;
+      }
+      return true;
+    }
+  }
+
   static class ExcludeMemoryRegionDataDownloadSystemStateTest implements RetroStoreApiTest {
 
     @Override
@@ -731,6 +823,156 @@ public class TestCli {
     }
   }
 
+  static class GetAppsTest implements RetroStoreApiTest {
+
+    @Override
+    public boolean runTest(RetrostoreClient retrostore) throws ApiException {
+      String BREAKDOWN_ID = "29b20252-680f-11e8-b4a9-1f10b5491ef5";
+      String UNKNOWN_ID = "00000000-0000-0000-0000-000000000000";
+      AppBatch batch = retrostore.getApps(List.of(BREAKDOWN_ID, UNKNOWN_ID, BREAKDOWN_ID));
+      if (batch.size() != 1 || !batch.containsKey(BREAKDOWN_ID)) {
+        System.err.println("Expected exactly the known app, got: " + batch.keySet());
+        return false;
+      }
+      if (!batch.get(BREAKDOWN_ID).equals(retrostore.getApp(BREAKDOWN_ID))) {
+        System.err.println("Batched app differs from the single fetch.");
+        return false;
+      }
+      // Depending on the server, unknown IDs are either empty or an error.
+      if (!batch.getMissingIds().contains(UNKNOWN_ID) &&
+          !batch.getFailures().containsKey(UNKNOWN_ID)) {
+        System.err.println("Unknown ID not reported.");
+        return false;
+      }
+      return true;
+    }
+  }
+
+  static class MediaRegionPublisherTest implements RetroStoreApiTest {
+
+    @Override
+    public boolean runTest(RetrostoreClient retrostore) throws ApiException {
+      String BREAKDOWN_ID = "29b20252-680f-11e8-b4a9-1f10b5491ef5";
+      MediaImage image = retrostore.fetchMediaImages(BREAKDOWN_ID, Set.of(MediaType.COMMAND))
+          .get(0);
+      MediaImageRef ref = retrostore.fetchMediaImageRefs(BREAKDOWN_ID, Set.of(MediaType.COMMAND))
+          .get(0);
+
+      // Request one chunk at a time, so that every chunk is fetched on demand.
+      ByteArrayOutputStream received = new ByteArrayOutputStream();
+      CompletableFuture<byte[]> done = new CompletableFuture<>();
+      MediaRegionPublisher.newBuilder(retrostore, ref).setChunkSize(1024).build()
+          .subscribe(new Flow.Subscriber<ByteBuffer>() {
+            private Flow.Subscription mSubscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+              mSubscription = subscription;
+              subscription.request(1);
+            }
+
+            @Override
+            public void onNext(ByteBuffer chunk) {
+              byte[] bytes = new byte[chunk.remaining()];
+              chunk.get(bytes);
+              received.writeBytes(bytes);
+              mSubscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+              done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+              done.complete(received.toByteArray());
+            }
+          });
+      try {
+        if (!Arrays.equals(done.get(), image.getData().toByteArray())) {
+          System.err.println("Published chunks do not match the image data.");
+          return false;
+        }
+      } catch (InterruptedException | ExecutionException e) {
+        System.err.println("Publishing failed: " + e.getMessage());
+        return false;
+      }
+      return true;
+    }
+  }
+
+  static class FetchMediaImageSegmentedTest implements RetroStoreApiTest {
+
+    @Override
+    public boolean runTest(RetrostoreClient retrostore) throws ApiException {
+      String BREAKDOWN_ID = "29b20252-680f-11e8-b4a9-1f10b5491ef5";
+      Map<String, byte[]> mediaBytes = retrostore.fetchMediaImages(BREAKDOWN_ID).stream()
+          .collect(Collectors.toMap(MediaImage::getFilename, m -> m.getData().toByteArray()));
+
+      List<SegmentedMediaImage> images =
+          retrostore.fetchMediaImagesSegmented(BREAKDOWN_ID, new HashSet<>());
+      try {
+        if (images.size() != mediaBytes.size()) {
+          System.err.println("Segmented fetch returned a different number of images.");
+          return false;
+        }
+        for (SegmentedMediaImage image : images) {
+          byte[] want = mediaBytes.get(image.getMetadata().getFilename());
+          if (!Arrays.equals(image.getData().toByteArray(), want)) {
+            System.err.println("Segmented image data does not match for " +
+                image.getMetadata().getFilename());
+            return false;
+          }
+        }
+      } finally {
+        images.forEach(SegmentedMediaImage::close);
+      }
+
+      for (MediaImageRef ref : retrostore.fetchMediaImageRefs(BREAKDOWN_ID)) {
+        try (SegmentedBuffer region =
+                 retrostore.fetchMediaImageRegionSegmented(ref, 0, ref.getSize())) {
+          if (!Arrays.equals(region.toByteArray(), mediaBytes.get(ref.getFilename()))) {
+            System.err.println("Segmented region does not match for token " + ref.getToken());
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+  }
+
+  static class LaunchAppTest implements RetroStoreApiTest {
+
+    @Override
+    public boolean runTest(RetrostoreClient retrostore) throws ApiException {
+      String BREAKDOWN_ID = "29b20252-680f-11e8-b4a9-1f10b5491ef5";
+      LaunchBundle bundle;
+      try {
+        bundle = AppLauncher.newBuilder(retrostore).build().launch(BREAKDOWN_ID).get();
+      } catch (InterruptedException | ExecutionException e) {
+        System.err.println("Launching failed: " + e.getMessage());
+        return false;
+      }
+      if (!bundle.getApp().getId().equals(BREAKDOWN_ID)) {
+        System.err.println("Launched the wrong app.");
+        return false;
+      }
+      // Breakdown has a "cmd" image, which is preferred over the disk.
+      if (bundle.getBootImageRef().getType() != MediaType.COMMAND) {
+        System.err.println("Expected to boot from the CMD image.");
+        return false;
+      }
+      byte[] want = retrostore.fetchMediaImages(BREAKDOWN_ID, Set.of(MediaType.COMMAND))
+          .get(0).getData().toByteArray();
+      if (!Arrays.equals(bundle.getBootImage(), want)) {
+        System.err.println("Boot image data does not match.");
+        return false;
+      }
+      return true;
+    }
+  }
+
   static class FetchMediaImageRangeTest implements RetroStoreApiTest {
 
     @Override
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore;
+
+/**
+ * Wraps an {@link ApiException} where a checked exception cannot be thrown,
+ * such as in streams returned by the client.
+ */
+public final class UncheckedApiException extends RuntimeException {
+  public UncheckedApiException(ApiException cause) {
+    super(cause.getMessage(), cause);
+  }
+
+  @Override
+  public synchronized ApiException getCause() {
+    return (ApiException) super.getCause();
+  }
+}
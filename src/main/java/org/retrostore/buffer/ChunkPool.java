@@ -0,0 +1,81 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.buffer;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe pool of fixed-size byte chunks used by {@link SegmentedBuffer}.
+ * <p>
+ * The default chunk size of 64 KB is well below the humongous allocation
+ * threshold of G1 (half a region, at least 512 KB), so chunks are regular
+ * young-generation allocations even when they are not taken from the pool.
+ */
+public final class ChunkPool {
+  public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+  private static final int DEFAULT_MAX_POOLED = 256;
+
+  private static final ChunkPool sDefault = new ChunkPool(DEFAULT_CHUNK_SIZE, DEFAULT_MAX_POOLED);
+
+  private final int mChunkSize;
+  private final int mMaxPooled;
+  private final ConcurrentLinkedDeque<byte[]> mFree = new ConcurrentLinkedDeque<>();
+  private final AtomicInteger mPooled = new AtomicInteger();
+
+  /**
+   * @param chunkSize the size of each chunk in bytes.
+   * @param maxPooled the maximum number of free chunks kept for reuse.
+   */
+  public ChunkPool(int chunkSize, int maxPooled) {
+    Preconditions.checkArgument(chunkSize > 0, "chunkSize must be positive.");
+    Preconditions.checkArgument(maxPooled >= 0, "maxPooled must not be negative.");
+    mChunkSize = chunkSize;
+    mMaxPooled = maxPooled;
+  }
+
+  /** The shared pool with 64 KB chunks, keeping up to 16 MB for reuse. */
+  public static ChunkPool getDefault() {
+    return sDefault;
+  }
+
+  public int getChunkSize() {
+    return mChunkSize;
+  }
+
+  /** Returns a chunk. Its contents are undefined. */
+  public byte[] acquire() {
+    byte[] chunk = mFree.pollFirst();
+    if (chunk != null) {
+      mPooled.decrementAndGet();
+      return chunk;
+    }
+    return new byte[mChunkSize];
+  }
+
+  /** Returns a chunk to the pool. It must not be used by the caller anymore. */
+  public void release(byte[] chunk) {
+    Preconditions.checkArgument(chunk.length == mChunkSize, "Chunk is not from this pool.");
+    if (mPooled.incrementAndGet() <= mMaxPooled) {
+      mFree.offerFirst(chunk);
+    } else {
+      mPooled.decrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.buffer;
+
+import com.google.common.base.Preconditions;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable byte sequence stored in fixed-size chunks from a
+ * {@link ChunkPool}, so that large media images and memory dumps never need a
+ * single contiguous array.
+ * <p>
+ * Closing the buffer returns its chunks to the pool; it must not be used
+ * afterwards. Buffers are safe to read from several threads.
+ */
+public final class SegmentedBuffer implements Closeable {
+  private final ChunkPool mPool;
+  private final int mChunkSize;
+  private final long mSize;
+  private byte[][] mChunks;
+
+  private SegmentedBuffer(ChunkPool pool, byte[][] chunks, long size) {
+    mPool = pool;
+    mChunkSize = pool.getChunkSize();
+    mChunks = chunks;
+    mSize = size;
+  }
+
+  /** Creates a builder using the default chunk pool. */
+  public static Builder newBuilder() {
+    return new Builder(ChunkPool.getDefault());
+  }
+
+  public static Builder newBuilder(ChunkPool pool) {
+    return new Builder(pool);
+  }
+
+  /** The number of bytes in this buffer. */
+  public long size() {
+    return mSize;
+  }
+
+  /** Returns the byte at the given index. */
+  public byte get(long index) {
+    checkRange(index, 1);
+    return chunks()[(int) (index / mChunkSize)][(int) (index % mChunkSize)];
+  }
+
+  /** Copies `length` bytes starting at `position` into the given array. */
+  public void get(long position, byte[] dst, int offset, int length) {
+    checkRange(position, length);
+    Preconditions.checkPositionIndexes(offset, offset + length, dst.length);
+    byte[][] chunks = chunks();
+    while (length > 0) {
+      int chunkOffset = (int) (position % mChunkSize);
+      int n = Math.min(length, mChunkSize - chunkOffset);
+      System.arraycopy(chunks[(int) (position / mChunkSize)], chunkOffset, dst, offset, n);
+      position += n;
+      offset += n;
+      length -= n;
+    }
+  }
+
+  /** Fills the remaining space of the given buffer with bytes starting at `position`. */
+  public void get(long position, ByteBuffer dst) {
+    int length = dst.remaining();
+    checkRange(position, length);
+    byte[][] chunks = chunks();
+    while (length > 0) {
+      int chunkOffset = (int) (position % mChunkSize);
+      int n = Math.min(length, mChunkSize - chunkOffset);
+      dst.put(chunks[(int) (position / mChunkSize)], chunkOffset, n);
+      position += n;
+      length -= n;
+    }
+  }
+
+  /** Returns read-only views of the chunks, in order, together covering the buffer. */
+  public ByteBuffer[] asReadOnlyBuffers() {
+    byte[][] chunks = chunks();
+    ByteBuffer[] buffers = new ByteBuffer[chunks.length];
+    for (int i = 0; i < chunks.length; ++i) {
+      buffers[i] = ByteBuffer.wrap(chunks[i], 0, chunkLength(i)).asReadOnlyBuffer();
+    }
+    return buffers;
+  }
+
+  /** Returns a new stream over the contents of this buffer. */
+  public InputStream newInputStream() {
+    return new SegmentedInputStream();
+  }
+
+  /** Writes the contents of this buffer to the given stream. */
+  public void writeTo(OutputStream out) throws IOException {
+    byte[][] chunks = chunks();
+    for (int i = 0; i < chunks.length; ++i) {
+      out.write(chunks[i], 0, chunkLength(i));
+    }
+  }
+
+  /**
+   * Writes the contents of this buffer to the given channel, using a
+   * gathering write for channels that support it, such as file channels.
+   */
+  public void writeTo(WritableByteChannel channel) throws IOException {
+    ByteBuffer[] buffers = asReadOnlyBuffers();
+    if (channel instanceof GatheringByteChannel) {
+      GatheringByteChannel gathering = (GatheringByteChannel) channel;
+      long remaining = mSize;
+      while (remaining > 0) {
+        remaining -= gathering.write(buffers);
+      }
+      return;
+    }
+    for (ByteBuffer buffer : buffers) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+
+  /**
+   * Copies the contents into a single array. Only meant for small buffers, as
+   * this is exactly the allocation this class exists to avoid.
+   */
+  public byte[] toByteArray() {
+    Preconditions.checkState(mSize <= Integer.MAX_VALUE - 8, "Buffer too large for an array.");
+    byte[] bytes = new byte[(int) mSize];
+    get(0, bytes, 0, bytes.length);
+    return bytes;
+  }
+
+  /** Returns the chunks of this buffer to the pool. */
+  @Override
+  public synchronized void close() {
+    if (mChunks == null) {
+      return;
+    }
+    for (byte[] chunk : mChunks) {
+      mPool.release(chunk);
+    }
+    mChunks = null;
+  }
+
+  private synchronized byte[][] chunks() {
+    Preconditions.checkState(mChunks != null, "Buffer has been closed.");
+    return mChunks;
+  }
+
+  private int chunkLength(int index) {
+    return (int) Math.min(mChunkSize, mSize - (long) index * mChunkSize);
+  }
+
+  private void checkRange(long position, int length) {
+    if (position < 0 || length < 0 || position + length > mSize) {
+      throw new IndexOutOfBoundsException(String.format(
+          "Range [%d, %d) out of bounds for size %d", position, position + length, mSize));
+    }
+  }
+
+  private final class SegmentedInputStream extends InputStream {
+    private long mPosition;
+
+    @Override
+    public int read() {
+      return mPosition < mSize ? get(mPosition++) & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (mPosition >= mSize) {
+        return -1;
+      }
+      int n = (int) Math.min(len, mSize - mPosition);
+      get(mPosition, b, off, n);
+      mPosition += n;
+      return n;
+    }
+
+    @Override
+    public long skip(long n) {
+      long skipped = Math.max(0, Math.min(n, mSize - mPosition));
+      mPosition += skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return (int) Math.min(Integer.MAX_VALUE, mSize - mPosition);
+    }
+  }
+
+  /**
+   * Builds a {@link SegmentedBuffer} by appending to it. If the builder is not
+   * built, {@link #discard()} returns its chunks to the pool.
+   */
+  public static final class Builder {
+    private final ChunkPool mPool;
+    private final int mChunkSize;
+    private final List<byte[]> mChunks = new ArrayList<>();
+    private long mSize;
+
+    private Builder(ChunkPool pool) {
+      mPool = pool;
+      mChunkSize = pool.getChunkSize();
+    }
+
+    /** The number of bytes appended so far. */
+    public long size() {
+      return mSize;
+    }
+
+    public Builder append(byte[] src, int offset, int length) {
+      Preconditions.checkPositionIndexes(offset, offset + length, src.length);
+      while (length > 0) {
+        byte[] chunk = currentChunk();
+        int chunkOffset = (int) (mSize % mChunkSize);
+        int n = Math.min(length, mChunkSize - chunkOffset);
+        System.arraycopy(src, offset, chunk, chunkOffset, n);
+        offset += n;
+        length -= n;
+        mSize += n;
+      }
+      return this;
+    }
+
+    /** Appends the remaining bytes of the given buffer, advancing its position. */
+    public Builder append(ByteBuffer src) {
+      while (src.hasRemaining()) {
+        byte[] chunk = currentChunk();
+        int chunkOffset = (int) (mSize % mChunkSize);
+        int n = Math.min(src.remaining(), mChunkSize - chunkOffset);
+        src.get(chunk, chunkOffset, n);
+        mSize += n;
+      }
+      return this;
+    }
+
+    /**
+     * Reads exactly `length` bytes from the stream straight into the chunks.
+     *
+     * @throws EOFException if the stream ends early.
+     */
+    public Builder readFrom(InputStream in, long length) throws IOException {
+      long remaining = length;
+      while (remaining > 0) {
+        int read = readChunk(in, (int) Math.min(remaining, Integer.MAX_VALUE));
+        if (read < 0) {
+          throw new EOFException(String.format(
+              "Stream ended after %d of %d bytes.", length - remaining, length));
+        }
+        remaining -= read;
+      }
+      return this;
+    }
+
+    /** Reads the stream until it ends, straight into the chunks. */
+    public Builder readFully(InputStream in) throws IOException {
+      while (readChunk(in, Integer.MAX_VALUE) >= 0) {
+        // Keep reading until the end of the stream.
+      }
+      return this;
+    }
+
+    public SegmentedBuffer build() {
+      SegmentedBuffer buffer =
+          new SegmentedBuffer(mPool, mChunks.toArray(new byte[0][]), mSize);
+      mChunks.clear();
+      mSize = 0;
+      return buffer;
+    }
+
+    /** Returns all chunks to the pool without building a buffer. */
+    public void discard() {
+      for (byte[] chunk : mChunks) {
+        mPool.release(chunk);
+      }
+      mChunks.clear();
+      mSize = 0;
+    }
+
+    /**
+     * Reads once from the stream into the current chunk. A new chunk is only
+     * kept if data has been read into it, so a stream that ends on a chunk
+     * boundary does not leave an empty chunk behind.
+     */
+    private int readChunk(InputStream in, int max) throws IOException {
+      boolean newChunk = mSize == (long) mChunks.size() * mChunkSize;
+      byte[] chunk = newChunk ? mPool.acquire() : mChunks.get(mChunks.size() - 1);
+      int chunkOffset = (int) (mSize % mChunkSize);
+      int read = -1;
+      try {
+        read = in.read(chunk, chunkOffset, Math.min(max, mChunkSize - chunkOffset));
+      } finally {
+        if (read > 0) {
+          if (newChunk) {
+            mChunks.add(chunk);
+          }
+          mSize += read;
+        } else if (newChunk) {
+          mPool.release(chunk);
+        }
+      }
+      return read;
+    }
+
+    /** Returns the chunk that the next byte goes into, acquiring one if needed. */
+    private byte[] currentChunk() {
+      if (mSize == (long) mChunks.size() * mChunkSize) {
+        mChunks.add(mPool.acquire());
+      }
+      return mChunks.get(mChunks.size() - 1);
+    }
+  }
+}
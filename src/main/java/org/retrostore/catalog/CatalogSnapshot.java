@@ -0,0 +1,169 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.catalog;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.retrostore.client.common.proto.App;
+import org.retrostore.client.common.proto.AppNano;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only, memory-mapped view of a catalog snapshot file as written by
+ * {@link CatalogSnapshotWriter}.
+ * <p>
+ * Opening a snapshot only maps the file and validates its header. Records are
+ * decoded lazily on access, so only the pages of the records actually read are
+ * faulted in.
+ * <p>
+ * File layout (big-endian):
+ * <pre>
+ *   int  magic        'RSCS'
+ *   int  version      1
+ *   int  record type  (see {@link RecordType})
+ *   int  count
+ *   count * { int offset, int length }
+ *   records (serialized App or AppNano protos)
+ * </pre>
+ */
+public final class CatalogSnapshot {
+  static final int MAGIC = 0x52534353;
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 16;
+  static final int INDEX_ENTRY_SIZE = 8;
+
+  /** The type of record stored in a snapshot. */
+  public enum RecordType {
+    APP, APP_NANO
+  }
+
+  private final ByteBuffer mBuffer;
+  private final RecordType mRecordType;
+  private final int mCount;
+
+  private CatalogSnapshot(ByteBuffer buffer, RecordType recordType, int count) {
+    mBuffer = buffer;
+    mRecordType = recordType;
+    mCount = count;
+  }
+
+  /**
+   * Maps the snapshot file at the given path.
+   *
+   * @throws IOException if the file cannot be mapped or is not a valid snapshot.
+   */
+  public static CatalogSnapshot open(Path path) throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Snapshot file too large: " + channel.size());
+      }
+      // The mapping stays valid after the channel is closed.
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    return fromBuffer(buffer);
+  }
+
+  /** Creates a snapshot view over the given buffer, which must hold a snapshot file. */
+  static CatalogSnapshot fromBuffer(ByteBuffer buffer) throws IOException {
+    if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a catalog snapshot file.");
+    }
+    int version = buffer.getInt(4);
+    if (version != VERSION) {
+      throw new IOException("Unsupported snapshot version: " + version);
+    }
+    int type = buffer.getInt(8);
+    if (type < 0 || type >= RecordType.values().length) {
+      throw new IOException("Unknown record type: " + type);
+    }
+    int count = buffer.getInt(12);
+    if (count < 0 || (long) HEADER_SIZE + (long) count * INDEX_ENTRY_SIZE > buffer.limit()) {
+      throw new IOException("Snapshot index is truncated.");
+    }
+    return new CatalogSnapshot(buffer, RecordType.values()[type], count);
+  }
+
+  /** The type of records stored in this snapshot. */
+  public RecordType getRecordType() {
+    return mRecordType;
+  }
+
+  /** The number of records in this snapshot. */
+  public int size() {
+    return mCount;
+  }
+
+  /**
+   * Decodes the record at the given index as a full app.
+   *
+   * @throws IllegalStateException if this snapshot holds {@link AppNano} records.
+   */
+  public App getApp(int index) throws InvalidProtocolBufferException {
+    Preconditions.checkState(mRecordType == RecordType.APP, "Snapshot holds AppNano records.");
+    return App.parseFrom(getRecordBytes(index));
+  }
+
+  /**
+   * Decodes the record at the given index as a nano app. Works for both record
+   * types; full app records are reduced to their nano fields.
+   */
+  public AppNano getAppNano(int index) throws InvalidProtocolBufferException {
+    if (mRecordType == RecordType.APP_NANO) {
+      return AppNano.parseFrom(getRecordBytes(index));
+    }
+    App app = App.parseFrom(getRecordBytes(index));
+    AppNano.Builder nano = AppNano.newBuilder()
+        .setId(app.getId())
+        .setName(app.getName())
+        .setVersion(app.getVersion())
+        .setReleaseYear(app.getReleaseYear())
+        .setAuthor(app.getAuthor());
+    if (app.hasExtTrs80()) {
+      nano.setExtTrs80(app.getExtTrs80());
+    }
+    return nano.build();
+  }
+
+  /** Returns a read-only view of the raw serialized record at the given index. */
+  public ByteBuffer getRecord(int index) {
+    Preconditions.checkElementIndex(index, mCount);
+    int entry = HEADER_SIZE + index * INDEX_ENTRY_SIZE;
+    int offset = mBuffer.getInt(entry);
+    int length = mBuffer.getInt(entry + 4);
+    Preconditions.checkState(
+        offset >= 0 && length >= 0 && (long) offset + length <= mBuffer.limit(),
+        "Corrupt index entry %s.", index);
+    ByteBuffer record = mBuffer.duplicate();
+    record.position(offset);
+    record.limit(offset + length);
+    return record.slice().asReadOnlyBuffer();
+  }
+
+  private byte[] getRecordBytes(int index) {
+    ByteBuffer record = getRecord(index);
+    byte[] bytes = new byte[record.remaining()];
+    record.get(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.catalog;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import org.retrostore.ApiException;
+import org.retrostore.Pager;
+import org.retrostore.RetrostoreClient;
+import org.retrostore.client.common.proto.App;
+import org.retrostore.client.common.proto.AppNano;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes catalog snapshot files that can be opened with {@link CatalogSnapshot}.
+ * <p>
+ * Files are written to a temporary sibling first and then moved into place, so
+ * readers never observe a partially written snapshot.
+ */
+public final class CatalogSnapshotWriter {
+  private CatalogSnapshotWriter() {
+  }
+
+  /** Writes a snapshot holding the given full app records. */
+  public static void writeApps(Path path, List<App> apps) throws IOException {
+    write(path, CatalogSnapshot.RecordType.APP, apps);
+  }
+
+  /** Writes a snapshot holding the given nano app records. */
+  public static void writeAppsNano(Path path, List<AppNano> apps) throws IOException {
+    write(path, CatalogSnapshot.RecordType.APP_NANO, apps);
+  }
+
+  /**
+   * Fetches the complete catalog page by page and writes it as a snapshot of
+   * full app records.
+   *
+   * @param client   the client to fetch the catalog with.
+   * @param path     where to write the snapshot.
+   * @param pageSize the number of apps to request per call.
+   * @return The number of apps written.
+   */
+  public static int mirror(RetrostoreClient client, Path path, int pageSize)
+      throws ApiException, IOException {
+    Preconditions.checkArgument(pageSize > 0, "pageSize must be positive.");
+    List<App> apps = new ArrayList<>();
+    Pager<App> pager = new Pager<>(client::fetchApps, 0);
+    List<App> page;
+    while ((page = pager.next(pageSize)) != null) {
+      apps.addAll(page);
+    }
+    writeApps(path, apps);
+    return apps.size();
+  }
+
+  private static void write(Path path,
+                            CatalogSnapshot.RecordType type,
+                            List<? extends MessageLite> records) throws IOException {
+    int count = records.size();
+    ByteBuffer header = ByteBuffer.allocate(
+        CatalogSnapshot.HEADER_SIZE + count * CatalogSnapshot.INDEX_ENTRY_SIZE);
+    header.putInt(CatalogSnapshot.MAGIC);
+    header.putInt(CatalogSnapshot.VERSION);
+    header.putInt(type.ordinal());
+    header.putInt(count);
+
+    long offset = header.capacity();
+    for (MessageLite record : records) {
+      int length = record.getSerializedSize();
+      if (offset + length > Integer.MAX_VALUE) {
+        throw new IOException("Catalog too large for a single snapshot file.");
+      }
+      header.putInt((int) offset);
+      header.putInt(length);
+      offset += length;
+    }
+    header.flip();
+
+    Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), "snapshot", ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+        while (header.hasRemaining()) {
+          channel.write(header);
+        }
+        OutputStream out = Channels.newOutputStream(channel);
+        CodedOutputStream codedOut = CodedOutputStream.newInstance(out);
+        for (MessageLite record : records) {
+          record.writeTo(codedOut);
+        }
+        codedOut.flush();
+        channel.force(false);
+      }
+      Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.disk;
+
+/** The TRS-80 disk image formats understood by {@link DiskImageReader}. */
+public enum DiskFormat {
+  /** Headerless, single-sided, 10 sectors of 256 bytes per track. */
+  JV1,
+  /** A table of sector headers followed by the sector data in table order. */
+  JV3,
+  /** Raw track data including address marks, as read by a floppy controller. */
+  DMK
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.disk;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.retrostore.ApiException;
+import org.retrostore.RetrostoreClient;
+import org.retrostore.client.common.proto.MediaImageRef;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads sectors of a remote TRS-80 disk image on demand, so that mounting a
+ * disk takes a few small requests instead of downloading all of it.
+ * <p>
+ * Opening a disk fetches the first region of the image, which holds the JV3
+ * sector headers, or the first tracks of JV1 and DMK images, and then the
+ * directory track. Further sectors are fetched with
+ * {@link RetrostoreClient#fetchMediaImageRegion(MediaImageRef, int, int)}
+ * when first read and kept in a bounded sector cache.
+ */
+public final class DiskImageReader {
+  /** Covers the complete JV3 header block, and thereby track 0 of JV1 and DMK images. */
+  private static final int HEAD_LENGTH = Jv3Layout.HEADER_SIZE;
+  private static final int DEFAULT_MAX_CACHED_SECTORS = 1024;
+  /** Where TRSDOS and its descendants keep the directory by default. */
+  private static final int DEFAULT_DIRECTORY_TRACK = 17;
+  /** The offset within the boot sector holding the directory track number. */
+  private static final int BOOT_SECTOR_DIRECTORY_TRACK = 2;
+
+  private final RegionReader mReader;
+  private final DiskLayout mLayout;
+  private final Cache<Integer, byte[]> mSectorCache;
+  /**
+   * The sector numbers of each track read so far. Tracks of layouts that read
+   * whole tracks are only fetched again if their sectors were evicted, and
+   * never for sectors they do not have.
+   */
+  private final Map<Integer, SortedSet<Integer>> mTrackSectors = new ConcurrentHashMap<>();
+
+  private DiskImageReader(RegionReader reader, DiskLayout layout, int maxCachedSectors) {
+    mReader = reader;
+    mLayout = layout;
+    mSectorCache = CacheBuilder.newBuilder().maximumSize(maxCachedSectors).build();
+  }
+
+  /** Opens the given disk image and prefetches its directory track. */
+  public static DiskImageReader open(RetrostoreClient client, MediaImageRef ref)
+      throws ApiException {
+    return open(client, ref, DEFAULT_MAX_CACHED_SECTORS);
+  }
+
+  /**
+   * Opens the given disk image and prefetches its directory track.
+   *
+   * @param maxCachedSectors the maximum number of sectors kept in memory.
+   * @throws ApiException if the image cannot be fetched or is not in a known
+   *                      format.
+   */
+  public static DiskImageReader open(RetrostoreClient client, MediaImageRef ref,
+                                     int maxCachedSectors) throws ApiException {
+    Preconditions.checkArgument(maxCachedSectors > 0, "maxCachedSectors must be positive.");
+    RegionReader reader = RegionReader.open(client, ref, HEAD_LENGTH);
+    DiskImageReader disk = new DiskImageReader(reader, detect(reader, ref.getFilename()),
+        maxCachedSectors);
+    disk.prefetchDirectoryTrack();
+    return disk;
+  }
+
+  /**
+   * Detects the format, trusting the file extension first. JV1 is tried last,
+   * as any image of a suitable size passes as JV1.
+   */
+  private static DiskLayout detect(RegionReader reader, String filename) throws ApiException {
+    String name = filename.toLowerCase(Locale.US);
+    DiskLayout layout = null;
+    if (name.endsWith(".jv1")) {
+      layout = Jv1Layout.detect(reader.size());
+    } else if (name.endsWith(".jv3")) {
+      layout = Jv3Layout.detect(reader);
+    } else if (name.endsWith(".dmk")) {
+      layout = DmkLayout.detect(reader.head(), reader.size());
+    }
+    if (layout == null) {
+      layout = DmkLayout.detect(reader.head(), reader.size());
+    }
+    if (layout == null) {
+      layout = Jv3Layout.detect(reader);
+    }
+    if (layout == null) {
+      layout = Jv1Layout.detect(reader.size());
+    }
+    if (layout == null) {
+      throw new ApiException("Unknown disk image format: " + filename);
+    }
+    return layout;
+  }
+
+  public DiskFormat getFormat() {
+    return mLayout.format();
+  }
+
+  public int getTrackCount() {
+    return mLayout.trackCount();
+  }
+
+  public int getSideCount() {
+    return mLayout.sideCount();
+  }
+
+  /** The numbers of the sectors on the given track, in ascending order. */
+  public SortedSet<Integer> getSectorNumbers(int track, int side) throws ApiException {
+    if (!mLayout.readsWholeTracks()) {
+      return mLayout.sectorNumbers(mReader, track, side);
+    }
+    SortedSet<Integer> sectors = mTrackSectors.get(trackKey(track, side));
+    if (sectors == null) {
+      sectors = readTrack(track, side);
+    }
+    return new TreeSet<>(sectors);
+  }
+
+  /**
+   * Reads a sector, fetching it if it is not cached.
+   *
+   * @return A copy of the sector data, or null if the sector does not exist.
+   */
+  public byte[] readSector(int track, int side, int sector) throws ApiException {
+    int key = key(track, side, sector);
+    byte[] data = mSectorCache.getIfPresent(key);
+    if (data == null) {
+      if (mLayout.readsWholeTracks()) {
+        SortedSet<Integer> sectors = mTrackSectors.get(trackKey(track, side));
+        if (sectors == null || sectors.contains(sector)) {
+          prefetchTrack(track, side);
+          data = mSectorCache.getIfPresent(key);
+        }
+      } else {
+        data = mLayout.readSector(mReader, track, side, sector);
+        if (data != null) {
+          mSectorCache.put(key, data);
+        }
+      }
+    }
+    return data != null ? data.clone() : null;
+  }
+
+  /** Fetches all sectors of the given track with as few requests as possible. */
+  public void prefetchTrack(int track, int side) throws ApiException {
+    readTrack(track, side);
+  }
+
+  /** Fetches and caches all sectors of the given track and returns their numbers. */
+  private SortedSet<Integer> readTrack(int track, int side) throws ApiException {
+    Map<Integer, byte[]> sectors = mLayout.readTrack(mReader, track, side);
+    for (Map.Entry<Integer, byte[]> sector : sectors.entrySet()) {
+      mSectorCache.put(key(track, side, sector.getKey()), sector.getValue());
+    }
+    SortedSet<Integer> numbers =
+        Collections.unmodifiableSortedSet(new TreeSet<>(sectors.keySet()));
+    mTrackSectors.put(trackKey(track, side), numbers);
+    return numbers;
+  }
+
+  /**
+   * Fetches the directory track, as named by the boot sector, falling back to
+   * track 17.
+   *
+   * @return The directory track number.
+   */
+  public int prefetchDirectoryTrack() throws ApiException {
+    int directoryTrack = DEFAULT_DIRECTORY_TRACK;
+    SortedSet<Integer> bootTrack = getSectorNumbers(0, 0);
+    if (!bootTrack.isEmpty()) {
+      byte[] bootSector = readSector(0, 0, bootTrack.first());
+      if (bootSector != null && bootSector.length > BOOT_SECTOR_DIRECTORY_TRACK) {
+        int track = bootSector[BOOT_SECTOR_DIRECTORY_TRACK] & 0xFF;
+        if (track > 0 && track < getTrackCount()) {
+          directoryTrack = track;
+        }
+      }
+    }
+    if (directoryTrack < getTrackCount()) {
+      prefetchTrack(directoryTrack, 0);
+    }
+    return directoryTrack;
+  }
+
+  private static int key(int track, int side, int sector) {
+    return (track << 9) | (side << 8) | (sector & 0xFF);
+  }
+
+  private static int trackKey(int track, int side) {
+    return key(track, side, 0);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.disk;
+
+import org.retrostore.ApiException;
+
+import java.util.Map;
+import java.util.SortedSet;
+
+/** Maps the sectors of one disk image format to byte ranges of the image. */
+abstract class DiskLayout {
+
+  abstract DiskFormat format();
+
+  abstract int trackCount();
+
+  abstract int sideCount();
+
+  /** The numbers of the sectors on the given track, in ascending order. */
+  abstract SortedSet<Integer> sectorNumbers(RegionReader in, int track, int side)
+      throws ApiException;
+
+  /** Reads all sectors of the given track with as few requests as possible. */
+  abstract Map<Integer, byte[]> readTrack(RegionReader in, int track, int side)
+      throws ApiException;
+
+  /** Reads a single sector, or returns null if it does not exist. */
+  byte[] readSector(RegionReader in, int track, int side, int sector) throws ApiException {
+    return readTrack(in, track, side).get(sector);
+  }
+
+  /** Whether single sectors can only be read together with their whole track. */
+  boolean readsWholeTracks() {
+    return false;
+  }
+
+  static int readUint16(byte[] bytes, int offset) {
+    return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.disk;
+
+import org.retrostore.ApiException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * DMK: a 16 byte header followed by raw tracks of a fixed length. Each track
+ * starts with a table of 64 pointers to the ID address marks of its sectors.
+ * Sectors can only be located by scanning their track, so tracks are always
+ * read as a whole.
+ */
+final class DmkLayout extends DiskLayout {
+  static final int HEADER_SIZE = 16;
+  private static final int IDAM_TABLE_SIZE = 128;
+  private static final int MAX_TRACK_LENGTH = 0x4000;
+  private static final int FLAG_SINGLE_SIDED = 0x10;
+  private static final int FLAG_SINGLE_DENSITY = 0x40;
+  private static final int FLAG_IGNORE_DENSITY = 0x80;
+  private static final int IDAM_DOUBLE_DENSITY = 0x8000;
+  private static final int IDAM_OFFSET_MASK = 0x3FFF;
+  private static final int ID_ADDRESS_MARK = 0xFE;
+  /** How far after the ID field the data address mark is searched, in bytes. */
+  private static final int DATA_MARK_WINDOW = 64;
+
+  private final int mTrackCount;
+  private final int mSideCount;
+  private final int mTrackLength;
+  private final int mFlags;
+
+  private DmkLayout(int trackCount, int sideCount, int trackLength, int flags) {
+    mTrackCount = trackCount;
+    mSideCount = sideCount;
+    mTrackLength = trackLength;
+    mFlags = flags;
+  }
+
+  /** Returns the layout if the header is consistent with the image size, otherwise null. */
+  static DmkLayout detect(byte[] head, long size) {
+    if (head.length < HEADER_SIZE) {
+      return null;
+    }
+    int writeProtect = head[0] & 0xFF;
+    int trackCount = head[1] & 0xFF;
+    int trackLength = readUint16(head, 2);
+    int flags = head[4] & 0xFF;
+    int sideCount = (flags & FLAG_SINGLE_SIDED) != 0 ? 1 : 2;
+    if ((writeProtect != 0 && writeProtect != 0xFF)
+        || trackCount == 0
+        || trackLength <= IDAM_TABLE_SIZE
+        || trackLength > MAX_TRACK_LENGTH
+        || HEADER_SIZE + (long) trackCount * sideCount * trackLength != size) {
+      return null;
+    }
+    return new DmkLayout(trackCount, sideCount, trackLength, flags);
+  }
+
+  @Override
+  DiskFormat format() {
+    return DiskFormat.DMK;
+  }
+
+  @Override
+  int trackCount() {
+    return mTrackCount;
+  }
+
+  @Override
+  int sideCount() {
+    return mSideCount;
+  }
+
+  @Override
+  boolean readsWholeTracks() {
+    return true;
+  }
+
+  @Override
+  SortedSet<Integer> sectorNumbers(RegionReader in, int track, int side) throws ApiException {
+    return new TreeSet<>(readTrack(in, track, side).keySet());
+  }
+
+  @Override
+  Map<Integer, byte[]> readTrack(RegionReader in, int track, int side) throws ApiException {
+    Map<Integer, byte[]> sectors = new HashMap<>();
+    if (track < 0 || track >= mTrackCount || side < 0 || side >= mSideCount) {
+      return sectors;
+    }
+    long offset = HEADER_SIZE + ((long) track * mSideCount + side) * mTrackLength;
+    byte[] bytes = in.read(offset, mTrackLength);
+
+    for (int i = 0; i < IDAM_TABLE_SIZE; i += 2) {
+      int pointer = readUint16(bytes, i);
+      if (pointer == 0) {
+        break;
+      }
+      boolean doubleDensity = (pointer & IDAM_DOUBLE_DENSITY) != 0;
+      // Single density bytes are stored twice, unless the header says otherwise.
+      int step = doubleDensity || (mFlags & (FLAG_SINGLE_DENSITY | FLAG_IGNORE_DENSITY)) != 0
+          ? 1 : 2;
+      int idam = pointer & IDAM_OFFSET_MASK;
+      // The ID field: mark, track, side, sector, size code and a two byte CRC.
+      if (idam + 7 * step > bytes.length || (bytes[idam] & 0xFF) != ID_ADDRESS_MARK) {
+        continue;
+      }
+      int sector = bytes[idam + 3 * step] & 0xFF;
+      int length = 128 << (bytes[idam + 4 * step] & 0x03);
+      int dataStart = findDataStart(bytes, idam + 7 * step, step);
+      if (dataStart < 0 || dataStart + length * step > bytes.length) {
+        continue;
+      }
+      byte[] data = new byte[length];
+      for (int j = 0; j < length; ++j) {
+        data[j] = bytes[dataStart + j * step];
+      }
+      sectors.putIfAbsent(sector, data);
+    }
+    return sectors;
+  }
+
+  /** Returns the offset of the first data byte after the data address mark, or -1. */
+  private static int findDataStart(byte[] bytes, int from, int step) {
+    int end = Math.min(bytes.length, from + DATA_MARK_WINDOW * step);
+    for (int i = from; i < end; i += step) {
+      int mark = bytes[i] & 0xFF;
+      // 0xF8 to 0xFB mark normal and deleted data.
+      if (mark >= 0xF8 && mark <= 0xFB) {
+        return i + step;
+      }
+      // Another ID address mark means this sector has no data.
+      if (mark == ID_ADDRESS_MARK) {
+        return -1;
+      }
+    }
+    return -1;
+  }
+}
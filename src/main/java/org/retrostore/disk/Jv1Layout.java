@@ -0,0 +1,98 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.disk;
+
+import org.retrostore.ApiException;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/** JV1: single-sided tracks of 10 sectors with 256 bytes each and no header. */
+final class Jv1Layout extends DiskLayout {
+  static final int SECTOR_SIZE = 256;
+  static final int SECTORS_PER_TRACK = 10;
+  private static final int TRACK_SIZE = SECTOR_SIZE * SECTORS_PER_TRACK;
+
+  private final int mTrackCount;
+
+  private Jv1Layout(int trackCount) {
+    mTrackCount = trackCount;
+  }
+
+  /** Returns the layout if the image size fits JV1, otherwise null. */
+  static Jv1Layout detect(long size) {
+    if (size == 0 || size % TRACK_SIZE != 0) {
+      return null;
+    }
+    return new Jv1Layout((int) (size / TRACK_SIZE));
+  }
+
+  @Override
+  DiskFormat format() {
+    return DiskFormat.JV1;
+  }
+
+  @Override
+  int trackCount() {
+    return mTrackCount;
+  }
+
+  @Override
+  int sideCount() {
+    return 1;
+  }
+
+  @Override
+  SortedSet<Integer> sectorNumbers(RegionReader in, int track, int side) {
+    SortedSet<Integer> sectors = new TreeSet<>();
+    if (exists(track, side)) {
+      for (int sector = 0; sector < SECTORS_PER_TRACK; ++sector) {
+        sectors.add(sector);
+      }
+    }
+    return sectors;
+  }
+
+  @Override
+  Map<Integer, byte[]> readTrack(RegionReader in, int track, int side) throws ApiException {
+    Map<Integer, byte[]> sectors = new HashMap<>();
+    if (!exists(track, side)) {
+      return sectors;
+    }
+    byte[] bytes = in.read((long) track * TRACK_SIZE, TRACK_SIZE);
+    for (int sector = 0; sector < SECTORS_PER_TRACK; ++sector) {
+      sectors.put(sector,
+          Arrays.copyOfRange(bytes, sector * SECTOR_SIZE, (sector + 1) * SECTOR_SIZE));
+    }
+    return sectors;
+  }
+
+  @Override
+  byte[] readSector(RegionReader in, int track, int side, int sector) throws ApiException {
+    if (!exists(track, side) || sector < 0 || sector >= SECTORS_PER_TRACK) {
+      return null;
+    }
+    return in.read(((long) track * SECTORS_PER_TRACK + sector) * SECTOR_SIZE, SECTOR_SIZE);
+  }
+
+  private boolean exists(int track, int side) {
+    return side == 0 && track >= 0 && track < mTrackCount;
+  }
+}
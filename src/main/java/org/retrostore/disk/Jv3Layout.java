@@ -0,0 +1,186 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.disk;
+
+import org.retrostore.ApiException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * JV3: blocks of 2901 three-byte sector headers (track, sector, flags) and a
+ * write-protect byte, followed by the data of those sectors in header order.
+ * <p>
+ * Unused header slots are FF FF FF, which is also the header of a free
+ * 256-byte sector, so they cannot be told apart by themselves. Their data
+ * may be left out at the end of the image. A further block follows if the
+ * image extends past the data of all headers of a block.
+ */
+final class Jv3Layout extends DiskLayout {
+  private static final int SECTORS_PER_BLOCK = 2901;
+  static final int HEADER_SIZE = SECTORS_PER_BLOCK * 3 + 1;
+  private static final int FREE = 0xFF;
+  private static final int FLAG_SIDE = 0x10;
+  private static final int FLAG_SIZE = 0x03;
+  /** The size of the sector an FF FF FF header stands for. */
+  private static final int FREE_SECTOR_SIZE = 256;
+  /** Spans between sectors of one track that are read in one request anyway. */
+  private static final int MAX_TRACK_SPAN = 32 * 1024;
+
+  /** Sector locations keyed by {@link #key(int, int, int)}, in image order. */
+  private final Map<Integer, long[]> mSectors;
+  private final int mTrackCount;
+  private final int mSideCount;
+
+  private Jv3Layout(Map<Integer, long[]> sectors, int trackCount, int sideCount) {
+    mSectors = sectors;
+    mTrackCount = trackCount;
+    mSideCount = sideCount;
+  }
+
+  /**
+   * Parses the sector headers. Returns null if they are inconsistent with the
+   * image size, i.e. the image is not JV3.
+   */
+  static Jv3Layout detect(RegionReader in) throws ApiException {
+    long size = in.size();
+    if (size < HEADER_SIZE) {
+      return null;
+    }
+    Map<Integer, long[]> sectors = new LinkedHashMap<>();
+    int trackCount = 0;
+    int sideCount = 1;
+    byte[] header = Arrays.copyOf(in.head(), HEADER_SIZE);
+    long blockStart = 0;
+    while (true) {
+      long offset = blockStart + HEADER_SIZE;
+      // The end of the data that must be present: up to the last header that
+      // is not FF FF FF.
+      long requiredEnd = offset;
+      for (int i = 0; i < SECTORS_PER_BLOCK; ++i) {
+        int track = header[i * 3] & 0xFF;
+        int sector = header[i * 3 + 1] & 0xFF;
+        int flags = header[i * 3 + 2] & 0xFF;
+        // Sizes are encoded differently for used and free sectors.
+        int sizeCode = (flags & FLAG_SIZE) ^ (track == FREE ? 2 : 1);
+        int length = 128 << sizeCode;
+        if (track != FREE) {
+          int side = (flags & FLAG_SIDE) != 0 ? 1 : 0;
+          sectors.putIfAbsent(key(track, side, sector), new long[]{offset, length});
+          trackCount = Math.max(trackCount, track + 1);
+          sideCount = Math.max(sideCount, side + 1);
+        }
+        offset += length;
+        if (track != FREE || sector != FREE || flags != FREE) {
+          requiredEnd = offset;
+        }
+      }
+      if (requiredEnd > size) {
+        return null;
+      }
+      if (offset >= size) {
+        // Data of trailing FF FF FF headers is either there or left out.
+        if ((size - requiredEnd) % FREE_SECTOR_SIZE != 0) {
+          return null;
+        }
+        break;
+      }
+      if (offset + HEADER_SIZE > size) {
+        return null;
+      }
+      blockStart = offset;
+      header = in.read(blockStart, HEADER_SIZE);
+    }
+    if (sectors.isEmpty()) {
+      return null;
+    }
+    return new Jv3Layout(sectors, trackCount, sideCount);
+  }
+
+  @Override
+  DiskFormat format() {
+    return DiskFormat.JV3;
+  }
+
+  @Override
+  int trackCount() {
+    return mTrackCount;
+  }
+
+  @Override
+  int sideCount() {
+    return mSideCount;
+  }
+
+  @Override
+  SortedSet<Integer> sectorNumbers(RegionReader in, int track, int side) {
+    SortedSet<Integer> sectors = new TreeSet<>();
+    int prefix = key(track, side, 0);
+    for (int key : mSectors.keySet()) {
+      if ((key & ~0xFF) == prefix) {
+        sectors.add(key & 0xFF);
+      }
+    }
+    return sectors;
+  }
+
+  @Override
+  Map<Integer, byte[]> readTrack(RegionReader in, int track, int side) throws ApiException {
+    List<Integer> numbers = new ArrayList<>(sectorNumbers(in, track, side));
+    Map<Integer, byte[]> sectors = new HashMap<>();
+    if (numbers.isEmpty()) {
+      return sectors;
+    }
+    long start = Long.MAX_VALUE;
+    long end = 0;
+    for (int sector : numbers) {
+      long[] location = mSectors.get(key(track, side, sector));
+      start = Math.min(start, location[0]);
+      end = Math.max(end, location[0] + location[1]);
+    }
+    if (end - start > MAX_TRACK_SPAN) {
+      // The sectors are scattered over the image, e.g. after reformatting.
+      for (int sector : numbers) {
+        sectors.put(sector, readSector(in, track, side, sector));
+      }
+      return sectors;
+    }
+    byte[] span = in.read(start, (int) (end - start));
+    for (int sector : numbers) {
+      long[] location = mSectors.get(key(track, side, sector));
+      int from = (int) (location[0] - start);
+      sectors.put(sector, Arrays.copyOfRange(span, from, from + (int) location[1]));
+    }
+    return sectors;
+  }
+
+  @Override
+  byte[] readSector(RegionReader in, int track, int side, int sector) throws ApiException {
+    long[] location = mSectors.get(key(track, side, sector));
+    return location != null ? in.read(location[0], (int) location[1]) : null;
+  }
+
+  private static int key(int track, int side, int sector) {
+    return (track << 9) | (side << 8) | sector;
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.disk;
+
+import org.retrostore.ApiException;
+import org.retrostore.RetrostoreClient;
+import org.retrostore.client.common.proto.MediaImageRef;
+
+/**
+ * Reads byte ranges of a remote media image. The first bytes are fetched once
+ * when the reader is created and served locally afterwards.
+ */
+final class RegionReader {
+  private final RetrostoreClient mClient;
+  private final MediaImageRef mRef;
+  private final byte[] mHead;
+
+  private RegionReader(RetrostoreClient client, MediaImageRef ref, byte[] head) {
+    mClient = client;
+    mRef = ref;
+    mHead = head;
+  }
+
+  static RegionReader open(RetrostoreClient client, MediaImageRef ref, int headLength)
+      throws ApiException {
+    int length = Math.min(headLength, ref.getSize());
+    return new RegionReader(client, ref, client.fetchMediaImageRegion(ref, 0, length));
+  }
+
+  /** The size of the complete image. */
+  long size() {
+    return mRef.getSize();
+  }
+
+  /** The bytes fetched when the reader was created. Must not be modified. */
+  byte[] head() {
+    return mHead;
+  }
+
+  byte[] read(long offset, int length) throws ApiException {
+    if (offset < 0 || length < 0 || offset + length > size()) {
+      throw new ApiException(String.format("Disk image is truncated: cannot read %d bytes " +
+          "at offset %d of %d.", length, offset, size()));
+    }
+    byte[] bytes = new byte[length];
+    int fromHead = (int) Math.max(0, Math.min(length, mHead.length - offset));
+    if (fromHead > 0) {
+      System.arraycopy(mHead, (int) offset, bytes, 0, fromHead);
+    }
+    if (fromHead < length) {
+      mClient.fetchMediaImageRegion(mRef, (int) offset + fromHead, length - fromHead,
+          bytes, fromHead);
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.flow;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.retrostore.ApiException;
+import org.retrostore.Pager;
+import org.retrostore.RetrostoreClient;
+import org.retrostore.client.common.proto.AppNano;
+import org.retrostore.client.common.proto.MediaType;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Publishes a listing of apps, fetching pages through
+ * {@link RetrostoreClient#fetchAppsNano(int, int, String, Set)} only as the
+ * subscriber requests apps. A page is never larger than the outstanding
+ * demand, up to the page size, so at most one page is buffered.
+ * <p>
+ * Every subscriber gets the listing from its start.
+ */
+public final class AppNanoPublisher extends PullPublisher<AppNano> {
+  private static final int DEFAULT_PAGE_SIZE = 50;
+
+  private final RetrostoreClient mClient;
+  private final String mQuery;
+  private final Set<MediaType> mMediaTypes;
+  private final int mPageSize;
+
+  private AppNanoPublisher(Builder builder, Executor executor) {
+    super(executor);
+    mClient = builder.mClient;
+    mQuery = builder.mQuery;
+    mMediaTypes = builder.mMediaTypes;
+    mPageSize = builder.mPageSize;
+  }
+
+  public static Builder newBuilder(RetrostoreClient client) {
+    return new Builder(client);
+  }
+
+  @Override
+  Cursor<AppNano> newCursor() {
+    Pager<AppNano> pager = new Pager<>(
+        (start, num) -> mClient.fetchAppsNano(start, num, mQuery, mMediaTypes), 0);
+    return demand -> pager.next((int) Math.min(demand, mPageSize));
+  }
+
+  public static final class Builder {
+    private final RetrostoreClient mClient;
+    private String mQuery = "";
+    private Set<MediaType> mMediaTypes = EnumSet.noneOf(MediaType.class);
+    private int mPageSize = DEFAULT_PAGE_SIZE;
+    private Executor mExecutor;
+
+    private Builder(RetrostoreClient client) {
+      mClient = Preconditions.checkNotNull(client);
+    }
+
+    public Builder setQuery(String query) {
+      mQuery = Preconditions.checkNotNull(query);
+      return this;
+    }
+
+    /** Only list apps that have media images of the given types. */
+    public Builder setMediaTypes(Set<MediaType> mediaTypes) {
+      mMediaTypes = Preconditions.checkNotNull(mediaTypes);
+      return this;
+    }
+
+    /** The maximum number of apps to fetch with one request. */
+    public Builder setPageSize(int pageSize) {
+      Preconditions.checkArgument(pageSize > 0, "pageSize must be positive.");
+      mPageSize = pageSize;
+      return this;
+    }
+
+    /**
+     * The executor on which requests are made and subscribers are signalled.
+     * By default, a cached pool of daemon threads is used.
+     */
+    public Builder setExecutor(Executor executor) {
+      mExecutor = Preconditions.checkNotNull(executor);
+      return this;
+    }
+
+    public AppNanoPublisher build() {
+      Executor executor = mExecutor != null ? mExecutor : Executors.newCachedThreadPool(
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("app-publisher-%d").build());
+      return new AppNanoPublisher(this, executor);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.flow;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.retrostore.ApiException;
+import org.retrostore.RetrostoreClient;
+import org.retrostore.client.common.proto.MediaImageRef;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Publishes a media image as a sequence of read-only chunks, each fetched
+ * through
+ * {@link RetrostoreClient#fetchMediaImageRegion(MediaImageRef, int, int)}
+ * only once the subscriber requests it. No chunk is fetched ahead of demand.
+ * <p>
+ * Every subscriber gets the complete range.
+ */
+public final class MediaRegionPublisher extends PullPublisher<ByteBuffer> {
+  private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+  private final RetrostoreClient mClient;
+  private final MediaImageRef mRef;
+  private final int mStart;
+  private final int mEnd;
+  private final int mChunkSize;
+
+  private MediaRegionPublisher(Builder builder, Executor executor) {
+    super(executor);
+    mClient = builder.mClient;
+    mRef = builder.mRef;
+    mStart = builder.mStart;
+    mEnd = builder.mStart + (builder.mLength >= 0
+        ? builder.mLength
+        : builder.mRef.getSize() - builder.mStart);
+    mChunkSize = builder.mChunkSize;
+  }
+
+  /** Creates a builder for publishing the complete image with the given ref. */
+  public static Builder newBuilder(RetrostoreClient client, MediaImageRef ref) {
+    return new Builder(client, ref);
+  }
+
+  @Override
+  Cursor<ByteBuffer> newCursor() {
+    return new Cursor<ByteBuffer>() {
+      private int mPosition = mStart;
+
+      @Override
+      public List<ByteBuffer> next(long demand) throws ApiException {
+        if (mPosition >= mEnd) {
+          return null;
+        }
+        int length = Math.min(mChunkSize, mEnd - mPosition);
+        byte[] chunk = mClient.fetchMediaImageRegion(mRef, mPosition, length);
+        mPosition += length;
+        return Collections.singletonList(ByteBuffer.wrap(chunk).asReadOnlyBuffer());
+      }
+    };
+  }
+
+  public static final class Builder {
+    private final RetrostoreClient mClient;
+    private final MediaImageRef mRef;
+    private int mStart;
+    private int mLength = -1;
+    private int mChunkSize = DEFAULT_CHUNK_SIZE;
+    private Executor mExecutor;
+
+    private Builder(RetrostoreClient client, MediaImageRef ref) {
+      mClient = Preconditions.checkNotNull(client);
+      mRef = Preconditions.checkNotNull(ref);
+    }
+
+    /** Only publish the given range of the image. */
+    public Builder setRange(int start, int length) {
+      Preconditions.checkArgument(start >= 0 && length >= 0, "Invalid range.");
+      mStart = start;
+      mLength = length;
+      return this;
+    }
+
+    /** The size of a single region request, and of the published chunks. */
+    public Builder setChunkSize(int chunkSize) {
+      Preconditions.checkArgument(chunkSize > 0, "chunkSize must be positive.");
+      mChunkSize = chunkSize;
+      return this;
+    }
+
+    /**
+     * The executor on which requests are made and subscribers are signalled.
+     * By default, a cached pool of daemon threads is used.
+     */
+    public Builder setExecutor(Executor executor) {
+      mExecutor = Preconditions.checkNotNull(executor);
+      return this;
+    }
+
+    public MediaRegionPublisher build() {
+      long end = mLength >= 0 ? (long) mStart + mLength : mRef.getSize();
+      Preconditions.checkArgument(mStart <= end && end <= mRef.getSize(),
+          "Range exceeds the image size of %s bytes.", mRef.getSize());
+      Executor executor = mExecutor != null ? mExecutor : Executors.newCachedThreadPool(
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("region-publisher-%d").build());
+      return new MediaRegionPublisher(this, executor);
+    }
+  }
+}
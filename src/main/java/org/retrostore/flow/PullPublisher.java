@@ -0,0 +1,181 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.flow;
+
+import com.google.common.base.Preconditions;
+import org.retrostore.ApiException;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A publisher that pulls batches of items from a blocking source only while
+ * its subscriber has outstanding demand.
+ * <p>
+ * Each subscription reads from its own {@link Cursor}. All signals to a
+ * subscriber, starting with onSubscribe, are issued from a single drain loop
+ * on the executor, so they never overlap. Blocking requests run on the
+ * executor as well, never on the thread calling
+ * {@link Flow.Subscription#request(long)}.
+ *
+ * @param <T> the type of the published items.
+ */
+abstract class PullPublisher<T> implements Flow.Publisher<T> {
+  /** Reads batches from the source for a single subscription. */
+  interface Cursor<T> {
+    /**
+     * Fetches the next batch.
+     *
+     * @param demand the number of items the subscriber still wants, which a
+     *               batch may exceed, for example if the source has a minimum
+     *               size.
+     * @return the next, possibly empty batch, or null at the end.
+     */
+    List<T> next(long demand) throws ApiException;
+  }
+
+  private final Executor mExecutor;
+
+  PullPublisher(Executor executor) {
+    mExecutor = executor;
+  }
+
+  /** Creates the cursor for a new subscription. */
+  abstract Cursor<T> newCursor();
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super T> subscriber) {
+    Preconditions.checkNotNull(subscriber);
+    new PullSubscription(subscriber, newCursor()).schedule();
+  }
+
+  private final class PullSubscription implements Flow.Subscription, Runnable {
+    private final Flow.Subscriber<? super T> mSubscriber;
+    private final Cursor<T> mCursor;
+    private final AtomicLong mRequested = new AtomicLong();
+    private final AtomicInteger mWip = new AtomicInteger();
+    private volatile boolean mCancelled;
+    private volatile Throwable mPendingError;
+
+    // Only accessed by the thread that holds the work-in-progress count.
+    private boolean mSubscribed;
+    private boolean mDone;
+    private List<T> mBatch = Collections.emptyList();
+    private int mIndex;
+
+    PullSubscription(Flow.Subscriber<? super T> subscriber, Cursor<T> cursor) {
+      mSubscriber = subscriber;
+      mCursor = cursor;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        mPendingError = new IllegalArgumentException("Demand must be positive: " + n);
+      } else {
+        mRequested.accumulateAndGet(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+      }
+      schedule();
+    }
+
+    @Override
+    public void cancel() {
+      mCancelled = true;
+    }
+
+    /** Makes sure that the drain loop runs after this call. */
+    void schedule() {
+      if (mWip.getAndIncrement() != 0) {
+        return;
+      }
+      try {
+        mExecutor.execute(this);
+      } catch (RejectedExecutionException e) {
+        // The work-in-progress count is never released, so this thread owns
+        // the signals, which must still start with onSubscribe.
+        mCancelled = true;
+        if (!mSubscribed) {
+          mSubscribed = true;
+          mSubscriber.onSubscribe(this);
+        }
+        if (!mDone) {
+          fail(e);
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      if (!mSubscribed) {
+        mSubscribed = true;
+        mSubscriber.onSubscribe(this);
+      }
+      int missed = 1;
+      do {
+        drain();
+        missed = mWip.addAndGet(-missed);
+      } while (missed != 0);
+    }
+
+    private void drain() {
+      while (!mCancelled && !mDone) {
+        Throwable error = mPendingError;
+        if (error != null) {
+          fail(error);
+          return;
+        }
+        long requested = mRequested.get();
+        if (requested == 0) {
+          return;
+        }
+        if (mIndex < mBatch.size()) {
+          T item = mBatch.get(mIndex++);
+          if (requested != Long.MAX_VALUE) {
+            mRequested.decrementAndGet();
+          }
+          mSubscriber.onNext(item);
+          continue;
+        }
+        List<T> batch;
+        try {
+          batch = mCursor.next(requested);
+        } catch (ApiException | RuntimeException e) {
+          fail(e);
+          return;
+        }
+        if (batch == null) {
+          mDone = true;
+          mSubscriber.onComplete();
+          return;
+        }
+        mBatch = batch;
+        mIndex = 0;
+      }
+    }
+
+    private void fail(Throwable error) {
+      mDone = true;
+      mBatch = Collections.emptyList();
+      mSubscriber.onError(error);
+    }
+  }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.media;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.retrostore.ApiException;
+import org.retrostore.RetrostoreClient;
+import org.retrostore.client.common.proto.App;
+import org.retrostore.client.common.proto.MediaImageRef;
+import org.retrostore.client.common.proto.MediaType;
+import org.retrostore.net.AdaptiveChunker;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches everything needed to boot an app with as little latency as
+ * possible.
+ * <p>
+ * {@link RetrostoreClient#getApp(String)} and
+ * {@link RetrostoreClient#fetchMediaImageRefs(String, Set)} are issued
+ * concurrently. As soon as the refs arrive, the boot image is downloaded, split
+ * into concurrent region requests if it is large, while the app metadata may
+ * still be in flight. Data prefetched by a {@link MediaPrefetcher} is used
+ * instead of fetching it again.
+ */
+public final class AppLauncher {
+  /** Media types that can be booted from, in order of preference. */
+  private static final List<MediaType> BOOT_TYPES = List.of(MediaType.COMMAND, MediaType.DISK);
+  private static final int DEFAULT_REGION_SIZE = 256 * 1024;
+
+  private final RetrostoreClient mClient;
+  private final Executor mExecutor;
+  private final int mRegionSize;
+  private final MediaPrefetcher mPrefetcher;
+  private final AdaptiveChunker mChunker;
+
+  private AppLauncher(RetrostoreClient client, Executor executor, int regionSize,
+                      MediaPrefetcher prefetcher, AdaptiveChunker chunker) {
+    mClient = client;
+    mExecutor = executor;
+    mRegionSize = regionSize;
+    mPrefetcher = prefetcher;
+    mChunker = chunker;
+  }
+
+  public static Builder newBuilder(RetrostoreClient client) {
+    return new Builder(client);
+  }
+
+  /**
+   * Starts fetching the app with the given ID and its boot image.
+   *
+   * @return A future that completes once the boot image has been downloaded.
+   * It fails with an {@link ApiException} if a request failed or the app has
+   * no {@link MediaType#COMMAND} or {@link MediaType#DISK} image.
+   */
+  public CompletableFuture<LaunchBundle> launch(String appId) {
+    PrefetchedMedia prefetched = mPrefetcher != null ? mPrefetcher.get(appId) : null;
+    CompletableFuture<App> app = CompletableFuture.supplyAsync(() -> {
+      try {
+        return mClient.getApp(appId);
+      } catch (ApiException e) {
+        throw new CompletionException(e);
+      }
+    }, mExecutor);
+    CompletableFuture<List<MediaImageRef>> refs = prefetched != null
+        ? CompletableFuture.completedFuture(prefetched.getMediaImageRefs())
+        : CompletableFuture.supplyAsync(() -> {
+          try {
+            return mClient.fetchMediaImageRefs(appId, bootTypes());
+          } catch (ApiException e) {
+            throw new CompletionException(e);
+          }
+        }, mExecutor);
+    byte[] head = prefetched != null ? prefetched.getBootImageHead() : new byte[0];
+    CompletableFuture<LaunchBundle> bundle = refs.thenCompose(r -> {
+      MediaImageRef bootRef = findBootImage(r);
+      if (bootRef == null) {
+        throw new CompletionException(new ApiException(
+            "App has no bootable media image: " + appId));
+      }
+      return download(bootRef, head).thenCombine(app,
+          (bootImage, a) -> new LaunchBundle(a, r, bootRef, bootImage));
+    });
+    // Fail fast if getApp fails while the boot image is still downloading.
+    app.whenComplete((a, t) -> {
+      if (t != null) {
+        bundle.completeExceptionally(t);
+      }
+    });
+    return bundle;
+  }
+
+  /** The media types that can be booted from. */
+  static Set<MediaType> bootTypes() {
+    return EnumSet.copyOf(BOOT_TYPES);
+  }
+
+  /** Returns the image to boot from, or null if there is none. */
+  static MediaImageRef findBootImage(List<MediaImageRef> refs) {
+    return refs.stream()
+        .filter(ref -> ref.getSize() > 0 && BOOT_TYPES.contains(ref.getType()))
+        .min(Comparator.<MediaImageRef>comparingInt(ref -> BOOT_TYPES.indexOf(ref.getType()))
+            .thenComparing(MediaImageRef::getFilename))
+        .orElse(null);
+  }
+
+  /**
+   * Downloads the complete image, in concurrent regions if it is large. The
+   * given head, if any, is used instead of downloading its bytes again.
+   */
+  private CompletableFuture<byte[]> download(MediaImageRef ref, byte[] head) {
+    int size = ref.getSize();
+    byte[] data = new byte[size];
+    int headLength = Math.min(head.length, size);
+    System.arraycopy(head, 0, data, 0, headLength);
+    int regionSize = mRegionSize;
+    int workers = Integer.MAX_VALUE;
+    if (mChunker != null) {
+      AdaptiveChunker.Plan plan = mChunker.plan(AdaptiveChunker.MEDIA_IMAGE_REGION,
+          size - headLength);
+      regionSize = plan.getChunkSize();
+      workers = plan.getParallelism();
+    }
+    Queue<Integer> starts = new ConcurrentLinkedQueue<>();
+    for (int start = headLength; start < size; start += regionSize) {
+      starts.add(start);
+    }
+
+    // Each worker takes regions until none are left, bounding the concurrency.
+    // After a failure, the workers stop taking regions.
+    int finalRegionSize = regionSize;
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicBoolean failed = new AtomicBoolean();
+    List<CompletableFuture<Void>> regions = new ArrayList<>();
+    for (int i = Math.min(workers, starts.size()); i > 0; --i) {
+      regions.add(CompletableFuture.runAsync(() -> {
+        Integer start;
+        while (!failed.get() && (start = starts.poll()) != null) {
+          int length = Math.min(finalRegionSize, size - start);
+          try {
+            fetchRegion(ref, start, length, data, inFlight);
+          } catch (ApiException e) {
+            failed.set(true);
+            throw new CompletionException(e);
+          } catch (RuntimeException e) {
+            failed.set(true);
+            throw e;
+          }
+        }
+      }, mExecutor));
+    }
+    return CompletableFuture.allOf(regions.toArray(new CompletableFuture<?>[0]))
+        .thenApply(v -> data);
+  }
+
+  private void fetchRegion(MediaImageRef ref, int start, int length, byte[] data,
+                           AtomicInteger inFlight) throws ApiException {
+    int concurrency = inFlight.incrementAndGet();
+    long startTime = System.nanoTime();
+    try {
+      mClient.fetchMediaImageRegion(ref, start, length, data, start);
+    } finally {
+      inFlight.decrementAndGet();
+    }
+    if (mChunker != null) {
+      mChunker.record(AdaptiveChunker.MEDIA_IMAGE_REGION, length, System.nanoTime() - startTime,
+          concurrency);
+    }
+  }
+
+  public static final class Builder {
+    private final RetrostoreClient mClient;
+    private Executor mExecutor;
+    private int mRegionSize = DEFAULT_REGION_SIZE;
+    private MediaPrefetcher mPrefetcher;
+    private AdaptiveChunker mChunker;
+
+    private Builder(RetrostoreClient client) {
+      mClient = Preconditions.checkNotNull(client);
+    }
+
+    /**
+     * The executor to issue requests on. It should allow at least two
+     * concurrent tasks. By default, a cached pool of daemon threads is used.
+     */
+    public Builder setExecutor(Executor executor) {
+      mExecutor = Preconditions.checkNotNull(executor);
+      return this;
+    }
+
+    /** Boot images larger than this are downloaded as concurrent regions of this size. */
+    public Builder setRegionSize(int regionSize) {
+      Preconditions.checkArgument(regionSize > 0, "regionSize must be positive.");
+      mRegionSize = regionSize;
+      return this;
+    }
+
+    /** Use the media prefetched by the given prefetcher, if available. */
+    public Builder setPrefetcher(MediaPrefetcher prefetcher) {
+      mPrefetcher = prefetcher;
+      return this;
+    }
+
+    /**
+     * Chooses the region size and the number of concurrent region requests
+     * from the timings measured by the given chunker, instead of using a fixed
+     * region size, and reports the timings back to it.
+     */
+    public Builder setChunker(AdaptiveChunker chunker) {
+      mChunker = Preconditions.checkNotNull(chunker);
+      return this;
+    }
+
+    public AppLauncher build() {
+      Executor executor = mExecutor != null ? mExecutor : Executors.newCachedThreadPool(
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("app-launcher-%d").build());
+      return new AppLauncher(mClient, executor, mRegionSize, mPrefetcher, mChunker);
+    }
+  }
+}
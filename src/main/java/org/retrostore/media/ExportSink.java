@@ -0,0 +1,120 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.media;
+
+import org.retrostore.buffer.SegmentedBuffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Where a {@link MediaExporter} writes images to. Implementations are
+ * thread-safe.
+ * <p>
+ * Each image gets a distinct path, even if an app has two images with the
+ * same filename or {@link #safeName(String)} maps two names together: later
+ * ones get a counter suffix, e.g. `disk_2.dsk`. Names are compared ignoring
+ * case, for case-insensitive file systems.
+ */
+abstract class ExportSink implements Closeable {
+  private final Set<String> mUsedPaths = new HashSet<>();
+
+  /** Writes the data of the image with the given filename that belongs to the given app. */
+  final void write(String appId, String filename, SegmentedBuffer data) throws IOException {
+    writeEntry(uniquePath(safeName(appId), safeName(filename)), data);
+  }
+
+  /** Writes an image to the given unique `<appId>/<filename>` path. */
+  abstract void writeEntry(String path, SegmentedBuffer data) throws IOException;
+
+  private synchronized String uniquePath(String appId, String filename) {
+    int dot = filename.lastIndexOf('.');
+    String base = dot > 0 ? filename.substring(0, dot) : filename;
+    String extension = dot > 0 ? filename.substring(dot) : "";
+    String path = appId + "/" + filename;
+    for (int i = 2; !mUsedPaths.add(path.toLowerCase(Locale.ROOT)); ++i) {
+      path = appId + "/" + base + "_" + i + extension;
+    }
+    return path;
+  }
+
+  /** Writes each image to `<directory>/<appId>/<filename>`. */
+  static ExportSink toDirectory(Path directory) throws IOException {
+    Files.createDirectories(directory);
+    return new ExportSink() {
+      @Override
+      void writeEntry(String path, SegmentedBuffer data) throws IOException {
+        Path file = directory.resolve(path);
+        Files.createDirectories(file.getParent());
+        try (FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+          data.writeTo(channel);
+        }
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+  }
+
+  /** Writes each image as a `<appId>/<filename>` entry of a new ZIP file. */
+  static ExportSink toZip(Path zipFile) throws IOException {
+    FileChannel channel = FileChannel.open(zipFile, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    ZipOutputStream zip = new ZipOutputStream(Channels.newOutputStream(channel));
+    return new ExportSink() {
+      @Override
+      void writeEntry(String path, SegmentedBuffer data) throws IOException {
+        // Entries cannot be interleaved, so concurrent writers take turns.
+        synchronized (zip) {
+          zip.putNextEntry(new ZipEntry(path));
+          data.writeTo((OutputStream) zip);
+          zip.closeEntry();
+        }
+      }
+
+      @Override
+      public void close() throws IOException {
+        synchronized (zip) {
+          zip.close();
+        }
+      }
+    };
+  }
+
+  /** Makes sure server-provided names cannot escape the target. */
+  static String safeName(String name) {
+    String safe = name.replaceAll("[/\\\\:]", "_");
+    if (safe.isEmpty() || safe.equals(".") || safe.equals("..")) {
+      return "_" + safe;
+    }
+    return safe;
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.media;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of the progress of a {@link MediaExporter} run, including its
+ * throughput.
+ */
+public final class ExportStats {
+  private final int mApps;
+  private final int mImages;
+  private final long mBytes;
+  private final long mElapsedNanos;
+  private final Map<String, String> mFailures;
+
+  ExportStats(int apps, int images, long bytes, long elapsedNanos, Map<String, String> failures) {
+    mApps = apps;
+    mImages = images;
+    mBytes = bytes;
+    mElapsedNanos = elapsedNanos;
+    mFailures = Collections.unmodifiableMap(failures);
+  }
+
+  /** The number of apps whose media image refs have been fetched. */
+  public int getApps() {
+    return mApps;
+  }
+
+  /** The number of images written. */
+  public int getImages() {
+    return mImages;
+  }
+
+  /** The number of image bytes written. */
+  public long getBytes() {
+    return mBytes;
+  }
+
+  public long getElapsedMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(mElapsedNanos);
+  }
+
+  /** The average number of image bytes written per second. */
+  public double getBytesPerSecond() {
+    return mElapsedNanos == 0 ? 0 : mBytes * 1e9 / mElapsedNanos;
+  }
+
+  /**
+   * Apps or images that could not be exported, mapped to the reason. Keys are
+   * either an app ID or `appId/filename`.
+   */
+  public Map<String, String> getFailures() {
+    return mFailures;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d apps, %d images, %d bytes in %d ms (%.1f KB/s), %d failures",
+        mApps, mImages, mBytes, getElapsedMillis(), getBytesPerSecond() / 1024,
+        mFailures.size());
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.media;
+
+import org.retrostore.client.common.proto.App;
+import org.retrostore.client.common.proto.MediaImageRef;
+
+import java.util.List;
+
+/** Everything needed to boot an app, as returned by {@link AppLauncher}. */
+public final class LaunchBundle {
+  private final App mApp;
+  private final List<MediaImageRef> mMediaImageRefs;
+  private final MediaImageRef mBootImageRef;
+  private final byte[] mBootImage;
+
+  LaunchBundle(App app, List<MediaImageRef> mediaImageRefs, MediaImageRef bootImageRef,
+               byte[] bootImage) {
+    mApp = app;
+    mMediaImageRefs = mediaImageRefs;
+    mBootImageRef = bootImageRef;
+    mBootImage = bootImage;
+  }
+
+  public App getApp() {
+    return mApp;
+  }
+
+  /** All boot-relevant media image refs of the app, e.g. to load further disks later. */
+  public List<MediaImageRef> getMediaImageRefs() {
+    return mMediaImageRefs;
+  }
+
+  /** The ref of the image to boot from. */
+  public MediaImageRef getBootImageRef() {
+    return mBootImageRef;
+  }
+
+  /** The complete data of the image to boot from. */
+  public byte[] getBootImage() {
+    return mBootImage;
+  }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.media;
+
+import com.google.common.base.Preconditions;
+import org.retrostore.ApiException;
+import org.retrostore.Pager;
+import org.retrostore.RetrostoreClient;
+import org.retrostore.buffer.SegmentedBuffer;
+import org.retrostore.client.common.proto.AppNano;
+import org.retrostore.client.common.proto.MediaImageRef;
+import org.retrostore.client.common.proto.MediaType;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Exports the media images of many apps to a directory or a ZIP file.
+ * <p>
+ * The export runs as a pipeline of three stages connected by bounded queues:
+ * listing app IDs, fetching the media image refs of each app, and downloading
+ * and writing each image. The stages run concurrently, so the export is
+ * limited by bandwidth rather than by the latency of each request.
+ * <p>
+ * Failures of single apps or images are recorded in the returned
+ * {@link ExportStats} and do not stop the export. Failing to write to the
+ * target, or to list the apps of a query, aborts it.
+ */
+public final class MediaExporter {
+  // Compared by identity, so they cannot be confused with real entries.
+  @SuppressWarnings("StringOperationCanBeSimplified")
+  private static final String END_OF_IDS = new String("<end>");
+  private static final ImageJob END_OF_IMAGES = new ImageJob(null, null);
+
+  private final RetrostoreClient mClient;
+  private final int mRefThreads;
+  private final int mDownloadThreads;
+  private final int mQueueCapacity;
+  private final Set<MediaType> mMediaTypes;
+  private final Consumer<ExportStats> mProgressListener;
+
+  private MediaExporter(Builder builder) {
+    mClient = builder.mClient;
+    mRefThreads = builder.mRefThreads;
+    mDownloadThreads = builder.mDownloadThreads;
+    mQueueCapacity = builder.mQueueCapacity;
+    mMediaTypes = builder.mMediaTypes;
+    mProgressListener = builder.mProgressListener;
+  }
+
+  public static Builder newBuilder(RetrostoreClient client) {
+    return new Builder(client);
+  }
+
+  /** Exports the images of the given apps to `<directory>/<appId>/<filename>`. */
+  public ExportStats exportToDirectory(Collection<String> appIds, Path directory)
+      throws ApiException, IOException, InterruptedException {
+    return run(ids -> putAll(appIds, ids), ExportSink.toDirectory(directory));
+  }
+
+  /** Exports the images of the given apps as `<appId>/<filename>` entries of a ZIP file. */
+  public ExportStats exportToZip(Collection<String> appIds, Path zipFile)
+      throws ApiException, IOException, InterruptedException {
+    return run(ids -> putAll(appIds, ids), ExportSink.toZip(zipFile));
+  }
+
+  /**
+   * Like {@link #exportToDirectory(Collection, Path)} for all apps matching
+   * the query, which are listed page by page while the export runs.
+   */
+  public ExportStats exportQueryToDirectory(String searchQuery, Set<MediaType> hasMediaTypes,
+                                            int pageSize, Path directory)
+      throws ApiException, IOException, InterruptedException {
+    return run(ids -> listApps(searchQuery, hasMediaTypes, pageSize, ids),
+        ExportSink.toDirectory(directory));
+  }
+
+  /**
+   * Like {@link #exportToZip(Collection, Path)} for all apps matching the
+   * query, which are listed page by page while the export runs.
+   */
+  public ExportStats exportQueryToZip(String searchQuery, Set<MediaType> hasMediaTypes,
+                                      int pageSize, Path zipFile)
+      throws ApiException, IOException, InterruptedException {
+    return run(ids -> listApps(searchQuery, hasMediaTypes, pageSize, ids),
+        ExportSink.toZip(zipFile));
+  }
+
+  private interface IdSource {
+    void produce(BlockingQueue<String> ids) throws ApiException, InterruptedException;
+  }
+
+  private static void putAll(Collection<String> appIds, BlockingQueue<String> ids)
+      throws InterruptedException {
+    for (String appId : new HashSet<>(appIds)) {
+      ids.put(appId);
+    }
+  }
+
+  private void listApps(String searchQuery, Set<MediaType> hasMediaTypes, int pageSize,
+                        BlockingQueue<String> ids) throws ApiException, InterruptedException {
+    Preconditions.checkArgument(pageSize > 0, "pageSize must be positive.");
+    Pager<AppNano> pager = new Pager<>(
+        (start, num) -> mClient.fetchAppsNano(start, num, searchQuery, hasMediaTypes), 0);
+    List<AppNano> page;
+    while ((page = pager.next(pageSize)) != null) {
+      for (AppNano app : page) {
+        ids.put(app.getId());
+      }
+    }
+  }
+
+  private ExportStats run(IdSource source, ExportSink sink)
+      throws ApiException, IOException, InterruptedException {
+    Progress progress = new Progress();
+    BlockingQueue<String> ids = new ArrayBlockingQueue<>(mQueueCapacity);
+    BlockingQueue<ImageJob> images = new ArrayBlockingQueue<>(mQueueCapacity);
+    AtomicInteger activeRefWorkers = new AtomicInteger(mRefThreads);
+
+    ExecutorService executor = Executors.newFixedThreadPool(1 + mRefThreads + mDownloadThreads);
+    CompletionService<Void> stages = new ExecutorCompletionService<>(executor);
+    try (ExportSink target = sink) {
+      stages.submit(() -> {
+        try {
+          source.produce(ids);
+        } finally {
+          for (int i = 0; i < mRefThreads; ++i) {
+            ids.put(END_OF_IDS);
+          }
+        }
+        return null;
+      });
+      for (int i = 0; i < mRefThreads; ++i) {
+        stages.submit(() -> {
+          try {
+            fetchRefs(ids, images, progress);
+          } finally {
+            // The last ref worker tells the download workers that no more images follow.
+            if (activeRefWorkers.decrementAndGet() == 0) {
+              for (int j = 0; j < mDownloadThreads; ++j) {
+                images.put(END_OF_IMAGES);
+              }
+            }
+          }
+          return null;
+        });
+      }
+      for (int i = 0; i < mDownloadThreads; ++i) {
+        stages.submit(() -> {
+          download(images, target, progress);
+          return null;
+        });
+      }
+
+      for (int i = 0; i < 1 + mRefThreads + mDownloadThreads; ++i) {
+        try {
+          stages.take().get();
+        } catch (ExecutionException e) {
+          rethrow(e.getCause());
+        }
+      }
+    } finally {
+      // Stops the remaining stages if one of them failed.
+      executor.shutdownNow();
+    }
+    return progress.snapshot();
+  }
+
+  private void fetchRefs(BlockingQueue<String> ids, BlockingQueue<ImageJob> images,
+                         Progress progress) throws InterruptedException {
+    String appId;
+    while ((appId = ids.take()) != END_OF_IDS) {
+      List<MediaImageRef> refs;
+      try {
+        refs = mClient.fetchMediaImageRefs(appId, mMediaTypes);
+      } catch (ApiException e) {
+        progress.fail(appId, e);
+        continue;
+      }
+      progress.mApps.incrementAndGet();
+      for (MediaImageRef ref : refs) {
+        // Skip zero-size "UNKNOWN" entries, like fetchMediaImages does.
+        if (ref.getSize() > 0) {
+          images.put(new ImageJob(appId, ref));
+        }
+      }
+    }
+  }
+
+  private void download(BlockingQueue<ImageJob> images, ExportSink sink, Progress progress)
+      throws InterruptedException, IOException {
+    ImageJob job;
+    while ((job = images.take()) != END_OF_IMAGES) {
+      MediaImageRef ref = job.mRef;
+      SegmentedBuffer data = null;
+      try {
+        data = mClient.fetchMediaImageRegionSegmented(ref, 0, ref.getSize());
+      } catch (ApiException e) {
+        progress.fail(job.mAppId + "/" + ref.getFilename(), e);
+      }
+      if (data != null) {
+        // A failed write, e.g. on a full disk, aborts the export.
+        try (SegmentedBuffer written = data) {
+          sink.write(job.mAppId, ref.getFilename(), written);
+          progress.mImages.incrementAndGet();
+          progress.mBytes.addAndGet(written.size());
+        }
+      }
+      if (mProgressListener != null) {
+        mProgressListener.accept(progress.snapshot());
+      }
+    }
+  }
+
+  private static void rethrow(Throwable cause)
+      throws ApiException, IOException, InterruptedException {
+    if (cause instanceof ApiException) {
+      throw (ApiException) cause;
+    }
+    if (cause instanceof IOException) {
+      throw (IOException) cause;
+    }
+    if (cause instanceof InterruptedException) {
+      throw (InterruptedException) cause;
+    }
+    if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    throw new IllegalStateException(cause);
+  }
+
+  private static final class ImageJob {
+    final String mAppId;
+    final MediaImageRef mRef;
+
+    ImageJob(String appId, MediaImageRef ref) {
+      mAppId = appId;
+      mRef = ref;
+    }
+  }
+
+  private static final class Progress {
+    final long mStartNanos = System.nanoTime();
+    final AtomicInteger mApps = new AtomicInteger();
+    final AtomicInteger mImages = new AtomicInteger();
+    final AtomicLong mBytes = new AtomicLong();
+    final Map<String, String> mFailures = new ConcurrentHashMap<>();
+
+    void fail(String key, Exception e) {
+      mFailures.put(key, String.valueOf(e.getMessage()));
+    }
+
+    ExportStats snapshot() {
+      return new ExportStats(mApps.get(), mImages.get(), mBytes.get(),
+          System.nanoTime() - mStartNanos, new HashMap<>(mFailures));
+    }
+  }
+
+  public static final class Builder {
+    private final RetrostoreClient mClient;
+    private int mRefThreads = 4;
+    private int mDownloadThreads = 8;
+    private int mQueueCapacity = 64;
+    private Set<MediaType> mMediaTypes = new HashSet<>();
+    private Consumer<ExportStats> mProgressListener;
+
+    private Builder(RetrostoreClient client) {
+      mClient = Preconditions.checkNotNull(client);
+    }
+
+    /** The number of concurrent `fetchMediaImageRefs` calls. */
+    public Builder setRefThreads(int refThreads) {
+      Preconditions.checkArgument(refThreads > 0, "refThreads must be positive.");
+      mRefThreads = refThreads;
+      return this;
+    }
+
+    /** The number of images downloaded and written concurrently. */
+    public Builder setDownloadThreads(int downloadThreads) {
+      Preconditions.checkArgument(downloadThreads > 0, "downloadThreads must be positive.");
+      mDownloadThreads = downloadThreads;
+      return this;
+    }
+
+    /** The capacity of the queues between the stages. */
+    public Builder setQueueCapacity(int queueCapacity) {
+      Preconditions.checkArgument(queueCapacity > 0, "queueCapacity must be positive.");
+      mQueueCapacity = queueCapacity;
+      return this;
+    }
+
+    /** Only export images of the given types. All types are exported if empty. */
+    public Builder setMediaTypes(Set<MediaType> mediaTypes) {
+      mMediaTypes = new HashSet<>(mediaTypes);
+      return this;
+    }
+
+    /** Called from the download threads after each image. */
+    public Builder setProgressListener(Consumer<ExportStats> progressListener) {
+      mProgressListener = progressListener;
+      return this;
+    }
+
+    public MediaExporter build() {
+      return new MediaExporter(this);
+    }
+  }
+}
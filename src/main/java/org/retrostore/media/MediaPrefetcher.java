@@ -0,0 +1,172 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.media;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.retrostore.ApiException;
+import org.retrostore.RetrostoreClient;
+import org.retrostore.client.common.proto.AppNano;
+import org.retrostore.client.common.proto.MediaImageRef;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Speculatively fetches the media of the apps a user is most likely to launch
+ * next: the first entries of the listing currently shown.
+ * <p>
+ * Prefetching runs on a single low-priority thread. Results are kept in a
+ * bounded cache that is dropped whenever a new listing is shown. Pass the
+ * prefetcher to {@link AppLauncher.Builder#setPrefetcher(MediaPrefetcher)} so
+ * that launches use the prefetched data.
+ */
+public final class MediaPrefetcher implements Closeable {
+  private static final int DEFAULT_TOP_K = 3;
+  private static final int DEFAULT_HEAD_SIZE = 32 * 1024;
+
+  private final RetrostoreClient mClient;
+  private final int mTopK;
+  private final int mHeadSize;
+  private final ExecutorService mExecutor;
+  private final Cache<String, PrefetchedMedia> mCache;
+  private final List<Future<?>> mPending = new ArrayList<>();
+  private int mGeneration;
+
+  private MediaPrefetcher(Builder builder) {
+    mClient = builder.mClient;
+    mTopK = builder.mTopK;
+    mHeadSize = builder.mHeadSize;
+    mExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setPriority(Thread.MIN_PRIORITY)
+        .setNameFormat("media-prefetcher-%d")
+        .build());
+    mCache = CacheBuilder.newBuilder().maximumSize(builder.mMaxCachedApps).build();
+  }
+
+  public static Builder newBuilder(RetrostoreClient client) {
+    return new Builder(client);
+  }
+
+  /**
+   * Call whenever a new listing, e.g. from
+   * {@link RetrostoreClient#fetchAppsNano(int, int)}, is shown. Drops all
+   * results and pending work for the previous listing and starts prefetching
+   * the first entries of this one, in order.
+   */
+  public synchronized void onListingShown(List<AppNano> listing) {
+    clear();
+    int generation = mGeneration;
+    for (AppNano app : listing.subList(0, Math.min(mTopK, listing.size()))) {
+      String appId = app.getId();
+      mPending.add(mExecutor.submit(() -> prefetch(appId, generation)));
+    }
+  }
+
+  /** Returns the prefetched media of the given app, or null if there is none (yet). */
+  public PrefetchedMedia get(String appId) {
+    return mCache.getIfPresent(appId);
+  }
+
+  /** Drops all prefetched data and pending work. */
+  public synchronized void clear() {
+    mGeneration++;
+    for (Future<?> pending : mPending) {
+      pending.cancel(false);
+    }
+    mPending.clear();
+    mCache.invalidateAll();
+  }
+
+  @Override
+  public void close() {
+    clear();
+    mExecutor.shutdownNow();
+  }
+
+  private synchronized boolean isCurrent(int generation) {
+    return generation == mGeneration;
+  }
+
+  private void prefetch(String appId, int generation) {
+    try {
+      if (!isCurrent(generation)) {
+        return;
+      }
+      List<MediaImageRef> refs = mClient.fetchMediaImageRefs(appId, AppLauncher.bootTypes());
+      MediaImageRef bootRef = AppLauncher.findBootImage(refs);
+      byte[] head = new byte[0];
+      if (bootRef != null && mHeadSize > 0 && isCurrent(generation)) {
+        head = mClient.fetchMediaImageRegion(bootRef, 0, Math.min(mHeadSize, bootRef.getSize()));
+      }
+      synchronized (this) {
+        // The listing may have changed while the requests were in flight.
+        if (generation == mGeneration) {
+          mCache.put(appId, new PrefetchedMedia(refs, bootRef, head));
+        }
+      }
+    } catch (ApiException e) {
+      // Prefetching is best effort. A launch fetches whatever is missing.
+    }
+  }
+
+  public static final class Builder {
+    private final RetrostoreClient mClient;
+    private int mTopK = DEFAULT_TOP_K;
+    private int mHeadSize = DEFAULT_HEAD_SIZE;
+    private int mMaxCachedApps = 16;
+
+    private Builder(RetrostoreClient client) {
+      mClient = Preconditions.checkNotNull(client);
+    }
+
+    /** How many of the first entries of a listing to prefetch. */
+    public Builder setTopK(int topK) {
+      Preconditions.checkArgument(topK >= 0, "topK must not be negative.");
+      mTopK = topK;
+      return this;
+    }
+
+    /**
+     * How many bytes of each boot image to prefetch. Images up to this size
+     * are prefetched completely. Set to 0 to only prefetch the refs.
+     */
+    public Builder setBootImageHeadSize(int headSize) {
+      Preconditions.checkArgument(headSize >= 0, "headSize must not be negative.");
+      mHeadSize = headSize;
+      return this;
+    }
+
+    /** The maximum number of apps whose prefetched media is kept. */
+    public Builder setMaxCachedApps(int maxCachedApps) {
+      Preconditions.checkArgument(maxCachedApps > 0, "maxCachedApps must be positive.");
+      mMaxCachedApps = maxCachedApps;
+      return this;
+    }
+
+    public MediaPrefetcher build() {
+      return new MediaPrefetcher(this);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.media;
+
+import org.retrostore.client.common.proto.MediaImageRef;
+
+import java.util.List;
+
+/** The media of an app fetched ahead of time by a {@link MediaPrefetcher}. */
+public final class PrefetchedMedia {
+  private final List<MediaImageRef> mMediaImageRefs;
+  private final MediaImageRef mBootImageRef;
+  private final byte[] mBootImageHead;
+
+  PrefetchedMedia(List<MediaImageRef> mediaImageRefs, MediaImageRef bootImageRef,
+                  byte[] bootImageHead) {
+    mMediaImageRefs = mediaImageRefs;
+    mBootImageRef = bootImageRef;
+    mBootImageHead = bootImageHead;
+  }
+
+  /** The boot-relevant media image refs of the app. */
+  public List<MediaImageRef> getMediaImageRefs() {
+    return mMediaImageRefs;
+  }
+
+  /** The ref of the image to boot from, or null if the app has none. */
+  public MediaImageRef getBootImageRef() {
+    return mBootImageRef;
+  }
+
+  /**
+   * The first bytes of the boot image, possibly all of them. Empty if the app
+   * has no boot image or heads are not prefetched.
+   */
+  public byte[] getBootImageHead() {
+    return mBootImageHead;
+  }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.media;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.retrostore.client.common.proto.App;
+import org.retrostore.net.ConditionalResponse;
+import org.retrostore.net.UrlFetcher;
+import org.retrostore.net.UrlFetcherImpl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Loads app screenshots, see {@link App#getScreenshotUrlList()}.
+ * <p>
+ * Concurrent loads of the same URL share a single request, and at most a
+ * configurable number of requests run at the same time. Screenshots are kept
+ * in a memory cache bounded by total size and, optionally, in a persistent
+ * disk cache. Cached screenshots older than the revalidation interval are
+ * revalidated with a conditional request using their ETag or Last-Modified
+ * value. If revalidation fails, the cached copy is returned.
+ */
+public final class ScreenshotLoader implements Closeable {
+  private static final String DATA_SUFFIX = ".img";
+  private static final String META_SUFFIX = ".meta";
+  private static final String KEY_ETAG = "etag";
+  private static final String KEY_LAST_MODIFIED = "lastModified";
+  private static final String KEY_VALIDATED_AT = "validatedAt";
+
+  private final UrlFetcher mFetcher;
+  private final ExecutorService mExecutor;
+  private final Cache<String, Entry> mMemoryCache;
+  private final Path mDiskCacheDirectory;
+  private final long mRevalidateAfterMillis;
+  private final ConcurrentMap<String, CompletableFuture<byte[]>> mInFlight =
+      new ConcurrentHashMap<>();
+
+  private ScreenshotLoader(Builder builder) {
+    mFetcher = builder.mFetcher;
+    mExecutor = Executors.newFixedThreadPool(builder.mMaxConcurrentLoads,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("screenshot-loader-%d").build());
+    mMemoryCache = CacheBuilder.newBuilder()
+        .maximumWeight(builder.mMemoryCacheBytes)
+        .<String, Entry>weigher((url, entry) -> entry.mData.length)
+        .build();
+    mDiskCacheDirectory = builder.mDiskCacheDirectory;
+    mRevalidateAfterMillis = builder.mRevalidateAfter.toMillis();
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Loads the screenshot at the given URL. Returns a completed future if a
+   * fresh copy is held in memory.
+   */
+  public CompletableFuture<byte[]> load(String url) {
+    Entry cached = mMemoryCache.getIfPresent(url);
+    if (cached != null && isFresh(cached)) {
+      return CompletableFuture.completedFuture(cached.mData);
+    }
+    CompletableFuture<byte[]> future = new CompletableFuture<>();
+    CompletableFuture<byte[]> existing = mInFlight.putIfAbsent(url, future);
+    if (existing != null) {
+      return existing;
+    }
+    try {
+      mExecutor.execute(() -> {
+        try {
+          future.complete(loadBlocking(url));
+        } catch (IOException | RuntimeException e) {
+          future.completeExceptionally(e);
+        } finally {
+          mInFlight.remove(url, future);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // The loader has been closed.
+      mInFlight.remove(url, future);
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /** Loads all screenshots of the given app, in order. */
+  public List<CompletableFuture<byte[]>> loadAll(App app) {
+    return app.getScreenshotUrlList().stream().map(this::load).collect(Collectors.toList());
+  }
+
+  /** Drops all screenshots held in memory. The disk cache is kept. */
+  public void clearMemoryCache() {
+    mMemoryCache.invalidateAll();
+  }
+
+  /**
+   * Stops loading. Pending loads fail with an {@link IOException}, later ones
+   * with a {@link RejectedExecutionException}.
+   */
+  @Override
+  public void close() {
+    // Fail the pending loads before interrupting them, so that a load
+    // finishing after the interrupt cannot complete them anyway. Loads
+    // queued in between are dropped by shutdownNow() and failed after it.
+    failInFlight();
+    mExecutor.shutdownNow();
+    failInFlight();
+  }
+
+  private void failInFlight() {
+    for (CompletableFuture<byte[]> future : mInFlight.values()) {
+      future.completeExceptionally(new IOException("Screenshot loader closed."));
+    }
+    mInFlight.clear();
+  }
+
+  private byte[] loadBlocking(String url) throws IOException {
+    Entry cached = mMemoryCache.getIfPresent(url);
+    if (cached == null) {
+      cached = readFromDisk(url);
+    }
+    if (cached != null && isFresh(cached)) {
+      mMemoryCache.put(url, cached);
+      return cached.mData;
+    }
+
+    ConditionalResponse response;
+    try {
+      response = cached != null
+          ? mFetcher.fetchUrlIfModified(new URL(url), cached.mETag, cached.mLastModified)
+          : mFetcher.fetchUrlIfModified(new URL(url), null, null);
+    } catch (IOException e) {
+      if (cached != null) {
+        // Better a stale screenshot than none at all.
+        mMemoryCache.put(url, cached);
+        return cached.mData;
+      }
+      throw e;
+    }
+
+    Entry entry;
+    if (response.isNotModified() && cached != null) {
+      entry = new Entry(cached.mData, response.getETag(), response.getLastModified(),
+          System.currentTimeMillis());
+    } else if (response.isNotModified()) {
+      throw new IOException("Server reported not modified for an uncached screenshot: " + url);
+    } else {
+      entry = new Entry(response.getBody(), response.getETag(), response.getLastModified(),
+          System.currentTimeMillis());
+    }
+    mMemoryCache.put(url, entry);
+    try {
+      writeToDisk(url, entry, !response.isNotModified());
+    } catch (IOException e) {
+      // The disk cache is best effort, the screenshot has been loaded.
+    }
+    return entry.mData;
+  }
+
+  private boolean isFresh(Entry entry) {
+    return System.currentTimeMillis() - entry.mValidatedAt < mRevalidateAfterMillis;
+  }
+
+  private Path diskPath(String url, String suffix) {
+    String key = Hashing.sha256().hashString(url, StandardCharsets.UTF_8).toString();
+    return mDiskCacheDirectory.resolve(key + suffix);
+  }
+
+  /** Returns the entry from the disk cache, or null if it is missing or unreadable. */
+  private Entry readFromDisk(String url) {
+    if (mDiskCacheDirectory == null) {
+      return null;
+    }
+    try {
+      Properties meta = new Properties();
+      try (InputStream in = Files.newInputStream(diskPath(url, META_SUFFIX))) {
+        meta.load(in);
+      }
+      byte[] data = Files.readAllBytes(diskPath(url, DATA_SUFFIX));
+      return new Entry(data, meta.getProperty(KEY_ETAG), meta.getProperty(KEY_LAST_MODIFIED),
+          Long.parseLong(meta.getProperty(KEY_VALIDATED_AT, "0")));
+    } catch (IOException | NumberFormatException e) {
+      // A corrupt entry is treated like a missing one.
+      return null;
+    }
+  }
+
+  /**
+   * Writes the entry to the disk cache. The data is written first and the
+   * metadata last, each atomically, so that readers never see metadata for
+   * data that is not there.
+   */
+  private void writeToDisk(String url, Entry entry, boolean writeData) throws IOException {
+    if (mDiskCacheDirectory == null) {
+      return;
+    }
+    if (writeData) {
+      writeAtomically(diskPath(url, DATA_SUFFIX), out -> out.write(entry.mData));
+    }
+    Properties meta = new Properties();
+    if (entry.mETag != null) {
+      meta.setProperty(KEY_ETAG, entry.mETag);
+    }
+    if (entry.mLastModified != null) {
+      meta.setProperty(KEY_LAST_MODIFIED, entry.mLastModified);
+    }
+    meta.setProperty(KEY_VALIDATED_AT, Long.toString(entry.mValidatedAt));
+    writeAtomically(diskPath(url, META_SUFFIX), out -> meta.store(out, url));
+  }
+
+  private interface Writer {
+    void writeTo(OutputStream out) throws IOException;
+  }
+
+  private void writeAtomically(Path path, Writer writer) throws IOException {
+    Path tmp = Files.createTempFile(mDiskCacheDirectory, "screenshot", ".tmp");
+    try {
+      try (OutputStream out = Files.newOutputStream(tmp)) {
+        writer.writeTo(out);
+      }
+      Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private static final class Entry {
+    final byte[] mData;
+    final String mETag;
+    final String mLastModified;
+    final long mValidatedAt;
+
+    Entry(byte[] data, String eTag, String lastModified, long validatedAt) {
+      mData = data;
+      mETag = eTag;
+      mLastModified = lastModified;
+      mValidatedAt = validatedAt;
+    }
+  }
+
+  public static final class Builder {
+    private UrlFetcher mFetcher;
+    private int mMaxConcurrentLoads = 4;
+    private long mMemoryCacheBytes = 16 * 1024 * 1024;
+    private Path mDiskCacheDirectory;
+    private Duration mRevalidateAfter = Duration.ofHours(24);
+
+    private Builder() {
+    }
+
+    /**
+     * The transport to load screenshots with. Conditional requests are only
+     * made if it implements {@link UrlFetcher#fetchUrlIfModified}.
+     */
+    public Builder setUrlFetcher(UrlFetcher fetcher) {
+      mFetcher = Preconditions.checkNotNull(fetcher);
+      return this;
+    }
+
+    /** The maximum number of screenshot requests in flight. */
+    public Builder setMaxConcurrentLoads(int maxConcurrentLoads) {
+      Preconditions.checkArgument(maxConcurrentLoads > 0, "maxConcurrentLoads must be positive.");
+      mMaxConcurrentLoads = maxConcurrentLoads;
+      return this;
+    }
+
+    /** The maximum total size of the screenshots held in memory. */
+    public Builder setMemoryCacheBytes(long memoryCacheBytes) {
+      Preconditions.checkArgument(memoryCacheBytes >= 0, "memoryCacheBytes must not be negative.");
+      mMemoryCacheBytes = memoryCacheBytes;
+      return this;
+    }
+
+    /** Persist screenshots in the given directory. Disabled by default. */
+    public Builder setDiskCacheDirectory(Path diskCacheDirectory) {
+      mDiskCacheDirectory = diskCacheDirectory;
+      return this;
+    }
+
+    /** How long a cached screenshot is used before it is revalidated. */
+    public Builder setRevalidateAfter(Duration revalidateAfter) {
+      mRevalidateAfter = Preconditions.checkNotNull(revalidateAfter);
+      return this;
+    }
+
+    public ScreenshotLoader build() throws IOException {
+      if (mDiskCacheDirectory != null) {
+        Files.createDirectories(mDiskCacheDirectory);
+      }
+      if (mFetcher == null) {
+        mFetcher = new UrlFetcherImpl();
+      }
+      return new ScreenshotLoader(this);
+    }
+  }
+}
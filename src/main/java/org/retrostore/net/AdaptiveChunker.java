@@ -0,0 +1,257 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.net;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chooses chunk sizes and parallelism for region downloads from recent
+ * transfer timings, so that the same code performs well on links from LAN
+ * to satellite.
+ * <p>
+ * A request of `bytes` while `concurrency` requests share the link takes
+ * about `rtt + bytes * concurrency / bandwidth`. Per endpoint, the durations
+ * are averaged per size class of `bytes * concurrency`, and a least-squares
+ * line through those averages yields the round-trip time (intercept) and the
+ * bandwidth (inverse slope). Requests of a single size cannot tell the two
+ * apart, so every few plans a probe with a four times larger or smaller chunk
+ * is made, which keeps a second size class up to date. Size classes that have
+ * not been updated for a number of plans are dropped, so that the estimate
+ * follows a changing link instead of fitting timings from before the change.
+ * <p>
+ * Chunks are sized to the bandwidth-delay product, so that each request
+ * spends about as long transferring as waiting, and enough requests run in
+ * parallel to keep twice the bandwidth-delay product in flight. Both are
+ * clamped to the configured bounds.
+ * <p>
+ * Instances are thread-safe and meant to be shared by all downloaders of a
+ * client.
+ */
+public final class AdaptiveChunker {
+  /** The endpoint key for media image region downloads. */
+  public static final String MEDIA_IMAGE_REGION = "fetchMediaImageRegion";
+  /** The endpoint key for system state memory region downloads. */
+  public static final String MEMORY_REGION = "downloadSystemStateMemoryRegion";
+
+  /** Every this many plans, a probe of a different chunk size is made. */
+  private static final int PROBE_INTERVAL = 8;
+  private static final int PROBE_FACTOR = 4;
+  /** The weight of a new sample in the average of its size class. */
+  private static final double SMOOTHING = 0.25;
+  /** Size classes not updated for more plans than this are dropped. */
+  private static final int MAX_CLASS_AGE = 4 * PROBE_INTERVAL;
+
+  private final int mMinChunkSize;
+  private final int mMaxChunkSize;
+  private final int mInitialChunkSize;
+  private final int mMinParallelism;
+  private final int mMaxParallelism;
+  private final Map<String, Estimator> mEstimators = new ConcurrentHashMap<>();
+
+  private AdaptiveChunker(Builder builder) {
+    mMinChunkSize = builder.mMinChunkSize;
+    mMaxChunkSize = builder.mMaxChunkSize;
+    mInitialChunkSize = clampChunkSize(builder.mInitialChunkSize);
+    mMinParallelism = builder.mMinParallelism;
+    mMaxParallelism = builder.mMaxParallelism;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /** How to download a number of bytes. */
+  public static final class Plan {
+    private final int mChunkSize;
+    private final int mParallelism;
+
+    Plan(int chunkSize, int parallelism) {
+      mChunkSize = chunkSize;
+      mParallelism = parallelism;
+    }
+
+    public int getChunkSize() {
+      return mChunkSize;
+    }
+
+    /** The number of chunks to request at the same time. */
+    public int getParallelism() {
+      return mParallelism;
+    }
+
+    @Override
+    public String toString() {
+      return "Plan{chunkSize=" + mChunkSize + ", parallelism=" + mParallelism + "}";
+    }
+  }
+
+  /** Plans the download of the given number of bytes from the given endpoint. */
+  public Plan plan(String endpoint, long totalBytes) {
+    Estimator estimator = mEstimators.computeIfAbsent(endpoint, e -> new Estimator());
+    double bdp = estimator.bandwidthDelayProduct();
+    int chunkSize;
+    int parallelism;
+    if (bdp < 0) {
+      // Nothing measured yet.
+      chunkSize = mInitialChunkSize;
+      parallelism = Math.max(mMinParallelism, mMaxParallelism / 2);
+    } else {
+      chunkSize = clampChunkSize(bdp);
+      parallelism = (int) Math.max(mMinParallelism,
+          Math.min(mMaxParallelism, Math.ceil(2 * bdp / chunkSize)));
+    }
+    // Without an estimate, every other plan probes, afterwards only a few.
+    int interval = bdp < 0 ? 2 : PROBE_INTERVAL;
+    if (estimator.nextPlan() % interval == interval - 1) {
+      chunkSize = probeSize(chunkSize);
+    }
+    long chunks = Math.max(1, (totalBytes + chunkSize - 1) / chunkSize);
+    return new Plan(chunkSize, (int) Math.max(1, Math.min(parallelism, chunks)));
+  }
+
+  /**
+   * Records a finished request.
+   *
+   * @param bytes       the number of bytes transferred.
+   * @param nanos       the duration of the request.
+   * @param concurrency the number of requests to the endpoint that were in
+   *                    flight at the same time, including this one.
+   */
+  public void record(String endpoint, long bytes, long nanos, int concurrency) {
+    Preconditions.checkArgument(concurrency > 0, "concurrency must be positive.");
+    if (nanos <= 0 || bytes <= 0) {
+      return;
+    }
+    mEstimators.computeIfAbsent(endpoint, e -> new Estimator())
+        .add((double) bytes * concurrency, nanos / 1e9);
+  }
+
+  /** The current bandwidth-delay product estimate in bytes, or -1 if unknown. */
+  public double getBandwidthDelayProduct(String endpoint) {
+    Estimator estimator = mEstimators.get(endpoint);
+    return estimator != null ? estimator.bandwidthDelayProduct() : -1;
+  }
+
+  private int clampChunkSize(double size) {
+    return (int) Math.max(mMinChunkSize, Math.min(mMaxChunkSize, size));
+  }
+
+  /** A chunk size in a different size class, within the bounds if possible. */
+  private int probeSize(int chunkSize) {
+    return (long) chunkSize * PROBE_FACTOR <= mMaxChunkSize
+        ? chunkSize * PROBE_FACTOR
+        : Math.max(mMinChunkSize, chunkSize / PROBE_FACTOR);
+  }
+
+  /** Keeps the average duration per size class of one endpoint. */
+  private static final class Estimator {
+    /**
+     * Size classes (log2 of the shared bytes) to {average bytes, average
+     * seconds, plan of the last update}.
+     */
+    private final Map<Integer, double[]> mClasses = new TreeMap<>();
+    private int mPlans;
+
+    synchronized int nextPlan() {
+      return mPlans++;
+    }
+
+    synchronized void add(double bytes, double seconds) {
+      int sizeClass = 63 - Long.numberOfLeadingZeros((long) bytes);
+      double[] average = mClasses.get(sizeClass);
+      if (average == null) {
+        mClasses.put(sizeClass, new double[]{bytes, seconds, mPlans});
+      } else {
+        average[0] += SMOOTHING * (bytes - average[0]);
+        average[1] += SMOOTHING * (seconds - average[1]);
+        average[2] = mPlans;
+      }
+    }
+
+    /** The product of the fitted bandwidth and round-trip time, or -1 if unknown. */
+    synchronized double bandwidthDelayProduct() {
+      mClasses.values().removeIf(average -> mPlans - average[2] > MAX_CLASS_AGE);
+      int n = mClasses.size();
+      if (n < 2) {
+        return -1;
+      }
+      double sumX = 0;
+      double sumY = 0;
+      for (double[] average : mClasses.values()) {
+        sumX += average[0];
+        sumY += average[1];
+      }
+      double meanX = sumX / n;
+      double meanY = sumY / n;
+      double sxx = 0;
+      double sxy = 0;
+      for (double[] average : mClasses.values()) {
+        sxx += (average[0] - meanX) * (average[0] - meanX);
+        sxy += (average[0] - meanX) * (average[1] - meanY);
+      }
+      double secondsPerByte = sxy / sxx;
+      double rtt = meanY - secondsPerByte * meanX;
+      if (secondsPerByte <= 0) {
+        // Transfer time is lost in the noise: the link is as fast as it gets.
+        return 0;
+      }
+      return Math.max(0, rtt) / secondsPerByte;
+    }
+  }
+
+  public static final class Builder {
+    private int mMinChunkSize = 4 * 1024;
+    private int mMaxChunkSize = 1024 * 1024;
+    private int mInitialChunkSize = 64 * 1024;
+    private int mMinParallelism = 1;
+    private int mMaxParallelism = 8;
+
+    private Builder() {
+    }
+
+    public Builder setChunkSizeBounds(int minChunkSize, int maxChunkSize) {
+      Preconditions.checkArgument(minChunkSize > 0 && minChunkSize <= maxChunkSize,
+          "Invalid chunk size bounds.");
+      mMinChunkSize = minChunkSize;
+      mMaxChunkSize = maxChunkSize;
+      return this;
+    }
+
+    /** The chunk size used before anything has been measured. */
+    public Builder setInitialChunkSize(int initialChunkSize) {
+      Preconditions.checkArgument(initialChunkSize > 0, "initialChunkSize must be positive.");
+      mInitialChunkSize = initialChunkSize;
+      return this;
+    }
+
+    public Builder setParallelismBounds(int minParallelism, int maxParallelism) {
+      Preconditions.checkArgument(minParallelism > 0 && minParallelism <= maxParallelism,
+          "Invalid parallelism bounds.");
+      mMinParallelism = minParallelism;
+      mMaxParallelism = maxParallelism;
+      return this;
+    }
+
+    public AdaptiveChunker build() {
+      return new AdaptiveChunker(this);
+    }
+  }
+}
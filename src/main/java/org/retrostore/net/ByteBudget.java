@@ -0,0 +1,86 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.net;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A byte-weighted semaphore that limits how many payload bytes may be in
+ * flight at the same time across all downloads sharing it.
+ * <p>
+ * Requests are admitted in arrival order while their size fits into the
+ * remaining budget. Requests larger than the complete budget can never be
+ * admitted and fail right away.
+ */
+public final class ByteBudget {
+  private final int mCapacity;
+  private final Semaphore mPermits;
+
+  /** @param capacity the maximum number of bytes in flight. */
+  public ByteBudget(int capacity) {
+    Preconditions.checkArgument(capacity > 0, "capacity must be positive.");
+    mCapacity = capacity;
+    // Fair, so that large requests are not starved by a stream of small ones.
+    mPermits = new Semaphore(capacity, true);
+  }
+
+  /** The total number of bytes that may be in flight. */
+  public int getCapacity() {
+    return mCapacity;
+  }
+
+  /** The number of bytes currently available. */
+  public int getAvailable() {
+    return mPermits.availablePermits();
+  }
+
+  /**
+   * Blocks until the given number of bytes fits into the budget.
+   *
+   * @throws IOException if the request is larger than the complete budget, or
+   *                     an {@link InterruptedIOException} if interrupted while
+   *                     waiting.
+   */
+  public void acquire(long bytes) throws IOException {
+    Preconditions.checkArgument(bytes >= 0, "bytes must not be negative.");
+    if (bytes > mCapacity) {
+      throw new IOException(String.format("Request of %d bytes exceeds the in-flight " +
+          "budget of %d bytes.", bytes, mCapacity));
+    }
+    if (bytes == 0) {
+      return;
+    }
+    try {
+      mPermits.acquire((int) bytes);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the in-flight budget.");
+    }
+  }
+
+  /** Returns bytes previously acquired with {@link #acquire(long)}. */
+  public void release(long bytes) {
+    Preconditions.checkArgument(bytes >= 0 && bytes <= mCapacity, "Invalid byte count.");
+    if (bytes > 0) {
+      mPermits.release((int) bytes);
+    }
+  }
+}
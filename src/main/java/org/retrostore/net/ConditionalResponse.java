@@ -0,0 +1,63 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.net;
+
+/**
+ * The response to a conditional GET request, see
+ * {@link UrlFetcher#fetchUrlIfModified(java.net.URL, String, String)}.
+ */
+public final class ConditionalResponse {
+  private final byte[] mBody;
+  private final String mETag;
+  private final String mLastModified;
+
+  private ConditionalResponse(byte[] body, String eTag, String lastModified) {
+    mBody = body;
+    mETag = eTag;
+    mLastModified = lastModified;
+  }
+
+  /** A response carrying a (new) body. */
+  public static ConditionalResponse modified(byte[] body, String eTag, String lastModified) {
+    return new ConditionalResponse(body, eTag, lastModified);
+  }
+
+  /** A response telling that the cached body is still valid. */
+  public static ConditionalResponse notModified(String eTag, String lastModified) {
+    return new ConditionalResponse(null, eTag, lastModified);
+  }
+
+  /** Whether the server reported that the resource did not change (HTTP 304). */
+  public boolean isNotModified() {
+    return mBody == null;
+  }
+
+  /** The body of the response. Null if not modified. */
+  public byte[] getBody() {
+    return mBody;
+  }
+
+  /** The ETag header of the response, or null. */
+  public String getETag() {
+    return mETag;
+  }
+
+  /** The Last-Modified header of the response, or null. */
+  public String getLastModified() {
+    return mLastModified;
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.net;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Serializes messages onto output streams without allocating a byte array per
+ * message.
+ * <p>
+ * Messages up to {@link #MAX_POOLED_SIZE} bytes, which covers all request
+ * params except uploaded states, are encoded into a buffer that is reused per
+ * thread and then written in one go. Larger messages are streamed through a
+ * small encoder buffer instead of being serialized into a full-sized array.
+ */
+public final class MessageWriter {
+  /** The largest message that is encoded into the per-thread buffer. */
+  static final int MAX_POOLED_SIZE = 16 * 1024;
+  private static final int STREAMING_BUFFER_SIZE = 4096;
+
+  private static final ThreadLocal<byte[]> sBuffer =
+      ThreadLocal.withInitial(() -> new byte[256]);
+
+  private MessageWriter() {
+  }
+
+  /** Writes the serialized message to the given stream. Does not close it. */
+  public static void writeTo(MessageLite message, OutputStream out) throws IOException {
+    int size = message.getSerializedSize();
+    if (size > MAX_POOLED_SIZE) {
+      CodedOutputStream codedOut = CodedOutputStream.newInstance(out, STREAMING_BUFFER_SIZE);
+      message.writeTo(codedOut);
+      codedOut.flush();
+      return;
+    }
+
+    byte[] buffer = sBuffer.get();
+    if (buffer.length < size) {
+      buffer = new byte[Math.max(size, Math.min(buffer.length * 2, MAX_POOLED_SIZE))];
+      sBuffer.set(buffer);
+    }
+    CodedOutputStream codedOut = CodedOutputStream.newInstance(buffer, 0, size);
+    message.writeTo(codedOut);
+    codedOut.checkNoSpaceLeft();
+    out.write(buffer, 0, size);
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.net;
+
+import com.google.common.base.Preconditions;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The body of a response, held either on the heap or, for large responses, in
+ * a temporary file that is memory-mapped.
+ * <p>
+ * Closing the body deletes its temporary file, if any. Views obtained from the
+ * body must not be used after it has been closed.
+ */
+public final class ResponseBody implements Closeable {
+  private final byte[] mBytes;
+  private final ByteBuffer mMapped;
+  private final Path mFile;
+  private final int mSize;
+  private Runnable mOnClose;
+
+  private ResponseBody(byte[] bytes, ByteBuffer mapped, Path file, int size) {
+    mBytes = bytes;
+    mMapped = mapped;
+    mFile = file;
+    mSize = size;
+  }
+
+  /** Creates a body from the first `length` bytes of the given array. */
+  public static ResponseBody ofBytes(byte[] bytes, int length) {
+    Preconditions.checkPositionIndex(length, bytes.length);
+    return new ResponseBody(bytes, null, null, length);
+  }
+
+  /** Creates a body from the given array. */
+  public static ResponseBody ofBytes(byte[] bytes) {
+    return ofBytes(bytes, bytes.length);
+  }
+
+  /**
+   * Creates a body by mapping the given temporary file. The file is deleted
+   * when the body is closed, or right away if it cannot be mapped.
+   */
+  static ResponseBody ofTempFile(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Response too large to map: " + size);
+      }
+      ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      return new ResponseBody(null, mapped, file, (int) size);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(file);
+      throw e;
+    }
+  }
+
+  /** The size of the body in bytes. */
+  public int size() {
+    return mSize;
+  }
+
+  /** Whether the body is held on the heap, in which case {@link #array()} may be used. */
+  public boolean hasArray() {
+    return mBytes != null;
+  }
+
+  /**
+   * The array holding the body, valid from index 0 to {@link #size()}.
+   *
+   * @throws IllegalStateException if the body was spilled to disk.
+   */
+  public byte[] array() {
+    Preconditions.checkState(mBytes != null, "Body is not held in memory.");
+    return mBytes;
+  }
+
+  /** Returns a read-only view of the complete body. */
+  public ByteBuffer asByteBuffer() {
+    if (mBytes != null) {
+      return ByteBuffer.wrap(mBytes, 0, mSize).slice().asReadOnlyBuffer();
+    }
+    return mMapped.duplicate().asReadOnlyBuffer();
+  }
+
+  /** Opens a new stream over the complete body. */
+  public InputStream openStream() {
+    if (mBytes != null) {
+      return new ByteArrayInputStream(mBytes, 0, mSize);
+    }
+    return new ByteBufferInputStream(mMapped.duplicate());
+  }
+
+  /** Sets an action to run once when this body is closed. */
+  void setOnClose(Runnable onClose) {
+    mOnClose = onClose;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (mOnClose != null) {
+      Runnable onClose = mOnClose;
+      mOnClose = null;
+      onClose.run();
+    }
+    if (mFile != null) {
+      // On some platforms, a file cannot be deleted while it is still mapped.
+      // In that case it is removed when the VM exits.
+      try {
+        Files.deleteIfExists(mFile);
+      } catch (IOException e) {
+        mFile.toFile().deleteOnExit();
+      }
+    }
+  }
+
+  private static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer mBuffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      mBuffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return mBuffer.hasRemaining() ? mBuffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!mBuffer.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, mBuffer.remaining());
+      mBuffer.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public long skip(long n) {
+      int skipped = (int) Math.max(0, Math.min(n, mBuffer.remaining()));
+      mBuffer.position(mBuffer.position() + skipped);
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return mBuffer.remaining();
+    }
+  }
+}
@@ -18,12 +18,24 @@ package org.retrostore.net;
 
 import com.google.protobuf.GeneratedMessageLite;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
 
 /**
  * Common interface for fetching URLs.
  */
 public interface UrlFetcher {
+  /** Writes a request body directly onto the connection. */
+  @FunctionalInterface
+  interface RequestBody {
+    void writeTo(OutputStream out) throws IOException;
+  }
+
   /**
    * Fetched the given URL.
    *
@@ -37,6 +49,88 @@ public interface UrlFetcher {
 
   byte[] fetchUrl(String url, GeneratedMessageLite<?, ?> obj) throws IOException;
 
+  /**
+   * Like {@link #fetchUrl(String, GeneratedMessageLite)} but takes an already
+   * resolved URL, so that callers do not need to format and parse the URL on
+   * every request.
+   */
+  default byte[] fetchUrl(URL url, GeneratedMessageLite<?, ?> obj) throws IOException {
+    return fetchUrl(url.toString(), obj);
+  }
+
+  /**
+   * Like {@link #fetchUrl(URL, GeneratedMessageLite)} but returns the
+   * response body as a stream, so it can be consumed without holding all of it
+   * in memory. The caller must close the returned stream.
+   */
+  default InputStream fetchUrlAsStream(URL url, GeneratedMessageLite<?, ?> obj)
+      throws IOException {
+    return new ByteArrayInputStream(fetchUrl(url, obj));
+  }
+
+  /**
+   * Like {@link #fetchUrl(URL, GeneratedMessageLite)} but returns a body that
+   * implementations may keep outside of the heap if it is large. The caller
+   * must close the returned body.
+   */
+  default ResponseBody fetchUrlAsBody(URL url, GeneratedMessageLite<?, ?> obj)
+      throws IOException {
+    return ResponseBody.ofBytes(fetchUrl(url, obj));
+  }
+
+  /**
+   * Like {@link #fetchUrl(URL, GeneratedMessageLite)} but reads the
+   * response body into the given buffer, starting at its position. On return,
+   * the position is advanced by the number of bytes read.
+   *
+   * @return The number of bytes read.
+   * @throws IOException Also thrown if the response does not fit into the
+   *                     remaining space of the buffer.
+   */
+  default int fetchUrl(URL url, GeneratedMessageLite<?, ?> obj, ByteBuffer dest)
+      throws IOException {
+    byte[] content = fetchUrl(url, obj);
+    if (content.length > dest.remaining()) {
+      throw new IOException(String.format("Response (%d bytes) does not fit into " +
+          "buffer (%d bytes).", content.length, dest.remaining()));
+    }
+    dest.put(content);
+    return content.length;
+  }
+
+  /**
+   * Fetches the given URL, letting the body write itself onto the connection
+   * so that it never has to be held in memory as a whole.
+   *
+   * @param contentLength the length of the body in bytes, or -1 if unknown, in
+   *                      which case chunked transfer encoding is used.
+   */
+  default byte[] fetchUrl(URL url, RequestBody body, long contentLength) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    body.writeTo(out);
+    return fetchUrl(url.toString(), out.toByteArray());
+  }
+
+  /**
+   * Fetches the given URL with a GET request, e.g. for screenshots. If
+   * validators of a cached copy are given, the request may be conditional and
+   * the server may answer that the cached copy is still valid.
+   * <p>
+   * The default implementation ignores the validators and makes a plain
+   * request with {@link URL#openStream()}, so it always returns a modified
+   * response without validators. Implementations should override it to use
+   * their own transport and support conditional requests.
+   *
+   * @param eTag         the ETag of the cached copy, or null.
+   * @param lastModified the Last-Modified value of the cached copy, or null.
+   */
+  default ConditionalResponse fetchUrlIfModified(URL url, String eTag, String lastModified)
+      throws IOException {
+    try (InputStream in = url.openStream()) {
+      return ConditionalResponse.modified(in.readAllBytes(), null, null);
+    }
+  }
+
   @Deprecated
   byte[] fetchUrl(String url, Object obj) throws IOException;
 }
@@ -16,39 +16,219 @@
 
 package org.retrostore.net;
 
+import com.google.common.base.Preconditions;
 import com.google.common.io.ByteStreams;
 import com.google.gson.Gson;
 import com.google.protobuf.GeneratedMessageLite;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 
 /**
  * Default UrlFetcher implementation.
  */
 public class UrlFetcherImpl implements UrlFetcher {
+  private static final int CHUNK_SIZE = 32 * 1024;
+  private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+  /**
+   * G1 treats arrays of half a region or more as humongous allocations, and
+   * regions are as small as 1 MB on small heaps. Bodies of up to 256 KB stay
+   * well below that, whatever the heap size.
+   */
+  public static final long DEFAULT_SPILL_THRESHOLD = 256 * 1024;
+  private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+  private final long mSpillThreshold;
+  private final Path mSpillDirectory;
+  private final ByteBudget mByteBudget;
+
+  public UrlFetcherImpl() {
+    this(DEFAULT_SPILL_THRESHOLD, null, null);
+  }
+
+  public UrlFetcherImpl(long spillThreshold, Path spillDirectory) {
+    this(spillThreshold, spillDirectory, null);
+  }
+
+  /**
+   * @param spillThreshold bodies returned by {@link #fetchUrlAsBody} that are
+   *                       larger than this many bytes are written to a
+   *                       temporary file instead of being held on the heap.
+   * @param spillDirectory where to create temporary files, or null for the
+   *                       default temporary directory.
+   * @param byteBudget     if not null, responses that are buffered on the
+   *                       heap are only read once their Content-Length fits
+   *                       into this budget. Responses without a
+   *                       Content-Length are charged as they grow, see
+   *                       {@link Charge}. Streamed responses are not charged
+   *                       here; their callers charge what they read.
+   */
+  public UrlFetcherImpl(long spillThreshold, Path spillDirectory, ByteBudget byteBudget) {
+    Preconditions.checkArgument(spillThreshold >= 0, "spillThreshold must not be negative.");
+    mSpillThreshold = spillThreshold;
+    mSpillDirectory = spillDirectory;
+    mByteBudget = byteBudget;
+  }
+
   @Override
   public byte[] fetchUrl(String urlStr, byte[] body) throws IOException {
-    URLConnection connection = new URL(urlStr).openConnection();
-    connection.setDoOutput(true);
-    connection.setDoInput(true);
-
+    URLConnection connection = openConnection(new URL(urlStr), body.length);
     OutputStream out = connection.getOutputStream();
     out.write(body);
     out.close();
-
-    InputStream inputStream = connection.getInputStream();
-    byte[] content = ByteStreams.toByteArray(inputStream);
-    inputStream.close();
-    return content;
+    return readFully(connection);
   }
 
   @Override
   public byte[] fetchUrl(String url, GeneratedMessageLite<?, ?> obj) throws IOException {
-    return fetchUrl(url, obj.toByteArray());
+    return fetchUrl(new URL(url), obj);
+  }
+
+  @Override
+  public byte[] fetchUrl(URL url, GeneratedMessageLite<?, ?> obj) throws IOException {
+    return readFully(send(url, obj));
+  }
+
+  @Override
+  public InputStream fetchUrlAsStream(URL url, GeneratedMessageLite<?, ?> obj)
+      throws IOException {
+    return post(url, obj);
+  }
+
+  @Override
+  public ResponseBody fetchUrlAsBody(URL url, GeneratedMessageLite<?, ?> obj)
+      throws IOException {
+    URLConnection connection = send(url, obj);
+    long contentLength = connection.getContentLengthLong();
+    int maxInMemory = (int) Math.min(mSpillThreshold, MAX_ARRAY_SIZE);
+
+    try (InputStream inputStream = connection.getInputStream()) {
+      if (contentLength > maxInMemory) {
+        return spill(new byte[0], 0, -1, inputStream);
+      }
+      Charge charge = new Charge();
+      boolean success = false;
+      try {
+        ResponseBody body = readBody(inputStream, contentLength, maxInMemory, charge);
+        body.setOnClose(charge::release);
+        success = true;
+        return body;
+      } finally {
+        if (!success) {
+          charge.release();
+        }
+      }
+    }
+  }
+
+  /** Reads a body that is expected to fit into memory, spilling it if it does not. */
+  private ResponseBody readBody(InputStream inputStream, long contentLength, int maxInMemory,
+                                Charge charge) throws IOException {
+    int initialSize = (int) (contentLength >= 0
+        ? contentLength
+        : Math.min(INITIAL_BUFFER_SIZE, maxInMemory));
+    charge.ensure(initialSize);
+    byte[] buffer = new byte[initialSize];
+    int length = 0;
+    while (true) {
+      if (length == buffer.length) {
+        // Probe for more data before growing, as the content length (if
+        // any) is usually exact.
+        int next = inputStream.read();
+        if (next < 0) {
+          return ResponseBody.ofBytes(buffer, length);
+        }
+        if (length >= maxInMemory) {
+          return spill(buffer, length, next, inputStream);
+        }
+        int newSize = (int) Math.min(Math.max(2L * length, INITIAL_BUFFER_SIZE), maxInMemory);
+        charge.ensure(newSize);
+        buffer = Arrays.copyOf(buffer, newSize);
+        buffer[length++] = (byte) next;
+        continue;
+      }
+      int read = inputStream.read(buffer, length, buffer.length - length);
+      if (read < 0) {
+        return ResponseBody.ofBytes(buffer, length);
+      }
+      length += read;
+    }
+  }
+
+  @Override
+  public int fetchUrl(URL url, GeneratedMessageLite<?, ?> obj, ByteBuffer dest)
+      throws IOException {
+    int start = dest.position();
+    try (InputStream inputStream = post(url, obj)) {
+      if (dest.hasArray()) {
+        // Read straight into the backing array.
+        byte[] array = dest.array();
+        int offset = dest.arrayOffset() + dest.position();
+        int end = dest.arrayOffset() + dest.limit();
+        int read;
+        while (offset < end && (read = inputStream.read(array, offset, end - offset)) >= 0) {
+          offset += read;
+        }
+        dest.position(offset - dest.arrayOffset());
+      } else {
+        ReadableByteChannel channel = Channels.newChannel(inputStream);
+        while (dest.hasRemaining() && channel.read(dest) >= 0) {
+          // Keep reading until the buffer is full or the body ends.
+        }
+      }
+      if (!dest.hasRemaining() && inputStream.read() != -1) {
+        throw new IOException("Response does not fit into the buffer.");
+      }
+    }
+    return dest.position() - start;
+  }
+
+  @Override
+  public byte[] fetchUrl(URL url, RequestBody body, long contentLength) throws IOException {
+    URLConnection connection = openConnection(url, contentLength);
+    OutputStream out = connection.getOutputStream();
+    body.writeTo(out);
+    out.close();
+    return readFully(connection);
+  }
+
+  @Override
+  public ConditionalResponse fetchUrlIfModified(URL url, String eTag, String lastModified)
+      throws IOException {
+    URLConnection connection = url.openConnection();
+    if (eTag != null) {
+      connection.setRequestProperty("If-None-Match", eTag);
+    }
+    if (lastModified != null) {
+      connection.setRequestProperty("If-Modified-Since", lastModified);
+    }
+    if (connection instanceof HttpURLConnection) {
+      HttpURLConnection httpConnection = (HttpURLConnection) connection;
+      if (httpConnection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        httpConnection.getInputStream().close();
+        return ConditionalResponse.notModified(
+            firstNonNull(connection.getHeaderField("ETag"), eTag),
+            firstNonNull(connection.getHeaderField("Last-Modified"), lastModified));
+      }
+    }
+    byte[] body = readFully(connection);
+    return ConditionalResponse.modified(body,
+        connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+  }
+
+  private static String firstNonNull(String first, String second) {
+    return first != null ? first : second;
   }
 
   @Override
@@ -59,4 +239,122 @@ public class UrlFetcherImpl implements UrlFetcher {
     }
     return fetchUrl(url, (new Gson().toJson(obj)).getBytes());
   }
+
+  /**
+   * Serializes the message directly onto the connection and returns the
+   * stream of the response body.
+   */
+  private static InputStream post(URL url, GeneratedMessageLite<?, ?> obj) throws IOException {
+    return send(url, obj).getInputStream();
+  }
+
+  /** Serializes the message directly onto a new connection and returns it. */
+  private static URLConnection send(URL url, GeneratedMessageLite<?, ?> obj) throws IOException {
+    URLConnection connection = openConnection(url, obj.getSerializedSize());
+    OutputStream out = connection.getOutputStream();
+    MessageWriter.writeTo(obj, out);
+    out.close();
+    return connection;
+  }
+
+  /**
+   * Writes the bytes already read, the probed byte (if not -1) and the rest of
+   * the stream to a temporary file and returns it as a mapped body.
+   */
+  private ResponseBody spill(byte[] buffer, int length, int next, InputStream inputStream)
+      throws IOException {
+    Path file = mSpillDirectory != null
+        ? Files.createTempFile(mSpillDirectory, "retrostore", ".body")
+        : Files.createTempFile("retrostore", ".body");
+    try (OutputStream out = Files.newOutputStream(file)) {
+      out.write(buffer, 0, length);
+      if (next >= 0) {
+        out.write(next);
+      }
+      ByteStreams.copy(inputStream, out);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(file);
+      throw e;
+    }
+    return ResponseBody.ofTempFile(file);
+  }
+
+  /**
+   * Opens a connection for a request body of the given length. A length of -1
+   * selects chunked transfer encoding.
+   */
+  private static URLConnection openConnection(URL url, long contentLength) throws IOException {
+    URLConnection connection = url.openConnection();
+    connection.setDoOutput(true);
+    connection.setDoInput(true);
+    if (connection instanceof HttpURLConnection) {
+      // Without this, HttpURLConnection buffers the complete body to compute
+      // the content length before sending it.
+      HttpURLConnection httpConnection = (HttpURLConnection) connection;
+      if (contentLength >= 0) {
+        httpConnection.setFixedLengthStreamingMode(contentLength);
+      } else {
+        httpConnection.setChunkedStreamingMode(CHUNK_SIZE);
+      }
+    }
+    return connection;
+  }
+
+  /**
+   * Reads the complete response, charging its Content-Length, or the bytes
+   * read so far if there is none, to the budget while doing so.
+   */
+  private byte[] readFully(URLConnection connection) throws IOException {
+    Charge charge = new Charge();
+    try (InputStream inputStream = connection.getInputStream()) {
+      long contentLength = connection.getContentLengthLong();
+      if (contentLength >= 0) {
+        charge.ensure(contentLength);
+        return ByteStreams.toByteArray(inputStream);
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+      byte[] chunk = new byte[INITIAL_BUFFER_SIZE];
+      int read;
+      while ((read = inputStream.read(chunk)) >= 0) {
+        charge.ensure((long) out.size() + read);
+        out.write(chunk, 0, read);
+      }
+      return out.toByteArray();
+    } finally {
+      charge.release();
+    }
+  }
+
+  /**
+   * The bytes of one response charged to the budget.
+   * <p>
+   * Responses of unknown length are charged as they grow, in doubling steps,
+   * so that a response never holds more than about twice its size. To grow,
+   * the current charge is released before the larger one is acquired, so that
+   * growing responses never wait on each other while holding budget. The bytes
+   * already read are not charged during that wait. As with known lengths, a
+   * response that grows beyond the complete budget fails.
+   */
+  private final class Charge {
+    private long mCharged;
+
+    /** Makes sure that at least the given number of bytes are charged. */
+    void ensure(long bytes) throws IOException {
+      if (mByteBudget == null || bytes <= mCharged) {
+        return;
+      }
+      long target = Math.max(bytes,
+          Math.min(Math.max(2 * mCharged, INITIAL_BUFFER_SIZE), mByteBudget.getCapacity()));
+      release();
+      mByteBudget.acquire(target);
+      mCharged = target;
+    }
+
+    void release() {
+      if (mCharged > 0) {
+        mByteBudget.release(mCharged);
+        mCharged = 0;
+      }
+    }
+  }
 }
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.state;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.retrostore.ApiException;
+import org.retrostore.RetrostoreClient;
+import org.retrostore.client.common.proto.SystemState;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Uploads system states in the background, e.g. for autosaves, so that the
+ * caller never blocks on network I/O.
+ * <p>
+ * States are submitted to named slots. Each slot uploads one state at a time.
+ * States submitted while an upload of the slot is in flight replace each
+ * other, so that only the latest one is uploaded next. The futures of
+ * replaced states complete with the token of the state that replaced them,
+ * as that state is the one that got saved.
+ */
+public final class AsyncUploadQueue implements Closeable {
+  /** Uploads a single state. */
+  @FunctionalInterface
+  public interface Uploader {
+    long upload(SystemState state) throws ApiException;
+  }
+
+  /**
+   * Notified from the upload threads about each finished upload. Exceptions
+   * thrown by the listener are ignored. Runtime exceptions of the uploader
+   * are reported wrapped in an {@link ApiException}.
+   */
+  public interface Listener {
+    void onUploaded(String slot, long token);
+
+    void onFailed(String slot, ApiException e);
+  }
+
+  private final Uploader mUploader;
+  private final Listener mListener;
+  private final ExecutorService mExecutor;
+  private final Map<String, Slot> mSlots = new HashMap<>();
+  private boolean mClosed;
+  private long mCoalesced;
+
+  private AsyncUploadQueue(Builder builder) {
+    mUploader = builder.mUploader;
+    mListener = builder.mListener;
+    mExecutor = Executors.newFixedThreadPool(builder.mThreads, new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("upload-queue-%d")
+        .build());
+  }
+
+  public static Builder newBuilder(RetrostoreClient client) {
+    return new Builder(client);
+  }
+
+  /**
+   * Queues the state for upload to the given slot and returns right away.
+   *
+   * @return A future completing with the token of the uploaded state.
+   * @throws IllegalStateException if the queue has been closed.
+   */
+  public CompletableFuture<Long> submit(String slot, SystemState state) {
+    CompletableFuture<Long> future = new CompletableFuture<>();
+    synchronized (mSlots) {
+      Preconditions.checkState(!mClosed, "Upload queue has been closed.");
+      Slot pending = mSlots.computeIfAbsent(slot, s -> new Slot());
+      if (pending.mState != null) {
+        mCoalesced++;
+      }
+      pending.mState = state;
+      pending.mWaiters.add(future);
+      if (!pending.mRunning) {
+        pending.mRunning = true;
+        mExecutor.execute(() -> drain(slot, pending));
+      }
+    }
+    return future;
+  }
+
+  /** The number of states that were replaced by a newer one before being uploaded. */
+  public long getCoalescedCount() {
+    synchronized (mSlots) {
+      return mCoalesced;
+    }
+  }
+
+  /**
+   * Stops accepting states. States already queued are still uploaded, on
+   * daemon threads.
+   */
+  @Override
+  public void close() {
+    synchronized (mSlots) {
+      mClosed = true;
+    }
+    mExecutor.shutdown();
+  }
+
+  /**
+   * Uploads the latest state of the slot until no newer one is queued. If the
+   * worker dies anyway, the slot is released and its futures fail, so that
+   * later submissions start a new worker.
+   */
+  private void drain(String name, Slot slot) {
+    boolean idle = false;
+    List<CompletableFuture<Long>> waiters = new ArrayList<>();
+    try {
+      while (true) {
+        SystemState state;
+        synchronized (mSlots) {
+          if (slot.mState == null) {
+            slot.mRunning = false;
+            mSlots.remove(name, slot);
+            idle = true;
+            return;
+          }
+          state = slot.mState;
+          waiters = slot.mWaiters;
+          slot.mState = null;
+          slot.mWaiters = new ArrayList<>();
+        }
+        upload(name, state, waiters);
+      }
+    } finally {
+      if (!idle) {
+        List<CompletableFuture<Long>> pending;
+        synchronized (mSlots) {
+          slot.mRunning = false;
+          mSlots.remove(name, slot);
+          pending = slot.mWaiters;
+          slot.mState = null;
+          slot.mWaiters = new ArrayList<>();
+        }
+        IllegalStateException e = new IllegalStateException("Upload worker stopped.");
+        waiters.forEach(f -> f.completeExceptionally(e));
+        pending.forEach(f -> f.completeExceptionally(e));
+      }
+    }
+  }
+
+  /** Uploads one state and completes its futures and the listener. */
+  private void upload(String name, SystemState state, List<CompletableFuture<Long>> waiters) {
+    long token;
+    try {
+      token = mUploader.upload(state);
+    } catch (ApiException e) {
+      waiters.forEach(f -> f.completeExceptionally(e));
+      notifyListener(() -> mListener.onFailed(name, e));
+      return;
+    } catch (RuntimeException e) {
+      waiters.forEach(f -> f.completeExceptionally(e));
+      notifyListener(() -> mListener.onFailed(name, new ApiException("Upload failed.", e)));
+      return;
+    }
+    waiters.forEach(f -> f.complete(token));
+    notifyListener(() -> mListener.onUploaded(name, token));
+  }
+
+  private void notifyListener(Runnable call) {
+    if (mListener == null) {
+      return;
+    }
+    try {
+      call.run();
+    } catch (RuntimeException e) {
+      // A failing listener must not stop the uploads of the slot.
+    }
+  }
+
+  private static final class Slot {
+    SystemState mState;
+    List<CompletableFuture<Long>> mWaiters = new ArrayList<>();
+    boolean mRunning;
+  }
+
+  public static final class Builder {
+    private Uploader mUploader;
+    private Listener mListener;
+    private int mThreads = 2;
+
+    private Builder(RetrostoreClient client) {
+      Preconditions.checkNotNull(client);
+      mUploader = client::uploadState;
+    }
+
+    /**
+     * Uploads through the given uploader instead of the client, e.g. a
+     * {@link DedupStateUploader}.
+     */
+    public Builder setUploader(Uploader uploader) {
+      mUploader = Preconditions.checkNotNull(uploader);
+      return this;
+    }
+
+    public Builder setListener(Listener listener) {
+      mListener = listener;
+      return this;
+    }
+
+    /** The maximum number of slots uploading at the same time. */
+    public Builder setThreads(int threads) {
+      Preconditions.checkArgument(threads > 0, "threads must be positive.");
+      mThreads = threads;
+      return this;
+    }
+
+    public AsyncUploadQueue build() {
+      return new AsyncUploadQueue(this);
+    }
+  }
+}
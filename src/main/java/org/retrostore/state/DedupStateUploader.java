@@ -0,0 +1,126 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.state;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.retrostore.ApiException;
+import org.retrostore.RetrostoreClient;
+import org.retrostore.client.common.proto.SystemState;
+import org.retrostore.net.MessageWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Uploads system states, skipping the upload if an identical state was
+ * uploaded before.
+ * <p>
+ * States are identified by a 128 bit murmur3 hash of their serialized form,
+ * which is computed while serializing, without holding the serialized state
+ * in memory. A bounded number of hash to token mappings is kept. Concurrent
+ * uploads of the same state share one request. When the server rejects a
+ * token, e.g. because the state expired, its mapping is dropped.
+ */
+public final class DedupStateUploader {
+  private static final int DEFAULT_MAX_ENTRIES = 256;
+
+  private final RetrostoreClient mClient;
+  private final Cache<HashCode, Long> mTokens;
+  private final AtomicLong mSkippedUploads = new AtomicLong();
+
+  public DedupStateUploader(RetrostoreClient client) {
+    this(client, DEFAULT_MAX_ENTRIES);
+  }
+
+  /** @param maxEntries the maximum number of remembered uploads. */
+  public DedupStateUploader(RetrostoreClient client, int maxEntries) {
+    Preconditions.checkArgument(maxEntries > 0, "maxEntries must be positive.");
+    mClient = Preconditions.checkNotNull(client);
+    mTokens = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+  }
+
+  /**
+   * Uploads the given state, or returns the token of an identical state
+   * uploaded before without a network call.
+   */
+  public long uploadState(SystemState state) throws ApiException {
+    HashCode hash = hash(state);
+    Long cached = mTokens.getIfPresent(hash);
+    if (cached != null) {
+      mSkippedUploads.incrementAndGet();
+      return cached;
+    }
+    try {
+      return mTokens.get(hash, () -> mClient.uploadState(state));
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof ApiException) {
+        throw (ApiException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    } catch (UncheckedExecutionException e) {
+      throw (RuntimeException) e.getCause();
+    }
+  }
+
+  /**
+   * Downloads the state with the given token. If the server rejects the
+   * token, it is forgotten, so that the next upload of the state is not
+   * skipped.
+   */
+  public SystemState downloadState(long token) throws ApiException {
+    try {
+      return mClient.downloadState(token);
+    } catch (ApiException e) {
+      // Errors reported by the server carry no cause; transport errors do and
+      // say nothing about the token.
+      if (e.getCause() == null) {
+        invalidateToken(token);
+      }
+      throw e;
+    }
+  }
+
+  /** Forgets all states that were uploaded with the given token. */
+  public void invalidateToken(long token) {
+    mTokens.asMap().values().removeIf(t -> t == token);
+  }
+
+  /** The number of uploads that were skipped because the state was known. */
+  public long getSkippedUploads() {
+    return mSkippedUploads.get();
+  }
+
+  private static HashCode hash(SystemState state) {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    try {
+      MessageWriter.writeTo(state, Funnels.asOutputStream(hasher));
+    } catch (IOException e) {
+      // Hashers do not throw.
+      throw new UncheckedIOException(e);
+    }
+    return hasher.hash();
+  }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.state;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.ZeroCopyByteString;
+import org.retrostore.ApiException;
+import org.retrostore.RetrostoreClient;
+import org.retrostore.client.common.proto.SystemState;
+import org.retrostore.client.common.proto.SystemState.MemoryRegion;
+import org.retrostore.net.AdaptiveChunker;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Restores system states with concurrent requests instead of one large
+ * response.
+ * <p>
+ * The state is first fetched without memory data. Then all memory regions,
+ * split into chunks of a bounded size, are downloaded concurrently with
+ * {@link RetrostoreClient#downloadSystemStateMemoryRegion(long, int, int, ByteBuffer)},
+ * so that a restore takes about two round trips plus transfer time,
+ * regardless of the number of regions.
+ * <p>
+ * With an {@link AdaptiveChunker}, the chunk size and the number of
+ * concurrent requests follow the measured bandwidth-delay product instead of
+ * being fixed.
+ */
+public final class ParallelStateDownloader {
+  private static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+  private static final int DEFAULT_PARALLELISM = 8;
+
+  private final RetrostoreClient mClient;
+  private final Executor mExecutor;
+  private final int mChunkSize;
+  private final AdaptiveChunker mChunker;
+
+  private ParallelStateDownloader(RetrostoreClient client, Executor executor, int chunkSize,
+                                  AdaptiveChunker chunker) {
+    mClient = client;
+    mExecutor = executor;
+    mChunkSize = chunkSize;
+    mChunker = chunker;
+  }
+
+  public static Builder newBuilder(RetrostoreClient client) {
+    return new Builder(client);
+  }
+
+  /** Downloads the complete state with the given token. */
+  public SystemState downloadState(long token) throws ApiException {
+    SystemState metadata = mClient.downloadState(token, true);
+    List<byte[]> data = new ArrayList<>();
+    List<Target> targets = new ArrayList<>();
+    for (MemoryRegion region : metadata.getMemoryRegionsList()) {
+      byte[] bytes = new byte[regionLength(region)];
+      data.add(bytes);
+      targets.add(new Target(region.getStart(), ByteBuffer.wrap(bytes)));
+    }
+    fetch(token, targets);
+
+    SystemState.Builder state = metadata.toBuilder();
+    for (int i = 0; i < data.size(); ++i) {
+      // The arrays are not touched anymore, so they can back the result.
+      state.setMemoryRegions(i, metadata.getMemoryRegions(i).toBuilder()
+          .setData(ZeroCopyByteString.wrap(data.get(i)))
+          .build());
+    }
+    return state.build();
+  }
+
+  /**
+   * Downloads the memory of the state with the given token straight into
+   * the given buffer, which represents the address space: each region is
+   * written at the index of its start address. For example, pass the buffer
+   * of a new {@link Z80MemoryImage}, whose pages then all remain clean.
+   *
+   * @return The state without memory data, i.e. its model, registers and the
+   * bounds of its memory regions.
+   */
+  public SystemState downloadStateInto(long token, ByteBuffer addressSpace) throws ApiException {
+    SystemState metadata = mClient.downloadState(token, true);
+    List<Target> targets = new ArrayList<>();
+    for (MemoryRegion region : metadata.getMemoryRegionsList()) {
+      int start = region.getStart();
+      int length = regionLength(region);
+      Preconditions.checkArgument(start >= 0 && start + length <= addressSpace.capacity(),
+          "Region [%s, %s) does not fit into the buffer.", start, start + length);
+      ByteBuffer target = addressSpace.duplicate();
+      target.clear();
+      target.position(start);
+      target.limit(start + length);
+      targets.add(new Target(start, target.slice()));
+    }
+    fetch(token, targets);
+    return metadata;
+  }
+
+  private static int regionLength(MemoryRegion region) {
+    // The length is set when the data is excluded, otherwise use the data.
+    return region.getLength() > 0 ? region.getLength() : region.getData().size();
+  }
+
+  /** A memory region to download: its start address and the whole buffer to fill. */
+  private static final class Target {
+    final int mStart;
+    final ByteBuffer mDest;
+
+    Target(int start, ByteBuffer dest) {
+      mStart = start;
+      mDest = dest;
+    }
+  }
+
+  /** A single region request. */
+  private static final class Chunk {
+    final int mAddress;
+    final ByteBuffer mDest;
+
+    Chunk(int address, ByteBuffer dest) {
+      mAddress = address;
+      mDest = dest;
+    }
+  }
+
+  /** Downloads all targets and blocks until they are complete. */
+  private void fetch(long token, List<Target> targets) throws ApiException {
+    long total = 0;
+    for (Target target : targets) {
+      total += target.mDest.remaining();
+    }
+    int chunkSize = mChunkSize;
+    int workerCount = Integer.MAX_VALUE;
+    if (mChunker != null) {
+      AdaptiveChunker.Plan plan = mChunker.plan(AdaptiveChunker.MEMORY_REGION, total);
+      chunkSize = plan.getChunkSize();
+      workerCount = plan.getParallelism();
+    }
+
+    Queue<Chunk> queue = new ConcurrentLinkedQueue<>();
+    for (Target target : targets) {
+      int length = target.mDest.remaining();
+      for (int offset = 0; offset < length; offset += chunkSize) {
+        ByteBuffer chunk = target.mDest.duplicate();
+        chunk.position(offset);
+        chunk.limit(offset + Math.min(chunkSize, length - offset));
+        queue.add(new Chunk(target.mStart + offset, chunk));
+      }
+    }
+
+    // Each worker takes chunks until none are left, so that the number of
+    // workers bounds the number of concurrent requests. After a failure, the
+    // workers stop taking chunks.
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicBoolean failed = new AtomicBoolean();
+    List<CompletableFuture<Void>> workers = new ArrayList<>();
+    try {
+      for (int i = Math.min(workerCount, queue.size()); i > 0; --i) {
+        workers.add(CompletableFuture.runAsync(() -> {
+          Chunk chunk;
+          while (!failed.get() && (chunk = queue.poll()) != null) {
+            try {
+              fetchChunk(token, chunk, inFlight);
+            } catch (ApiException e) {
+              failed.set(true);
+              throw new CompletionException(e);
+            } catch (RuntimeException e) {
+              failed.set(true);
+              throw e;
+            }
+          }
+        }, mExecutor));
+      }
+    } catch (RuntimeException e) {
+      // The executor rejected a worker. Stop the ones already running.
+      failed.set(true);
+      CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0]))
+          .handle((v, t) -> null).join();
+      throw e;
+    }
+    await(workers, failed);
+  }
+
+  private void fetchChunk(long token, Chunk chunk, AtomicInteger inFlight) throws ApiException {
+    int length = chunk.mDest.remaining();
+    int concurrency = inFlight.incrementAndGet();
+    long startTime = System.nanoTime();
+    try {
+      mClient.downloadSystemStateMemoryRegion(token, chunk.mAddress, length, chunk.mDest);
+    } finally {
+      inFlight.decrementAndGet();
+    }
+    if (mChunker != null) {
+      mChunker.record(AdaptiveChunker.MEMORY_REGION, length, System.nanoTime() - startTime,
+          concurrency);
+    }
+  }
+
+  /**
+   * Waits for all workers to stop, so that no request writes into the
+   * caller's buffer after this returns, and throws the first failure.
+   */
+  private static void await(List<CompletableFuture<Void>> workers, AtomicBoolean failed)
+      throws ApiException {
+    CompletableFuture<Void> all =
+        CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0]));
+    try {
+      all.get();
+    } catch (InterruptedException e) {
+      failed.set(true);
+      // Running requests cannot be aborted, but no new ones are started.
+      all.handle((v, t) -> null).join();
+      Thread.currentThread().interrupt();
+      throw new ApiException("Interrupted while downloading memory regions.", e);
+    } catch (ExecutionException e) {
+      // All workers have completed at this point, as allOf waits for every one.
+      if (e.getCause() instanceof ApiException) {
+        throw (ApiException) e.getCause();
+      }
+      throw new ApiException("Downloading memory regions failed.", e.getCause());
+    }
+  }
+
+  public static final class Builder {
+    private final RetrostoreClient mClient;
+    private Executor mExecutor;
+    private int mChunkSize = DEFAULT_CHUNK_SIZE;
+    private int mParallelism = DEFAULT_PARALLELISM;
+    private AdaptiveChunker mChunker;
+
+    private Builder(RetrostoreClient client) {
+      mClient = Preconditions.checkNotNull(client);
+    }
+
+    /** The maximum size of a single region request. */
+    public Builder setChunkSize(int chunkSize) {
+      Preconditions.checkArgument(chunkSize > 0, "chunkSize must be positive.");
+      mChunkSize = chunkSize;
+      return this;
+    }
+
+    /**
+     * Chooses the chunk size and the number of concurrent requests from the
+     * timings measured by the given chunker, and reports the timings back to
+     * it. The chunker's maximum parallelism should not exceed that of the
+     * executor.
+     */
+    public Builder setChunker(AdaptiveChunker chunker) {
+      mChunker = Preconditions.checkNotNull(chunker);
+      return this;
+    }
+
+    /** The maximum number of concurrent requests. Ignored if an executor is set. */
+    public Builder setParallelism(int parallelism) {
+      Preconditions.checkArgument(parallelism > 0, "parallelism must be positive.");
+      mParallelism = parallelism;
+      return this;
+    }
+
+    /** Runs the requests on the given executor, which then bounds their concurrency. */
+    public Builder setExecutor(Executor executor) {
+      mExecutor = Preconditions.checkNotNull(executor);
+      return this;
+    }
+
+    public ParallelStateDownloader build() {
+      Executor executor = mExecutor != null ? mExecutor : Executors.newFixedThreadPool(
+          mParallelism, new ThreadFactoryBuilder()
+              .setDaemon(true)
+              .setNameFormat("state-downloader-%d")
+              .build());
+      return new ParallelStateDownloader(mClient, executor, mChunkSize, mChunker);
+    }
+  }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.state;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.protobuf.ByteString;
+import org.retrostore.ApiException;
+import org.retrostore.RetrostoreClient;
+import org.retrostore.client.common.proto.SystemState;
+import org.retrostore.client.common.proto.SystemState.MemoryRegion;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Keeps a history of system states in memory at a fraction of their raw
+ * size, e.g. for rewinding.
+ * <p>
+ * Memory regions are split into fixed-size pages that are stored by the hash
+ * of their content, so identical pages are only stored once, no matter how
+ * many snapshots or regions contain them. Pages can additionally be
+ * compressed. The model and registers are kept per snapshot.
+ * <p>
+ * Snapshots can be uploaded on demand; the token returned by the server is
+ * cached, so each snapshot is uploaded at most once, even by concurrent
+ * callers.
+ * <p>
+ * The store must be closed to free the native memory of its compressor.
+ */
+public final class SnapshotStore implements Closeable {
+  private static final HashFunction PAGE_HASH = Hashing.murmur3_128();
+
+  private final int mPageSize;
+  private final boolean mCompress;
+  private final Deflater mDeflater = new Deflater(Deflater.BEST_SPEED);
+  private final Inflater mInflater = new Inflater();
+  private final Map<HashCode, Page> mPages = new HashMap<>();
+  private final Map<Long, Snapshot> mSnapshots = new LinkedHashMap<>();
+  private long mNextId = 1;
+  private long mRawBytes;
+  private long mStoredBytes;
+  private boolean mClosed;
+
+  private SnapshotStore(int pageSize, boolean compress) {
+    mPageSize = pageSize;
+    mCompress = compress;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Stores the given state.
+   *
+   * @return The local ID of the new snapshot.
+   */
+  public synchronized long save(SystemState state) {
+    checkOpen();
+    List<StoredRegion> regions = new ArrayList<>();
+    for (MemoryRegion region : state.getMemoryRegionsList()) {
+      ByteString data = region.getData();
+      List<HashCode> pages = new ArrayList<>();
+      for (int offset = 0; offset < data.size(); offset += mPageSize) {
+        byte[] page = new byte[Math.min(mPageSize, data.size() - offset)];
+        data.copyTo(page, offset, 0, page.length);
+        pages.add(storePage(page));
+      }
+      regions.add(new StoredRegion(region.getStart(), region.getLength(), data.size(), pages));
+      mRawBytes += data.size();
+    }
+    long id = mNextId++;
+    mSnapshots.put(id, new Snapshot(state.getModelValue(),
+        state.hasRegisters() ? state.getRegisters() : null, regions));
+    return id;
+  }
+
+  /** Restores the snapshot with the given ID. */
+  public synchronized SystemState load(long id) {
+    checkOpen();
+    Snapshot snapshot = getSnapshot(id);
+    SystemState.Builder state = SystemState.newBuilder().setModelValue(snapshot.mModel);
+    if (snapshot.mRegisters != null) {
+      state.setRegisters(snapshot.mRegisters);
+    }
+    for (StoredRegion region : snapshot.mRegions) {
+      byte[] data = new byte[region.mDataLength];
+      int offset = 0;
+      for (HashCode hash : region.mPages) {
+        offset += mPages.get(hash).readInto(data, offset, mInflater);
+      }
+      state.addMemoryRegions(MemoryRegion.newBuilder()
+          .setStart(region.mStart)
+          .setLength(region.mLength)
+          .setData(ByteString.copyFrom(data)));
+    }
+    return state.build();
+  }
+
+  /** Deletes the snapshot with the given ID, freeing pages no other snapshot uses. */
+  public synchronized void delete(long id) {
+    Snapshot snapshot = getSnapshot(id);
+    mSnapshots.remove(id);
+    for (StoredRegion region : snapshot.mRegions) {
+      mRawBytes -= region.mDataLength;
+      for (HashCode hash : region.mPages) {
+        Page page = mPages.get(hash);
+        if (--page.mReferences == 0) {
+          mPages.remove(hash);
+          mStoredBytes -= page.mData.length;
+        }
+      }
+    }
+  }
+
+  /** The IDs of all snapshots, oldest first. */
+  public synchronized List<Long> getSnapshotIds() {
+    return new ArrayList<>(mSnapshots.keySet());
+  }
+
+  /**
+   * Uploads the snapshot with the given ID, unless it has been uploaded
+   * before. If another thread is uploading it already, waits for that upload
+   * instead.
+   *
+   * @return The token of the uploaded state.
+   */
+  public long upload(long id, RetrostoreClient client) throws ApiException {
+    SystemState state;
+    CompletableFuture<Long> upload;
+    CompletableFuture<Long> pending;
+    synchronized (this) {
+      Snapshot snapshot = getSnapshot(id);
+      if (snapshot.mToken != null) {
+        return snapshot.mToken;
+      }
+      pending = snapshot.mUpload;
+      if (pending == null) {
+        state = load(id);
+        upload = new CompletableFuture<>();
+        snapshot.mUpload = upload;
+      } else {
+        state = null;
+        upload = null;
+      }
+    }
+    if (pending != null) {
+      return await(pending);
+    }
+    // The upload runs without holding the lock, so saving is not blocked.
+    try {
+      long token = client.uploadState(state);
+      synchronized (this) {
+        Snapshot snapshot = mSnapshots.get(id);
+        if (snapshot != null) {
+          snapshot.mToken = token;
+          snapshot.mUpload = null;
+        }
+      }
+      upload.complete(token);
+      return token;
+    } catch (ApiException | RuntimeException e) {
+      synchronized (this) {
+        // Let a later call try again.
+        Snapshot snapshot = mSnapshots.get(id);
+        if (snapshot != null) {
+          snapshot.mUpload = null;
+        }
+      }
+      upload.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  /** The cached upload token of the snapshot, or null if it has not been uploaded. */
+  public synchronized Long getUploadToken(long id) {
+    return getSnapshot(id).mToken;
+  }
+
+  /** The total size of the memory of all snapshots, as if stored separately. */
+  public synchronized long getRawBytes() {
+    return mRawBytes;
+  }
+
+  /** The size of the page data actually held. */
+  public synchronized long getStoredBytes() {
+    return mStoredBytes;
+  }
+
+  /** Frees the compressor. Saving and loading fail afterwards. */
+  @Override
+  public synchronized void close() {
+    if (!mClosed) {
+      mClosed = true;
+      mDeflater.end();
+      mInflater.end();
+    }
+  }
+
+  private void checkOpen() {
+    Preconditions.checkState(!mClosed, "Snapshot store is closed.");
+  }
+
+  /** Waits for an upload started by another thread. */
+  private static long await(CompletableFuture<Long> upload) throws ApiException {
+    try {
+      return upload.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ApiException("Interrupted while waiting for the upload.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof ApiException) {
+        throw (ApiException) e.getCause();
+      }
+      throw new ApiException("Uploading state failed.", e.getCause());
+    }
+  }
+
+  private Snapshot getSnapshot(long id) {
+    Snapshot snapshot = mSnapshots.get(id);
+    Preconditions.checkArgument(snapshot != null, "No snapshot with ID %s.", id);
+    return snapshot;
+  }
+
+  private HashCode storePage(byte[] bytes) {
+    HashCode hash = PAGE_HASH.hashBytes(bytes);
+    Page page = mPages.get(hash);
+    if (page == null) {
+      page = compress(bytes);
+      mPages.put(hash, page);
+      mStoredBytes += page.mData.length;
+    }
+    page.mReferences++;
+    return hash;
+  }
+
+  private Page compress(byte[] bytes) {
+    if (!mCompress) {
+      return new Page(bytes, bytes.length, false);
+    }
+    mDeflater.reset();
+    mDeflater.setInput(bytes);
+    mDeflater.finish();
+    byte[] buffer = new byte[bytes.length];
+    int compressed = mDeflater.deflate(buffer);
+    if (!mDeflater.finished()) {
+      // Does not compress; keep it as is.
+      return new Page(bytes, bytes.length, false);
+    }
+    return new Page(Arrays.copyOf(buffer, compressed), bytes.length, true);
+  }
+
+  private static final class Page {
+    final byte[] mData;
+    final int mLength;
+    final boolean mCompressed;
+    int mReferences;
+
+    Page(byte[] data, int length, boolean compressed) {
+      mData = data;
+      mLength = length;
+      mCompressed = compressed;
+    }
+
+    /** Writes the uncompressed page into the array and returns its length. */
+    int readInto(byte[] dest, int offset, Inflater inflater) {
+      if (!mCompressed) {
+        System.arraycopy(mData, 0, dest, offset, mLength);
+        return mLength;
+      }
+      inflater.reset();
+      inflater.setInput(mData);
+      try {
+        if (inflater.inflate(dest, offset, mLength) != mLength) {
+          throw new IllegalStateException("Stored page is corrupt.");
+        }
+      } catch (DataFormatException e) {
+        throw new IllegalStateException("Stored page is corrupt.", e);
+      }
+      return mLength;
+    }
+  }
+
+  private static final class StoredRegion {
+    final int mStart;
+    final int mLength;
+    final int mDataLength;
+    final List<HashCode> mPages;
+
+    StoredRegion(int start, int length, int dataLength, List<HashCode> pages) {
+      mStart = start;
+      mLength = length;
+      mDataLength = dataLength;
+      mPages = pages;
+    }
+  }
+
+  private static final class Snapshot {
+    final int mModel;
+    final SystemState.Registers mRegisters;
+    final List<StoredRegion> mRegions;
+    Long mToken;
+    /** The upload in flight, or null. */
+    CompletableFuture<Long> mUpload;
+
+    Snapshot(int model, SystemState.Registers registers, List<StoredRegion> regions) {
+      mModel = model;
+      mRegisters = registers;
+      mRegions = regions;
+    }
+  }
+
+  public static final class Builder {
+    private int mPageSize = Z80MemoryImage.PAGE_SIZE;
+    private boolean mCompress = true;
+
+    private Builder() {
+    }
+
+    /** The size of the pages memory is split into. Defaults to 1 KB. */
+    public Builder setPageSize(int pageSize) {
+      Preconditions.checkArgument(pageSize > 0, "pageSize must be positive.");
+      mPageSize = pageSize;
+      return this;
+    }
+
+    /** Whether to compress pages. Enabled by default. */
+    public Builder setCompression(boolean compress) {
+      mCompress = compress;
+      return this;
+    }
+
+    public SnapshotStore build() {
+      return new SnapshotStore(mPageSize, mCompress);
+    }
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.state;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.ByteString;
+import org.retrostore.client.common.proto.SystemState;
+import org.retrostore.client.common.proto.SystemState.MemoryRegion;
+import org.retrostore.wire.ZeroCopy;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The flat 64 KB address space of a Z80, held off-heap in a direct
+ * {@link ByteBuffer}, that converts from and to the memory regions of a
+ * {@link SystemState}.
+ * <p>
+ * The image tracks which of its 64 pages of 1 KB have been written since the
+ * last {@link #clearDirty()}, so that a save state only needs to contain
+ * what changed. Writes through the accessors of this class are tracked
+ * automatically. Emulators writing into the buffer by other means must call
+ * {@link #markDirty(int, int)}.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class Z80MemoryImage {
+  public static final int SIZE = 64 * 1024;
+  public static final int PAGE_SIZE = 1024;
+  public static final int PAGE_COUNT = SIZE / PAGE_SIZE;
+  private static final int PAGE_SHIFT = 10;
+
+  private final ByteBuffer mMemory;
+  /** One bit per page, which works out as there are exactly 64 pages. */
+  private long mDirty;
+
+  /** Creates an image with all bytes zero and no dirty pages. */
+  public Z80MemoryImage() {
+    mMemory = ByteBuffer.allocateDirect(SIZE);
+  }
+
+  /**
+   * Creates an image holding the memory regions of the given state. Regions
+   * downloaded without their data are left zero. No page is dirty afterwards.
+   */
+  public static Z80MemoryImage fromSystemState(SystemState state) {
+    Z80MemoryImage image = new Z80MemoryImage();
+    image.apply(state.getMemoryRegionsList());
+    image.clearDirty();
+    return image;
+  }
+
+  /** Copies the data of the given regions into this image and marks them dirty. */
+  public void apply(List<MemoryRegion> regions) {
+    for (MemoryRegion region : regions) {
+      ByteBuffer data = ZeroCopy.dataView(region);
+      int start = region.getStart();
+      int length = data.remaining();
+      checkRange(start, length);
+      ByteBuffer target = mMemory.duplicate();
+      target.position(start);
+      target.put(data);
+      markDirty(start, length);
+    }
+  }
+
+  public byte read(int address) {
+    return mMemory.get(address);
+  }
+
+  public void read(int address, byte[] dest, int offset, int length) {
+    checkRange(address, length);
+    ByteBuffer source = mMemory.duplicate();
+    source.position(address);
+    source.get(dest, offset, length);
+  }
+
+  public void write(int address, byte value) {
+    mMemory.put(address, value);
+    mDirty |= 1L << (address >>> PAGE_SHIFT);
+  }
+
+  public void write(int address, byte[] source, int offset, int length) {
+    checkRange(address, length);
+    ByteBuffer target = mMemory.duplicate();
+    target.position(address);
+    target.put(source, offset, length);
+    markDirty(address, length);
+  }
+
+  /**
+   * Returns the backing buffer, e.g. to let an emulator core access it
+   * directly. Writes to it must be reported with {@link #markDirty(int, int)}.
+   */
+  public ByteBuffer buffer() {
+    return mMemory.duplicate();
+  }
+
+  /** Marks the pages overlapping the given range as dirty. */
+  public void markDirty(int address, int length) {
+    checkRange(address, length);
+    if (length == 0) {
+      return;
+    }
+    int first = address >>> PAGE_SHIFT;
+    int last = (address + length - 1) >>> PAGE_SHIFT;
+    // Bits 0 to last, intersected with bits first to 63.
+    mDirty |= (-1L >>> (63 - last)) & (-1L << first);
+  }
+
+  public boolean isDirty(int page) {
+    Preconditions.checkElementIndex(page, PAGE_COUNT);
+    return (mDirty & (1L << page)) != 0;
+  }
+
+  public int getDirtyPageCount() {
+    return Long.bitCount(mDirty);
+  }
+
+  public void clearDirty() {
+    mDirty = 0;
+  }
+
+  /**
+   * Returns the dirty pages as memory regions, merging adjacent pages into a
+   * single region. Does not clear the dirty state.
+   */
+  public List<MemoryRegion> getDirtyRegions() {
+    return toRegions(mDirty);
+  }
+
+  /** Returns the complete address space as a single memory region. */
+  public List<MemoryRegion> getAllRegions() {
+    return toRegions(-1L);
+  }
+
+  /**
+   * Creates a state with the model and registers of the given state and the
+   * complete address space of this image as its memory.
+   */
+  public SystemState toSystemState(SystemState base) {
+    return base.toBuilder()
+        .clearMemoryRegions()
+        .addAllMemoryRegions(getAllRegions())
+        .build();
+  }
+
+  /**
+   * Like {@link #toSystemState(SystemState)} but only with the dirty pages as
+   * memory, e.g. to capture the changes since the last save state.
+   */
+  public SystemState toDirtySystemState(SystemState base) {
+    return base.toBuilder()
+        .clearMemoryRegions()
+        .addAllMemoryRegions(getDirtyRegions())
+        .build();
+  }
+
+  private List<MemoryRegion> toRegions(long pages) {
+    List<MemoryRegion> regions = new ArrayList<>();
+    int page = 0;
+    while (page < PAGE_COUNT) {
+      if ((pages & (1L << page)) == 0) {
+        page++;
+        continue;
+      }
+      int first = page;
+      while (page < PAGE_COUNT && (pages & (1L << page)) != 0) {
+        page++;
+      }
+      regions.add(toRegion(first * PAGE_SIZE, (page - first) * PAGE_SIZE));
+    }
+    return regions;
+  }
+
+  private MemoryRegion toRegion(int start, int length) {
+    ByteBuffer source = mMemory.duplicate();
+    source.position(start);
+    source.limit(start + length);
+    return MemoryRegion.newBuilder()
+        .setStart(start)
+        .setLength(length)
+        .setData(ByteString.copyFrom(source))
+        .build();
+  }
+
+  private static void checkRange(int address, int length) {
+    Preconditions.checkPositionIndexes(address, address + length, SIZE);
+  }
+}
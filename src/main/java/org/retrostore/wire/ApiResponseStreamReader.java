@@ -0,0 +1,157 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.wire;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import com.google.protobuf.WireFormat;
+import org.retrostore.client.common.proto.ApiResponseApps;
+import org.retrostore.client.common.proto.ApiResponseMediaImages;
+import org.retrostore.client.common.proto.App;
+import org.retrostore.client.common.proto.MediaImage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Incrementally decodes the repeated entries of an API response, such as
+ * {@link ApiResponseApps} or {@link ApiResponseMediaImages}, from a stream.
+ * <p>
+ * All API responses start with `success` (1) and `message` (2). The field
+ * number of the repeated payload is given per response type by the factory
+ * methods. Entries are decoded one at a time, so memory is
+ * bounded by the largest single entry instead of the whole response. Since
+ * proto3 does not serialize a `false` success flag, {@link #isSuccess()} and
+ * {@link #getMessage()} are only final once the iteration is done.
+ *
+ * @param <T> the type of the repeated entries.
+ */
+public final class ApiResponseStreamReader<T extends MessageLite> implements Iterator<T>,
+    Closeable {
+  private static final int SUCCESS_TAG =
+      (ApiResponseApps.SUCCESS_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+  private static final int MESSAGE_TAG =
+      (ApiResponseApps.MESSAGE_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
+  private final InputStream mStream;
+  private final CodedInputStream mInput;
+  private final Parser<T> mParser;
+  private final int mEntryTag;
+
+  private boolean mSuccess;
+  private String mMessage = "";
+  private T mNext;
+  private boolean mDone;
+
+  private ApiResponseStreamReader(InputStream stream, Parser<T> parser, int entryFieldNumber) {
+    mStream = stream;
+    mInput = CodedInputStream.newInstance(stream);
+    mParser = parser;
+    mEntryTag = (entryFieldNumber << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+  }
+
+  /** Reads the apps of a serialized {@link ApiResponseApps}. */
+  public static ApiResponseStreamReader<App> forApps(InputStream stream) {
+    return new ApiResponseStreamReader<>(stream, App.parser(),
+        ApiResponseApps.APP_FIELD_NUMBER);
+  }
+
+  /** Reads the media images of a serialized {@link ApiResponseMediaImages}. */
+  public static ApiResponseStreamReader<MediaImage> forMediaImages(InputStream stream) {
+    return new ApiResponseStreamReader<>(stream, MediaImage.parser(),
+        ApiResponseMediaImages.MEDIAIMAGE_FIELD_NUMBER);
+  }
+
+  /**
+   * Whether the server reported success. Only final after {@link #hasNext()}
+   * returned false.
+   */
+  public boolean isSuccess() {
+    return mSuccess;
+  }
+
+  /** The (error) message of the response. Only final after the iteration is done. */
+  public String getMessage() {
+    return mMessage;
+  }
+
+  /**
+   * Like {@link #hasNext()} but throws the underlying exception instead of
+   * wrapping it.
+   */
+  public boolean advance() throws IOException {
+    if (mNext != null) {
+      return true;
+    }
+    while (!mDone) {
+      int tag = mInput.readTag();
+      if (tag == mEntryTag) {
+        // The size limit applies per entry, not to the whole response.
+        mInput.resetSizeCounter();
+        mNext = mInput.readMessage(mParser, ExtensionRegistryLite.getEmptyRegistry());
+        return true;
+      }
+      switch (tag) {
+        case 0:
+          mDone = true;
+          break;
+        case SUCCESS_TAG:
+          mSuccess = mInput.readBool();
+          break;
+        case MESSAGE_TAG:
+          mMessage = mInput.readStringRequireUtf8();
+          break;
+        default:
+          if (!mInput.skipField(tag)) {
+            mDone = true;
+          }
+      }
+    }
+    return false;
+  }
+
+  /** @throws UncheckedIOException if the response cannot be read or parsed. */
+  @Override
+  public boolean hasNext() {
+    try {
+      return advance();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    T next = mNext;
+    mNext = null;
+    return next;
+  }
+
+  @Override
+  public void close() throws IOException {
+    mStream.close();
+  }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.wire;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import org.retrostore.client.common.proto.ApiResponseAppsNano;
+import org.retrostore.client.common.proto.AppNano;
+import org.retrostore.client.common.proto.Trs80Extension;
+import org.retrostore.client.common.proto.Trs80Model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A flyweight reader over a serialized {@link ApiResponseAppsNano}.
+ * <p>
+ * Instead of materializing an {@link AppNano} per entry, the reader walks the
+ * repeated `app` field in place. After {@link #next()} returns true, the
+ * accessors refer to the current app. String fields are available as
+ * {@link CharSequence} views that are only valid until the next call to
+ * {@link #next()}; apart from those views being reused, iterating does not
+ * allocate.
+ * <p>
+ * An instance can be reused for several responses by calling {@link #wrap}.
+ * Instances are not thread-safe.
+ */
+public final class AppNanoFlyweight {
+  private ByteBuffer mBuffer;
+  private int mEnd;
+  private int mCursor;
+
+  private boolean mSuccess;
+  private int mMessageOffset;
+  private int mMessageLength;
+  private int mAppCount;
+  private int mFirstApp;
+
+  // Current record.
+  private int mPos;
+  private final Utf8CharSequence mId = new Utf8CharSequence();
+  private final Utf8CharSequence mName = new Utf8CharSequence();
+  private final Utf8CharSequence mVersion = new Utf8CharSequence();
+  private final Utf8CharSequence mAuthor = new Utf8CharSequence();
+  private int mReleaseYear;
+  private boolean mHasExtTrs80;
+  private int mModel;
+
+  /** Creates a reader over the given response bytes. */
+  public static AppNanoFlyweight of(ByteBuffer buffer) throws InvalidProtocolBufferException {
+    AppNanoFlyweight flyweight = new AppNanoFlyweight();
+    flyweight.wrap(buffer);
+    return flyweight;
+  }
+
+  /** Creates a reader over the given response bytes. */
+  public static AppNanoFlyweight of(byte[] bytes) throws InvalidProtocolBufferException {
+    return of(ByteBuffer.wrap(bytes));
+  }
+
+  /**
+   * Points this reader at a new response, spanning the buffer's position to
+   * its limit. The buffer's position and limit are not modified.
+   */
+  public void wrap(ByteBuffer buffer) throws InvalidProtocolBufferException {
+    mBuffer = buffer;
+    mEnd = buffer.limit();
+    mSuccess = false;
+    mMessageOffset = 0;
+    mMessageLength = 0;
+    mAppCount = 0;
+    mFirstApp = mEnd;
+
+    mPos = buffer.position();
+    while (mPos < mEnd) {
+      int fieldStart = mPos;
+      int tag = readTag();
+      switch (tag) {
+        case (ApiResponseAppsNano.SUCCESS_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT:
+          mSuccess = readVarint() != 0;
+          break;
+        case (ApiResponseAppsNano.MESSAGE_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED:
+          mMessageLength = readLength();
+          mMessageOffset = mPos;
+          mPos += mMessageLength;
+          break;
+        case (ApiResponseAppsNano.APP_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED:
+          if (mAppCount++ == 0) {
+            mFirstApp = fieldStart;
+          }
+          skipLengthDelimited();
+          break;
+        default:
+          skipField(tag);
+      }
+    }
+    rewind();
+  }
+
+  /** Moves back to before the first app. */
+  public void rewind() {
+    mCursor = mFirstApp;
+    mId.clear();
+    mName.clear();
+    mVersion.clear();
+    mAuthor.clear();
+  }
+
+  /** Whether the server reported success. */
+  public boolean isSuccess() {
+    return mSuccess;
+  }
+
+  /** The (error) message of the response. Allocates a String. */
+  public String getMessage() {
+    Utf8CharSequence message = new Utf8CharSequence();
+    message.set(mBuffer, mMessageOffset, mMessageLength);
+    return message.toString();
+  }
+
+  /** The number of apps in the response. */
+  public int getAppCount() {
+    return mAppCount;
+  }
+
+  /**
+   * Advances to the next app in the response.
+   *
+   * @return Whether there was another app.
+   */
+  public boolean next() throws InvalidProtocolBufferException {
+    mPos = mCursor;
+    while (mPos < mEnd) {
+      int tag = readTag();
+      if (tag == ((ApiResponseAppsNano.APP_FIELD_NUMBER << 3)
+          | WireFormat.WIRETYPE_LENGTH_DELIMITED)) {
+        int length = readLength();
+        int recordEnd = mPos + length;
+        mCursor = recordEnd;
+        readRecord(recordEnd);
+        return true;
+      }
+      skipField(tag);
+    }
+    mCursor = mEnd;
+    return false;
+  }
+
+  /** The ID of the current app. The view is only valid until {@link #next()}. */
+  public CharSequence getIdView() {
+    return mId;
+  }
+
+  /** The name of the current app. The view is only valid until {@link #next()}. */
+  public CharSequence getNameView() {
+    return mName;
+  }
+
+  /** The version of the current app. The view is only valid until {@link #next()}. */
+  public CharSequence getVersionView() {
+    return mVersion;
+  }
+
+  /** The author of the current app. The view is only valid until {@link #next()}. */
+  public CharSequence getAuthorView() {
+    return mAuthor;
+  }
+
+  /** The ID of the current app. Allocates a String. */
+  public String getId() {
+    return mId.toString();
+  }
+
+  /** The name of the current app. Allocates a String. */
+  public String getName() {
+    return mName.toString();
+  }
+
+  /** The release year of the current app. */
+  public int getReleaseYear() {
+    return mReleaseYear;
+  }
+
+  /** Whether the current app has a TRS-80 extension. */
+  public boolean hasExtTrs80() {
+    return mHasExtTrs80;
+  }
+
+  /** The TRS-80 model of the current app. */
+  public Trs80Model getModel() {
+    Trs80Model model = Trs80Model.forNumber(mModel);
+    return model == null ? Trs80Model.UNRECOGNIZED : model;
+  }
+
+  /** Materializes the current app. Useful for the few entries a caller keeps. */
+  public AppNano toAppNano() {
+    AppNano.Builder app = AppNano.newBuilder()
+        .setId(mId.toString())
+        .setName(mName.toString())
+        .setVersion(mVersion.toString())
+        .setReleaseYear(mReleaseYear)
+        .setAuthor(mAuthor.toString());
+    if (mHasExtTrs80) {
+      app.setExtTrs80(Trs80Extension.newBuilder().setModelValue(mModel));
+    }
+    return app.build();
+  }
+
+  private void readRecord(int recordEnd) throws InvalidProtocolBufferException {
+    if (recordEnd > mEnd) {
+      throw truncated();
+    }
+    mId.clear();
+    mName.clear();
+    mVersion.clear();
+    mAuthor.clear();
+    mReleaseYear = 0;
+    mHasExtTrs80 = false;
+    mModel = 0;
+
+    int outerEnd = mEnd;
+    mEnd = recordEnd;
+    try {
+      while (mPos < mEnd) {
+        int tag = readTag();
+        switch (tag) {
+          case (AppNano.ID_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED:
+            readString(mId);
+            break;
+          case (AppNano.NAME_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED:
+            readString(mName);
+            break;
+          case (AppNano.VERSION_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED:
+            readString(mVersion);
+            break;
+          case (AppNano.RELEASE_YEAR_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT:
+            mReleaseYear = (int) readVarint();
+            break;
+          case (AppNano.AUTHOR_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED:
+            readString(mAuthor);
+            break;
+          case (AppNano.EXT_TRS80_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED:
+            mHasExtTrs80 = true;
+            readExtTrs80();
+            break;
+          default:
+            skipField(tag);
+        }
+      }
+    } finally {
+      mEnd = outerEnd;
+    }
+  }
+
+  private void readExtTrs80() throws InvalidProtocolBufferException {
+    int length = readLength();
+    int extEnd = mPos + length;
+    int outerEnd = mEnd;
+    mEnd = extEnd;
+    try {
+      while (mPos < mEnd) {
+        int tag = readTag();
+        if (tag == ((Trs80Extension.MODEL_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT)) {
+          mModel = (int) readVarint();
+        } else {
+          skipField(tag);
+        }
+      }
+    } finally {
+      mEnd = outerEnd;
+    }
+  }
+
+  private void readString(Utf8CharSequence target) throws InvalidProtocolBufferException {
+    int length = readLength();
+    target.set(mBuffer, mPos, length);
+    mPos += length;
+  }
+
+  private int readTag() throws InvalidProtocolBufferException {
+    int tag = (int) readVarint();
+    if (WireFormat.getTagFieldNumber(tag) == 0) {
+      throw new InvalidProtocolBufferException("Protocol message contained an invalid tag (zero).");
+    }
+    return tag;
+  }
+
+  private int readLength() throws InvalidProtocolBufferException {
+    long length = readVarint();
+    if (length < 0 || mPos + length > mEnd) {
+      throw truncated();
+    }
+    return (int) length;
+  }
+
+  private long readVarint() throws InvalidProtocolBufferException {
+    long result = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      if (mPos >= mEnd) {
+        throw truncated();
+      }
+      byte b = mBuffer.get(mPos++);
+      result |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return result;
+      }
+    }
+    throw new InvalidProtocolBufferException("CodedInputStream encountered a malformed varint.");
+  }
+
+  private void skipField(int tag) throws InvalidProtocolBufferException {
+    switch (WireFormat.getTagWireType(tag)) {
+      case WireFormat.WIRETYPE_VARINT:
+        readVarint();
+        break;
+      case WireFormat.WIRETYPE_FIXED64:
+        skip(8);
+        break;
+      case WireFormat.WIRETYPE_LENGTH_DELIMITED:
+        skipLengthDelimited();
+        break;
+      case WireFormat.WIRETYPE_FIXED32:
+        skip(4);
+        break;
+      default:
+        throw new InvalidProtocolBufferException("Protocol message tag had invalid wire type.");
+    }
+  }
+
+  private void skipLengthDelimited() throws InvalidProtocolBufferException {
+    // Not `mPos += readLength()`, which would add to mPos from before the length prefix.
+    int length = readLength();
+    mPos += length;
+  }
+
+  private void skip(int n) throws InvalidProtocolBufferException {
+    if (mPos + n > mEnd) {
+      throw truncated();
+    }
+    mPos += n;
+  }
+
+  private static InvalidProtocolBufferException truncated() {
+    return new InvalidProtocolBufferException(
+        "While parsing a protocol message, the input ended unexpectedly in the middle of a field.");
+  }
+}
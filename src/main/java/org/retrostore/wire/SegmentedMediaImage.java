@@ -0,0 +1,68 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.wire;
+
+import com.google.protobuf.ByteString;
+import org.retrostore.buffer.SegmentedBuffer;
+import org.retrostore.client.common.proto.MediaImage;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A media image whose data is held in a {@link SegmentedBuffer} instead of a
+ * single {@link com.google.protobuf.ByteString}. Closing it returns the data
+ * chunks to their pool.
+ */
+public final class SegmentedMediaImage implements Closeable {
+  private final MediaImage mMetadata;
+  private final SegmentedBuffer mData;
+
+  public SegmentedMediaImage(MediaImage metadata, SegmentedBuffer data) {
+    mMetadata = metadata;
+    mData = data;
+  }
+
+  /** The media image with all fields except for its data. */
+  public MediaImage getMetadata() {
+    return mMetadata;
+  }
+
+  /** The data of the media image. */
+  public SegmentedBuffer getData() {
+    return mData;
+  }
+
+  /**
+   * Copies the image into a {@link MediaImage}. Its data is a rope of
+   * chunk-sized pieces, so no array of the size of the image is allocated.
+   */
+  public MediaImage toMediaImage() {
+    List<ByteString> pieces = new ArrayList<>();
+    for (ByteBuffer chunk : mData.asReadOnlyBuffers()) {
+      pieces.add(ByteString.copyFrom(chunk));
+    }
+    return mMetadata.toBuilder().setData(ByteString.copyFrom(pieces)).build();
+  }
+
+  @Override
+  public void close() {
+    mData.close();
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.wire;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import org.retrostore.buffer.ChunkPool;
+import org.retrostore.buffer.SegmentedBuffer;
+import org.retrostore.client.common.proto.ApiResponseMediaImages;
+import org.retrostore.client.common.proto.MediaImage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Decodes the media images of a serialized {@link ApiResponseMediaImages} from
+ * a stream, reading the data of each image straight into pooled chunks.
+ * <p>
+ * Like {@link ApiResponseStreamReader}, {@link #isSuccess()} and
+ * {@link #getMessage()} are only final once the iteration is done. Images
+ * handed out by {@link #next()} are owned by the caller and should be closed.
+ */
+public final class SegmentedMediaImageReader implements Iterator<SegmentedMediaImage>,
+    Closeable {
+  private static final int SUCCESS_TAG =
+      (ApiResponseMediaImages.SUCCESS_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+  private static final int MESSAGE_TAG =
+      (ApiResponseMediaImages.MESSAGE_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+  private static final int ENTRY_TAG =
+      (ApiResponseMediaImages.MEDIAIMAGE_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
+  private static final int TYPE_TAG =
+      (MediaImage.TYPE_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+  private static final int FILENAME_TAG =
+      (MediaImage.FILENAME_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+  private static final int DATA_TAG =
+      (MediaImage.DATA_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+  private static final int UPLOAD_TIME_TAG =
+      (MediaImage.UPLOADTIME_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+  private static final int DESCRIPTION_TAG =
+      (MediaImage.DESCRIPTION_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
+  private final StreamWireReader mReader;
+  private final ChunkPool mPool;
+
+  private boolean mSuccess;
+  private String mMessage = "";
+  private SegmentedMediaImage mNext;
+  private boolean mDone;
+
+  public SegmentedMediaImageReader(InputStream stream, ChunkPool pool) {
+    mReader = new StreamWireReader(stream);
+    mPool = pool;
+  }
+
+  public SegmentedMediaImageReader(InputStream stream) {
+    this(stream, ChunkPool.getDefault());
+  }
+
+  /**
+   * Whether the server reported success. Only final after {@link #hasNext()}
+   * returned false.
+   */
+  public boolean isSuccess() {
+    return mSuccess;
+  }
+
+  /** The (error) message of the response. Only final after the iteration is done. */
+  public String getMessage() {
+    return mMessage;
+  }
+
+  /**
+   * Like {@link #hasNext()} but throws the underlying exception instead of
+   * wrapping it.
+   */
+  public boolean advance() throws IOException {
+    if (mNext != null) {
+      return true;
+    }
+    while (!mDone) {
+      int tag = mReader.readTag();
+      switch (tag) {
+        case 0:
+          mDone = true;
+          break;
+        case SUCCESS_TAG:
+          mSuccess = mReader.readVarint() != 0;
+          break;
+        case MESSAGE_TAG:
+          mMessage = mReader.readString();
+          break;
+        case ENTRY_TAG:
+          mNext = readMediaImage();
+          return true;
+        default:
+          mReader.skipField(tag);
+      }
+    }
+    return false;
+  }
+
+  /** @throws UncheckedIOException if the response cannot be read or parsed. */
+  @Override
+  public boolean hasNext() {
+    try {
+      return advance();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public SegmentedMediaImage next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    SegmentedMediaImage next = mNext;
+    mNext = null;
+    return next;
+  }
+
+  /** Closes the stream and releases an image that was read but not handed out. */
+  @Override
+  public void close() throws IOException {
+    if (mNext != null) {
+      mNext.close();
+      mNext = null;
+    }
+    mReader.close();
+  }
+
+  private SegmentedMediaImage readMediaImage() throws IOException {
+    long end = mReader.readLength() + mReader.getPosition();
+    MediaImage.Builder metadata = MediaImage.newBuilder();
+    SegmentedBuffer.Builder data = SegmentedBuffer.newBuilder(mPool);
+    try {
+      while (mReader.getPosition() < end) {
+        int tag = mReader.readTag();
+        switch (tag) {
+          case TYPE_TAG:
+            metadata.setTypeValue((int) mReader.readVarint());
+            break;
+          case FILENAME_TAG:
+            metadata.setFilename(mReader.readString());
+            break;
+          case DATA_TAG:
+            // Like protobuf, the last occurrence of a scalar field wins.
+            data.discard();
+            mReader.readBytes(data);
+            break;
+          case UPLOAD_TIME_TAG:
+            metadata.setUploadTime(mReader.readVarint());
+            break;
+          case DESCRIPTION_TAG:
+            metadata.setDescription(mReader.readString());
+            break;
+          case 0:
+            throw new InvalidProtocolBufferException("Media image ended unexpectedly.");
+          default:
+            mReader.skipField(tag);
+        }
+      }
+      if (mReader.getPosition() != end) {
+        throw new InvalidProtocolBufferException("Media image overran its length.");
+      }
+      return new SegmentedMediaImage(metadata.build(), data.build());
+    } catch (IOException | RuntimeException e) {
+      data.discard();
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.wire;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import org.retrostore.buffer.SegmentedBuffer;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A minimal protobuf wire reader over a stream that, unlike
+ * {@link com.google.protobuf.CodedInputStream}, can hand the underlying stream
+ * to a {@link SegmentedBuffer.Builder} for large byte fields, so they are
+ * never materialized as a single array.
+ */
+final class StreamWireReader {
+  private static final int BUFFER_SIZE = 8 * 1024;
+
+  private final InputStream mIn;
+  private long mPosition;
+
+  StreamWireReader(InputStream in) {
+    mIn = in instanceof BufferedInputStream ? in : new BufferedInputStream(in, BUFFER_SIZE);
+  }
+
+  /** The number of bytes consumed so far. */
+  long getPosition() {
+    return mPosition;
+  }
+
+  /** Returns the next tag, or 0 at the end of the stream. */
+  int readTag() throws IOException {
+    int first = mIn.read();
+    if (first < 0) {
+      return 0;
+    }
+    mPosition++;
+    int tag = (int) readVarint(first);
+    if (WireFormat.getTagFieldNumber(tag) == 0) {
+      throw new InvalidProtocolBufferException("Protocol message contained an invalid tag (zero).");
+    }
+    return tag;
+  }
+
+  long readVarint() throws IOException {
+    return readVarint(readByte());
+  }
+
+  /** Reads the length prefix of a length-delimited field. */
+  int readLength() throws IOException {
+    long length = readVarint();
+    if (length < 0 || length > Integer.MAX_VALUE) {
+      throw new InvalidProtocolBufferException("Invalid length: " + length);
+    }
+    return (int) length;
+  }
+
+  String readString() throws IOException {
+    byte[] bytes = new byte[readLength()];
+    readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /** Reads a length-delimited field straight into the given builder. */
+  void readBytes(SegmentedBuffer.Builder builder) throws IOException {
+    int length = readLength();
+    builder.readFrom(mIn, length);
+    mPosition += length;
+  }
+
+  void skipField(int tag) throws IOException {
+    switch (WireFormat.getTagWireType(tag)) {
+      case WireFormat.WIRETYPE_VARINT:
+        readVarint();
+        break;
+      case WireFormat.WIRETYPE_FIXED64:
+        skip(8);
+        break;
+      case WireFormat.WIRETYPE_LENGTH_DELIMITED:
+        skip(readLength());
+        break;
+      case WireFormat.WIRETYPE_FIXED32:
+        skip(4);
+        break;
+      default:
+        // Groups are not used by any of the API messages.
+        throw new InvalidProtocolBufferException("Unsupported wire type in tag " + tag);
+    }
+  }
+
+  void close() throws IOException {
+    mIn.close();
+  }
+
+  private long readVarint(int first) throws IOException {
+    long result = first & 0x7F;
+    int b = first;
+    for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+      if (shift >= 64) {
+        throw new InvalidProtocolBufferException("Malformed varint.");
+      }
+      b = readByte();
+      result |= (long) (b & 0x7F) << shift;
+    }
+    return result;
+  }
+
+  private int readByte() throws IOException {
+    int b = mIn.read();
+    if (b < 0) {
+      throw new EOFException("Truncated message.");
+    }
+    mPosition++;
+    return b;
+  }
+
+  private void readFully(byte[] bytes) throws IOException {
+    int offset = 0;
+    while (offset < bytes.length) {
+      int read = mIn.read(bytes, offset, bytes.length - offset);
+      if (read < 0) {
+        throw new EOFException("Truncated message.");
+      }
+      offset += read;
+    }
+    mPosition += bytes.length;
+  }
+
+  private void skip(long n) throws IOException {
+    long remaining = n;
+    while (remaining > 0) {
+      long skipped = mIn.skip(remaining);
+      if (skipped <= 0) {
+        if (mIn.read() < 0) {
+          throw new EOFException("Truncated message.");
+        }
+        skipped = 1;
+      }
+      remaining -= skipped;
+    }
+    mPosition += n;
+  }
+}
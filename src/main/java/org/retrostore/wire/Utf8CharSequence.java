@@ -0,0 +1,160 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.wire;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A reusable {@link CharSequence} view over UTF-8 bytes inside a buffer.
+ * <p>
+ * ASCII content, which covers almost all catalog data, is served directly
+ * from the buffer. Other content is decoded once into an internal char array
+ * that is reused across {@link #set} calls.
+ */
+final class Utf8CharSequence implements CharSequence {
+  private static final char REPLACEMENT_CHAR = '\uFFFD';
+
+  private ByteBuffer mBuffer;
+  private int mOffset;
+  private int mByteLength;
+
+  /** -1 if not yet determined, 0 if ASCII, 1 if decoded into mChars. */
+  private int mState;
+  private char[] mChars = new char[0];
+  private int mCharLength;
+
+  void set(ByteBuffer buffer, int offset, int byteLength) {
+    mBuffer = buffer;
+    mOffset = offset;
+    mByteLength = byteLength;
+    mState = -1;
+  }
+
+  void clear() {
+    set(null, 0, 0);
+  }
+
+  @Override
+  public int length() {
+    ensureDecoded();
+    return mState == 0 ? mByteLength : mCharLength;
+  }
+
+  @Override
+  public char charAt(int index) {
+    ensureDecoded();
+    if (index < 0 || index >= length()) {
+      throw new IndexOutOfBoundsException("Index: " + index);
+    }
+    return mState == 0 ? (char) mBuffer.get(mOffset + index) : mChars[index];
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return toString().substring(start, end);
+  }
+
+  @Override
+  public String toString() {
+    if (mByteLength == 0) {
+      return "";
+    }
+    ensureDecoded();
+    if (mState == 1) {
+      return new String(mChars, 0, mCharLength);
+    }
+    byte[] bytes = new byte[mByteLength];
+    for (int i = 0; i < mByteLength; ++i) {
+      bytes[i] = mBuffer.get(mOffset + i);
+    }
+    return new String(bytes, StandardCharsets.US_ASCII);
+  }
+
+  private void ensureDecoded() {
+    if (mState != -1) {
+      return;
+    }
+    for (int i = 0; i < mByteLength; ++i) {
+      if (mBuffer.get(mOffset + i) < 0) {
+        decode();
+        mState = 1;
+        return;
+      }
+    }
+    mState = 0;
+  }
+
+  /** Decodes UTF-8 into the reusable char array. Malformed input becomes U+FFFD. */
+  private void decode() {
+    if (mChars.length < mByteLength) {
+      mChars = new char[mByteLength];
+    }
+    int n = 0;
+    int i = mOffset;
+    int end = mOffset + mByteLength;
+    while (i < end) {
+      int b = mBuffer.get(i++) & 0xFF;
+      int cp;
+      int extra;
+      if (b < 0x80) {
+        cp = b;
+        extra = 0;
+      } else if ((b & 0xE0) == 0xC0) {
+        cp = b & 0x1F;
+        extra = 1;
+      } else if ((b & 0xF0) == 0xE0) {
+        cp = b & 0x0F;
+        extra = 2;
+      } else if ((b & 0xF8) == 0xF0) {
+        cp = b & 0x07;
+        extra = 3;
+      } else {
+        mChars[n++] = REPLACEMENT_CHAR;
+        continue;
+      }
+      if (i + extra > end) {
+        mChars[n++] = REPLACEMENT_CHAR;
+        break;
+      }
+      boolean valid = true;
+      for (int k = 0; k < extra; ++k) {
+        int c = mBuffer.get(i + k) & 0xFF;
+        if ((c & 0xC0) != 0x80) {
+          valid = false;
+          break;
+        }
+        cp = (cp << 6) | (c & 0x3F);
+      }
+      if (!valid) {
+        mChars[n++] = REPLACEMENT_CHAR;
+        continue;
+      }
+      i += extra;
+      if (cp > Character.MAX_CODE_POINT) {
+        mChars[n++] = REPLACEMENT_CHAR;
+      } else if (Character.isSupplementaryCodePoint(cp)) {
+        // A 4-byte sequence always yields two chars, so this fits.
+        mChars[n++] = Character.highSurrogate(cp);
+        mChars[n++] = Character.lowSurrogate(cp);
+      } else {
+        mChars[n++] = (char) cp;
+      }
+    }
+    mCharLength = n;
+  }
+}
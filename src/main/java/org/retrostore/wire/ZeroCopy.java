@@ -0,0 +1,65 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.wire;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Parser;
+import com.google.protobuf.ZeroCopyByteString;
+import org.retrostore.client.common.proto.MediaImage;
+import org.retrostore.client.common.proto.SystemState;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Helpers to access media and memory data without copying it.
+ */
+public final class ZeroCopy {
+  private ZeroCopy() {
+  }
+
+  /** Returns a read-only view of the data of the given media image. */
+  public static ByteBuffer dataView(MediaImage image) {
+    return image.getData().asReadOnlyByteBuffer();
+  }
+
+  /** Returns a read-only view of the data of the given memory region. */
+  public static ByteBuffer dataView(SystemState.MemoryRegion region) {
+    return region.getData().asReadOnlyByteBuffer();
+  }
+
+  /**
+   * Parses a message whose bytes fields alias the given array instead of
+   * being copied out of it.
+   * <p>
+   * The array must not be modified afterwards. Note that as long as any bytes
+   * field of the result is reachable, the complete array stays reachable.
+   */
+  public static <T> T parseAliased(byte[] bytes, Parser<T> parser)
+      throws InvalidProtocolBufferException {
+    return parseAliased(bytes, 0, bytes.length, parser);
+  }
+
+  /** Like {@link #parseAliased(byte[], Parser)} but parses a slice of the array. */
+  public static <T> T parseAliased(byte[] bytes, int offset, int length, Parser<T> parser)
+      throws InvalidProtocolBufferException {
+    CodedInputStream input = ZeroCopyByteString.wrap(bytes, offset, length).newCodedInput();
+    input.enableAliasing(true);
+    return parser.parseFrom(input, ExtensionRegistryLite.getEmptyRegistry());
+  }
+}
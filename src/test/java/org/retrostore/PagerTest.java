@@ -0,0 +1,116 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class PagerTest {
+
+  /** A listing of `size` items that fails like the server for a start past the end. */
+  private static class Listing implements Pager.PageSource<Integer> {
+    final int mSize;
+    /** Requests with this start fail with a server error although they are in range. */
+    int mFailingStart = -1;
+
+    Listing(int size) {
+      mSize = size;
+    }
+
+    @Override
+    public List<Integer> fetch(int start, int num) throws ApiException {
+      if (start == mFailingStart) {
+        throw new ApiException("Server reported error: 'Internal error'");
+      }
+      if (start >= mSize) {
+        throw new ApiException("Server reported error: 'Start out of range'");
+      }
+      List<Integer> page = new ArrayList<>();
+      for (int i = start; i < Math.min(mSize, start + num); ++i) {
+        page.add(i);
+      }
+      return page;
+    }
+  }
+
+  private static List<Integer> drain(Pager<Integer> pager, int num) throws ApiException {
+    List<Integer> items = new ArrayList<>();
+    List<Integer> page;
+    while ((page = pager.next(num)) != null) {
+      items.addAll(page);
+    }
+    return items;
+  }
+
+  @Test
+  public void endsWithShortPage() throws ApiException {
+    assertEquals(7, drain(new Pager<>(new Listing(7), 0), 3).size());
+  }
+
+  @Test
+  public void endsWithFullPage() throws ApiException {
+    List<Integer> items = drain(new Pager<>(new Listing(6), 0), 3);
+    assertEquals(6, items.size());
+    assertEquals(5, (int) items.get(5));
+  }
+
+  @Test
+  public void emptyListing() throws ApiException {
+    assertNull(new Pager<>((start, num) -> Collections.<Integer>emptyList(), 0).next(3));
+  }
+
+  @Test
+  public void serverErrorWithinListingIsThrown() {
+    Listing listing = new Listing(10);
+    listing.mFailingStart = 3;
+    try {
+      drain(new Pager<>(listing, 0), 3);
+      fail("A server error within the listing must not end it.");
+    } catch (ApiException e) {
+      assertEquals("Server reported error: 'Internal error'", e.getMessage());
+    }
+  }
+
+  @Test
+  public void transportErrorIsThrown() {
+    ApiException error = new ApiException("Unable to make request to server.",
+        new IOException("Connection reset"));
+    try {
+      Pager.fetchPage((start, num) -> {
+        throw error;
+      }, 5, 3);
+      fail("A transport error must be thrown.");
+    } catch (ApiException e) {
+      assertSame(error, e);
+    }
+  }
+
+  @Test
+  public void fetchPagePastEndIsEmpty() throws ApiException {
+    assertEquals(0, Pager.fetchPage(new Listing(6), 6, 3).size());
+    assertEquals(0, Pager.fetchPage(new Listing(6), 9, 3).size());
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore;
+
+import org.retrostore.client.common.proto.FetchMediaImageRegionParams;
+import org.retrostore.client.common.proto.ListAppsParams;
+import org.retrostore.client.common.proto.MediaType;
+import org.retrostore.net.MessageWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * Measures the per-request allocations of the client side of the request path
+ * (resolving the endpoint URL and serializing the params onto the connection),
+ * comparing the old approach to the current one. No network is involved.
+ */
+public class RequestAllocationBenchmark {
+  private static final String SERVER_URL = "https://retrostore.org/api/%s";
+  private static final int WARMUP_ITERATIONS = 200_000;
+  private static final int ITERATIONS = 1_000_000;
+
+  private interface RequestPath {
+    void run() throws IOException;
+  }
+
+  public static void main(String[] args) throws IOException {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    if (!threads.isThreadAllocatedMemorySupported()) {
+      System.err.println("Thread allocation counters are not supported by this JVM.");
+      return;
+    }
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    ListAppsParams listParams = ListAppsParams.newBuilder()
+        .setStart(100)
+        .setNum(50)
+        .setQuery("donkey kong")
+        .setTrs80(ListAppsParams.Trs80Params.newBuilder()
+            .addMediaTypes(MediaType.DISK)
+            .addMediaTypes(MediaType.COMMAND))
+        .build();
+    FetchMediaImageRegionParams regionParams = FetchMediaImageRegionParams.newBuilder()
+        .setToken("29b20252-680f-11e8-b4a9-1f10b5491ef5/disk_0.dsk")
+        .setStart(4096)
+        .setLength(1024)
+        .build();
+    OutputStream socket = OutputStream.nullOutputStream();
+    Map<ApiEndpoint, URL> endpoints = ApiEndpoint.resolveAll(SERVER_URL);
+
+    // The URL is kept in a field, so the JIT cannot drop its creation.
+    URL[] sink = new URL[1];
+    RequestPath oldPath = () -> {
+      sink[0] = new URL(String.format(SERVER_URL, "listAppsNano"));
+      socket.write(listParams.toByteArray());
+      sink[0] = new URL(String.format(SERVER_URL, "fetchMediaImageRegion"));
+      socket.write(regionParams.toByteArray());
+    };
+    RequestPath newPath = () -> {
+      sink[0] = endpoints.get(ApiEndpoint.LIST_APPS_NANO);
+      MessageWriter.writeTo(listParams, socket);
+      sink[0] = endpoints.get(ApiEndpoint.FETCH_MEDIA_IMAGE_REGION);
+      MessageWriter.writeTo(regionParams, socket);
+    };
+
+    System.out.println("Per-request client allocations (2 requests per iteration):");
+    measure("format + toByteArray", oldPath, threads);
+    measure("resolved URL + writeTo", newPath, threads);
+  }
+
+  private static void measure(String name,
+                              RequestPath path,
+                              com.sun.management.ThreadMXBean threads) throws IOException {
+    for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+      path.run();
+    }
+    long threadId = Thread.currentThread().getId();
+    long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+    long startTime = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; ++i) {
+      path.run();
+    }
+    long duration = System.nanoTime() - startTime;
+    long bytes = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+    System.out.printf("%-24s %8.1f bytes/op %8.1f ns/op%n",
+        name, (double) bytes / ITERATIONS, (double) duration / ITERATIONS);
+  }
+}
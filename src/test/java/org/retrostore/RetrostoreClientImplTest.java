@@ -0,0 +1,143 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.retrostore;
+
+import com.google.protobuf.GeneratedMessageLite;
+import org.junit.Test;
+import org.retrostore.client.common.proto.ApiResponseAppsNano;
+import org.retrostore.client.common.proto.AppNano;
+import org.retrostore.client.common.proto.ListAppsParams;
+import org.retrostore.net.UrlFetcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RetrostoreClientImplTest {
+
+  /** Serves a listing of `size` apps that fails like the server for a start past the end. */
+  private static class FakeListing implements UrlFetcher {
+    final int mSize;
+    final List<ListAppsParams> mRequests = Collections.synchronizedList(new ArrayList<>());
+    /** Requests with this start fail with a server error although they are in range. */
+    int mFailingStart = -1;
+
+    FakeListing(int size) {
+      mSize = size;
+    }
+
+    @Override
+    public byte[] fetchUrl(String url, GeneratedMessageLite<?, ?> obj) {
+      ListAppsParams params = (ListAppsParams) obj;
+      mRequests.add(params);
+      ApiResponseAppsNano.Builder response = ApiResponseAppsNano.newBuilder();
+      if (params.getStart() == mFailingStart) {
+        return response.setMessage("Internal error").build().toByteArray();
+      }
+      if (params.getStart() >= mSize) {
+        return response.setMessage("Start out of range").build().toByteArray();
+      }
+      for (int i = params.getStart(); i < Math.min(mSize, params.getStart() + params.getNum());
+           ++i) {
+        response.addApp(AppNano.newBuilder().setId(String.valueOf(i)));
+      }
+      return response.setSuccess(true).build().toByteArray();
+    }
+
+    @Override
+    public byte[] fetchUrl(String url, byte[] body) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public byte[] fetchUrl(String url, Object obj) {
+      throw new UnsupportedOperationException();
+    }
+
+    /** The requests that were not one of the windows of the listing. */
+    List<ListAppsParams> probes(int windowSize) {
+      List<ListAppsParams> probes = new ArrayList<>();
+      synchronized (mRequests) {
+        for (ListAppsParams params : mRequests) {
+          if (params.getStart() % windowSize != 0 || params.getNum() != windowSize) {
+            probes.add(params);
+          }
+        }
+      }
+      return probes;
+    }
+  }
+
+  private static RetrostoreClientImpl newClient(FakeListing listing) {
+    return RetrostoreClientImpl.newBuilder("key")
+        .setUrlFetcher(listing)
+        .setListSplitting(10, 4)
+        .build();
+  }
+
+  private static void assertIds(int start, int end, List<AppNano> apps) {
+    assertEquals(end - start, apps.size());
+    for (int i = start; i < end; ++i) {
+      assertEquals(String.valueOf(i), apps.get(i - start).getId());
+    }
+  }
+
+  @Test
+  public void splitListingStopsAtShortWindow() throws ApiException {
+    FakeListing listing = new FakeListing(25);
+    assertIds(0, 25, newClient(listing).fetchAppsNano(0, 50));
+    assertTrue(listing.probes(10).isEmpty());
+  }
+
+  @Test
+  public void splitListingEndingAtWindowProbesOnce() throws ApiException {
+    FakeListing listing = new FakeListing(20);
+    assertIds(0, 20, newClient(listing).fetchAppsNano(0, 40));
+    List<ListAppsParams> probes = listing.probes(10);
+    assertEquals(1, probes.size());
+    assertEquals(19, probes.get(0).getStart());
+  }
+
+  @Test
+  public void splitListingThrowsServerError() {
+    FakeListing listing = new FakeListing(25);
+    listing.mFailingStart = 10;
+    try {
+      newClient(listing).fetchAppsNano(0, 40);
+      fail("Server error not thrown.");
+    } catch (ApiException e) {
+      assertTrue(e.getMessage().contains("Internal error"));
+    }
+  }
+
+  @Test
+  public void splitListingPastEndFailsLikeUnsplit() {
+    FakeListing listing = new FakeListing(25);
+    try {
+      newClient(listing).fetchAppsNano(30, 40);
+      fail("Listing past the end did not fail.");
+    } catch (ApiException e) {
+      assertTrue(e.getMessage().contains("Start out of range"));
+    }
+    assertTrue(listing.probes(10).isEmpty());
+  }
+}
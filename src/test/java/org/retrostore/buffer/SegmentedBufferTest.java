@@ -0,0 +1,93 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.buffer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class SegmentedBufferTest {
+
+  private static byte[] bytes(int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; ++i) {
+      bytes[i] = (byte) i;
+    }
+    return bytes;
+  }
+
+  /** Returns at most `max` bytes per read, like a network stream. */
+  private static InputStream trickle(byte[] data, int max) {
+    return new ByteArrayInputStream(data) {
+      @Override
+      public synchronized int read(byte[] b, int off, int len) {
+        return super.read(b, off, Math.min(len, max));
+      }
+    };
+  }
+
+  @Test
+  public void readFullyEndingOnChunkBoundaryTakesNoExtraChunk() throws IOException {
+    byte[] data = bytes(8);
+    SegmentedBuffer buffer = SegmentedBuffer.newBuilder(new ChunkPool(4, 0))
+        .readFully(new ByteArrayInputStream(data))
+        .build();
+
+    assertEquals(2, buffer.asReadOnlyBuffers().length);
+    assertArrayEquals(data, buffer.toByteArray());
+  }
+
+  @Test
+  public void readFullyOfEmptyStreamTakesNoChunk() throws IOException {
+    SegmentedBuffer buffer = SegmentedBuffer.newBuilder(new ChunkPool(4, 0))
+        .readFully(new ByteArrayInputStream(new byte[0]))
+        .build();
+
+    assertEquals(0, buffer.size());
+    assertEquals(0, buffer.asReadOnlyBuffers().length);
+  }
+
+  @Test
+  public void readFromWithPartialReads() throws IOException {
+    byte[] data = bytes(11);
+    SegmentedBuffer buffer = SegmentedBuffer.newBuilder(new ChunkPool(4, 0))
+        .readFrom(trickle(data, 3), 11)
+        .build();
+
+    assertEquals(3, buffer.asReadOnlyBuffers().length);
+    assertArrayEquals(data, buffer.toByteArray());
+  }
+
+  @Test
+  public void readFullyReusesPooledChunks() throws IOException {
+    ChunkPool pool = new ChunkPool(4, 4);
+    byte[] chunk = new byte[4];
+    pool.release(chunk);
+    SegmentedBuffer.Builder builder = SegmentedBuffer.newBuilder(pool)
+        .readFully(new ByteArrayInputStream(new byte[0]));
+
+    // The chunk taken to probe the end of the stream went back to the pool.
+    assertEquals(0, builder.size());
+    assertSame(chunk, pool.acquire());
+  }
+}
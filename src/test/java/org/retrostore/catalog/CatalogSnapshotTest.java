@@ -0,0 +1,165 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.retrostore.catalog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.retrostore.client.common.proto.App;
+import org.retrostore.client.common.proto.AppNano;
+import org.retrostore.client.common.proto.Trs80Extension;
+import org.retrostore.client.common.proto.Trs80Model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class CatalogSnapshotTest {
+  private Path mDirectory;
+  private Path mFile;
+
+  @Before
+  public void setUp() throws IOException {
+    mDirectory = Files.createTempDirectory("snapshot-test");
+    mFile = mDirectory.resolve("catalog.snapshot");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(mFile);
+    Files.deleteIfExists(mDirectory);
+  }
+
+  private static List<App> apps() {
+    List<App> apps = new ArrayList<>();
+    for (int i = 0; i < 10; ++i) {
+      apps.add(App.newBuilder()
+          .setId("app-" + i)
+          .setName("App " + i)
+          .setVersion("1." + i)
+          .setDescription("Description " + i)
+          .setReleaseYear(1980 + i)
+          .addScreenshotUrl("http://example.com/" + i + ".png")
+          .setAuthor("Author " + i)
+          .setExtTrs80(Trs80Extension.newBuilder().setModel(Trs80Model.MODEL_III))
+          .build());
+    }
+    return apps;
+  }
+
+  private static AppNano nano(App app) {
+    return AppNano.newBuilder()
+        .setId(app.getId())
+        .setName(app.getName())
+        .setVersion(app.getVersion())
+        .setReleaseYear(app.getReleaseYear())
+        .setAuthor(app.getAuthor())
+        .setExtTrs80(app.getExtTrs80())
+        .build();
+  }
+
+  private void assertInvalid(byte[] bytes) throws IOException {
+    Files.write(mFile, bytes);
+    try {
+      CatalogSnapshot.open(mFile);
+      fail("Invalid snapshot was opened.");
+    } catch (IOException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void roundTripsApps() throws IOException {
+    List<App> apps = apps();
+    CatalogSnapshotWriter.writeApps(mFile, apps);
+
+    CatalogSnapshot snapshot = CatalogSnapshot.open(mFile);
+    assertEquals(CatalogSnapshot.RecordType.APP, snapshot.getRecordType());
+    assertEquals(apps.size(), snapshot.size());
+    for (int i = 0; i < apps.size(); ++i) {
+      assertEquals(apps.get(i), snapshot.getApp(i));
+      assertEquals(nano(apps.get(i)), snapshot.getAppNano(i));
+    }
+  }
+
+  @Test
+  public void roundTripsAppsNano() throws IOException {
+    List<AppNano> apps = new ArrayList<>();
+    for (App app : apps()) {
+      apps.add(nano(app));
+    }
+    CatalogSnapshotWriter.writeAppsNano(mFile, apps);
+
+    CatalogSnapshot snapshot = CatalogSnapshot.open(mFile);
+    assertEquals(CatalogSnapshot.RecordType.APP_NANO, snapshot.getRecordType());
+    assertEquals(apps.size(), snapshot.size());
+    for (int i = 0; i < apps.size(); ++i) {
+      assertEquals(apps.get(i), snapshot.getAppNano(i));
+    }
+  }
+
+  @Test
+  public void roundTripsEmptyCatalog() throws IOException {
+    CatalogSnapshotWriter.writeApps(mFile, new ArrayList<>());
+    assertEquals(0, CatalogSnapshot.open(mFile).size());
+  }
+
+  @Test
+  public void rejectsCorruptHeader() throws IOException {
+    CatalogSnapshotWriter.writeApps(mFile, apps());
+    byte[] valid = Files.readAllBytes(mFile);
+
+    assertInvalid(new byte[0]);
+    assertInvalid(new byte[CatalogSnapshot.HEADER_SIZE - 1]);
+    // Magic, version, record type and count, in that order.
+    for (int field = 0; field < 4; ++field) {
+      byte[] corrupt = valid.clone();
+      ByteBuffer.wrap(corrupt).putInt(field * 4, field == 3 ? Integer.MAX_VALUE : 0x7F7F7F7F);
+      assertInvalid(corrupt);
+    }
+    byte[] negativeCount = valid.clone();
+    ByteBuffer.wrap(negativeCount).putInt(12, -1);
+    assertInvalid(negativeCount);
+  }
+
+  @Test
+  public void rejectsCorruptIndexEntry() throws IOException {
+    CatalogSnapshotWriter.writeApps(mFile, apps());
+    byte[] bytes = Files.readAllBytes(mFile);
+    // An offset and length whose sum overflows an int.
+    ByteBuffer.wrap(bytes)
+        .putInt(CatalogSnapshot.HEADER_SIZE, Integer.MAX_VALUE - 10)
+        .putInt(CatalogSnapshot.HEADER_SIZE + 4, 100);
+    Files.write(mFile, bytes);
+
+    CatalogSnapshot snapshot = CatalogSnapshot.open(mFile);
+    assertEquals(apps().get(1), snapshot.getApp(1));
+    try {
+      snapshot.getRecord(0);
+      fail("Corrupt index entry was not detected.");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.disk;
+
+import org.junit.Test;
+import org.retrostore.ApiException;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DmkLayoutTest {
+  private static final int TRACK_LENGTH = 0x0400;
+  private static final int SINGLE_SIDED = 0x10;
+  private static final int DOUBLE_DENSITY = 0x8000;
+
+  /** Builds the raw tracks of an image, one sector at a time. */
+  private static final class Image {
+    private final byte[] mImage;
+    private final int mSides;
+    /** The next free byte per track and side, after the IDAM table. */
+    private final int[] mNext;
+
+    Image(int tracks, int flags) {
+      mSides = (flags & SINGLE_SIDED) != 0 ? 1 : 2;
+      mImage = new byte[DmkLayout.HEADER_SIZE + tracks * mSides * TRACK_LENGTH];
+      mImage[1] = (byte) tracks;
+      mImage[2] = (byte) TRACK_LENGTH;
+      mImage[3] = (byte) (TRACK_LENGTH >> 8);
+      mImage[4] = (byte) flags;
+      mNext = new int[tracks * mSides];
+    }
+
+    /**
+     * Adds a sector, with each byte stored `step` times as for single
+     * density, and optionally without its data field.
+     */
+    Image sector(int track, int side, int sector, byte[] data, int step, boolean withData) {
+      int trackStart = DmkLayout.HEADER_SIZE + (track * mSides + side) * TRACK_LENGTH;
+      int index = track * mSides + side;
+      int idam = Math.max(128, mNext[index]);
+      int slot = 0;
+      while (readUint16(trackStart + slot) != 0) {
+        slot += 2;
+      }
+      int pointer = idam | (step == 1 ? DOUBLE_DENSITY : 0);
+      mImage[trackStart + slot] = (byte) pointer;
+      mImage[trackStart + slot + 1] = (byte) (pointer >> 8);
+
+      int sizeCode = Integer.numberOfTrailingZeros(data.length / 128);
+      int[] id = {0xFE, track, side, sector, sizeCode, 0x12, 0x34};
+      int at = trackStart + idam;
+      for (int b : id) {
+        at = put(at, b, step);
+      }
+      for (int i = 0; i < 4; ++i) {
+        at = put(at, 0x4E, step);
+      }
+      if (withData) {
+        at = put(at, 0xFB, step);
+        for (byte b : data) {
+          at = put(at, b, step);
+        }
+      }
+      mNext[index] = at - trackStart + 8 * step;
+      return this;
+    }
+
+    Image sector(int track, int side, int sector, byte[] data) {
+      return sector(track, side, sector, data, 1, true);
+    }
+
+    private int put(int at, int value, int step) {
+      for (int i = 0; i < step; ++i) {
+        mImage[at++] = (byte) value;
+      }
+      return at;
+    }
+
+    private int readUint16(int at) {
+      return (mImage[at] & 0xFF) | (mImage[at + 1] & 0xFF) << 8;
+    }
+
+    byte[] build() {
+      return mImage;
+    }
+  }
+
+  @Test
+  public void detectsByHeader() {
+    byte[] image = new Image(40, 0).build();
+    DmkLayout layout = DmkLayout.detect(image, image.length);
+    assertNotNull(layout);
+    assertEquals(40, layout.trackCount());
+    assertEquals(2, layout.sideCount());
+
+    assertNull(DmkLayout.detect(image, image.length + 1));
+    image[0] = 0x12;
+    assertNull(DmkLayout.detect(image, image.length));
+  }
+
+  @Test
+  public void readsDoubleDensitySectors() throws ApiException {
+    byte[] image = new Image(2, SINGLE_SIDED)
+        .sector(1, 0, 2, FakeImage.pattern(256, 2))
+        .sector(1, 0, 0, FakeImage.pattern(256, 0))
+        .sector(1, 0, 1, FakeImage.pattern(128, 1))
+        .build();
+    RegionReader in = FakeImage.reader(image);
+    DmkLayout layout = DmkLayout.detect(in.head(), in.size());
+
+    Map<Integer, byte[]> track = layout.readTrack(in, 1, 0);
+    assertEquals(3, track.size());
+    assertArrayEquals(FakeImage.pattern(256, 0), track.get(0));
+    assertArrayEquals(FakeImage.pattern(128, 1), track.get(1));
+    assertArrayEquals(FakeImage.pattern(256, 2), track.get(2));
+    assertEquals(0, layout.readTrack(in, 0, 0).size());
+    assertEquals(0, layout.readTrack(in, 1, 1).size());
+  }
+
+  @Test
+  public void readsSingleDensitySectors() throws ApiException {
+    byte[] image = new Image(1, SINGLE_SIDED)
+        .sector(0, 0, 0, FakeImage.pattern(128, 0), 2, true)
+        .build();
+    RegionReader in = FakeImage.reader(image);
+
+    assertArrayEquals(FakeImage.pattern(128, 0),
+        DmkLayout.detect(in.head(), in.size()).readTrack(in, 0, 0).get(0));
+  }
+
+  @Test
+  public void skipsSectorsWithoutData() throws ApiException {
+    byte[] image = new Image(1, SINGLE_SIDED)
+        .sector(0, 0, 0, FakeImage.pattern(256, 0), 1, false)
+        .sector(0, 0, 1, FakeImage.pattern(256, 1))
+        .build();
+    RegionReader in = FakeImage.reader(image);
+
+    assertEquals(1,
+        DmkLayout.detect(in.head(), in.size()).sectorNumbers(in, 0, 0).first().intValue());
+  }
+
+  @Test
+  public void opensAsDisk() throws ApiException {
+    byte[] boot = new byte[256];
+    boot[2] = 1;
+    byte[] image = new Image(2, 0)
+        .sector(0, 0, 0, boot)
+        .sector(1, 0, 0, FakeImage.pattern(256, 1))
+        .sector(1, 1, 0, FakeImage.pattern(256, 2))
+        .build();
+    DiskImageReader disk = DiskImageReader.open(FakeImage.client(image),
+        FakeImage.ref("game.dmk", image));
+
+    assertEquals(DiskFormat.DMK, disk.getFormat());
+    assertEquals(1, disk.prefetchDirectoryTrack());
+    assertArrayEquals(FakeImage.pattern(256, 1), disk.readSector(1, 0, 0));
+    assertArrayEquals(FakeImage.pattern(256, 2), disk.readSector(1, 1, 0));
+  }
+
+  @Test
+  public void fetchesEachTrackOnce() throws ApiException {
+    // Large enough that track 30 lies beyond the bytes fetched on open.
+    byte[] image = new Image(40, 0)
+        .sector(30, 0, 0, FakeImage.pattern(256, 0))
+        .sector(30, 0, 1, FakeImage.pattern(256, 1))
+        .build();
+    AtomicInteger requests = new AtomicInteger();
+    DiskImageReader disk = DiskImageReader.open(FakeImage.client(image, requests),
+        FakeImage.ref("game.dmk", image));
+    int opened = requests.get();
+
+    assertEquals(2, disk.getSectorNumbers(30, 0).size());
+    assertEquals(opened + 1, requests.get());
+    assertEquals(2, disk.getSectorNumbers(30, 0).size());
+    assertArrayEquals(FakeImage.pattern(256, 1), disk.readSector(30, 0, 1));
+    assertNull(disk.readSector(30, 0, 5));
+    assertNull(disk.readSector(30, 0, 5));
+    assertEquals(opened + 1, requests.get());
+
+    assertNull(disk.readSector(31, 0, 0));
+    assertTrue(disk.getSectorNumbers(31, 0).isEmpty());
+    assertEquals(opened + 2, requests.get());
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.disk;
+
+import org.retrostore.ApiException;
+import org.retrostore.RetrostoreClient;
+import org.retrostore.client.common.proto.MediaImageRef;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Serves a synthetic disk image through a fake client. */
+final class FakeImage {
+  private FakeImage() {
+  }
+
+  /** A client that only answers region requests, from the given image. */
+  static RetrostoreClient client(byte[] image) {
+    return client(image, new AtomicInteger());
+  }
+
+  /** Like {@link #client(byte[])}, counting the region requests. */
+  static RetrostoreClient client(byte[] image, AtomicInteger requests) {
+    return (RetrostoreClient) Proxy.newProxyInstance(RetrostoreClient.class.getClassLoader(),
+        new Class<?>[]{RetrostoreClient.class}, (proxy, method, args) -> {
+          if (!method.getName().equals("fetchMediaImageRegion")) {
+            throw new UnsupportedOperationException(method.getName());
+          }
+          requests.incrementAndGet();
+          int start = (Integer) args[1];
+          int length = (Integer) args[2];
+          if (args.length == 3) {
+            return Arrays.copyOfRange(image, start, start + length);
+          }
+          System.arraycopy(image, start, args[3], (Integer) args[4], length);
+          return null;
+        });
+  }
+
+  static MediaImageRef ref(String filename, byte[] image) {
+    return MediaImageRef.newBuilder().setFilename(filename).setSize(image.length).build();
+  }
+
+  static RegionReader reader(byte[] image) throws ApiException {
+    return RegionReader.open(client(image), ref("disk.dsk", image), Jv3Layout.HEADER_SIZE);
+  }
+
+  /** Fills the given range with a pattern that identifies where it came from. */
+  static void fill(byte[] image, int offset, int length, int seed) {
+    for (int i = 0; i < length; ++i) {
+      image[offset + i] = (byte) (seed * 31 + i);
+    }
+  }
+
+  static byte[] pattern(int length, int seed) {
+    byte[] bytes = new byte[length];
+    fill(bytes, 0, length, seed);
+    return bytes;
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.disk;
+
+import org.junit.Test;
+import org.retrostore.ApiException;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class Jv1LayoutTest {
+  private static final int TRACK_SIZE = Jv1Layout.SECTOR_SIZE * Jv1Layout.SECTORS_PER_TRACK;
+
+  /** An image whose sectors are filled with a pattern seeded by their index. */
+  private static byte[] image(int tracks) {
+    byte[] image = new byte[tracks * TRACK_SIZE];
+    for (int sector = 0; sector < tracks * Jv1Layout.SECTORS_PER_TRACK; ++sector) {
+      FakeImage.fill(image, sector * Jv1Layout.SECTOR_SIZE, Jv1Layout.SECTOR_SIZE, sector);
+    }
+    return image;
+  }
+
+  @Test
+  public void detectsBySize() {
+    assertEquals(35, Jv1Layout.detect(35 * TRACK_SIZE).trackCount());
+    assertNull(Jv1Layout.detect(0));
+    assertNull(Jv1Layout.detect(35 * TRACK_SIZE + 1));
+  }
+
+  @Test
+  public void readsSectors() throws ApiException {
+    byte[] image = image(40);
+    RegionReader in = FakeImage.reader(image);
+    Jv1Layout layout = Jv1Layout.detect(in.size());
+
+    assertEquals(1, layout.sideCount());
+    assertEquals(10, layout.sectorNumbers(in, 17, 0).size());
+    assertArrayEquals(FakeImage.pattern(256, 17 * 10 + 3), layout.readSector(in, 17, 0, 3));
+    assertNull(layout.readSector(in, 17, 0, 10));
+    assertNull(layout.readSector(in, 17, 1, 0));
+    assertNull(layout.readSector(in, 40, 0, 0));
+  }
+
+  @Test
+  public void readsTracks() throws ApiException {
+    byte[] image = image(40);
+    RegionReader in = FakeImage.reader(image);
+    Map<Integer, byte[]> track = Jv1Layout.detect(in.size()).readTrack(in, 39, 0);
+
+    assertEquals(10, track.size());
+    assertArrayEquals(FakeImage.pattern(256, 39 * 10 + 9), track.get(9));
+  }
+
+  @Test
+  public void opensAsDisk() throws ApiException {
+    byte[] image = image(35);
+    DiskImageReader disk = DiskImageReader.open(FakeImage.client(image),
+        FakeImage.ref("game.jv1", image));
+
+    assertEquals(DiskFormat.JV1, disk.getFormat());
+    assertEquals(35, disk.getTrackCount());
+    assertArrayEquals(FakeImage.pattern(256, 21), disk.readSector(2, 0, 1));
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.disk;
+
+import org.junit.Test;
+import org.retrostore.ApiException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class Jv3LayoutTest {
+  /** The flags of a used 256-byte sector on side 0. */
+  private static final int USED_256 = 0x00;
+  private static final int SIDE_1 = 0x10;
+
+  /** Builds a single-block image. Every header is a {track, sector, flags} triple. */
+  private static final class Image {
+    private final byte[] mHeader = new byte[Jv3Layout.HEADER_SIZE];
+    private final ByteArrayOutputStream mData = new ByteArrayOutputStream();
+    private int mSlot;
+
+    Image() {
+      Arrays.fill(mHeader, 0, Jv3Layout.HEADER_SIZE - 1, (byte) 0xFF);
+    }
+
+    Image sector(int track, int sector, int flags, byte[] data) {
+      mHeader[mSlot * 3] = (byte) track;
+      mHeader[mSlot * 3 + 1] = (byte) sector;
+      mHeader[mSlot * 3 + 2] = (byte) flags;
+      mSlot++;
+      mData.write(data, 0, data.length);
+      return this;
+    }
+
+    Image sector(int track, int sector, byte[] data) {
+      return sector(track, sector, USED_256, data);
+    }
+
+    /** A free 256-byte sector, whose header is FF FF FF like an unused slot. */
+    Image free() {
+      return sector(0xFF, 0xFF, 0xFF, new byte[256]);
+    }
+
+    byte[] build() {
+      byte[] data = mData.toByteArray();
+      byte[] image = Arrays.copyOf(mHeader, mHeader.length + data.length);
+      System.arraycopy(data, 0, image, mHeader.length, data.length);
+      return image;
+    }
+  }
+
+  @Test
+  public void readsSectorsInHeaderOrder() throws ApiException {
+    byte[] image = new Image()
+        .sector(0, 1, FakeImage.pattern(256, 1))
+        .sector(0, 0, FakeImage.pattern(256, 0))
+        .sector(1, 0, 0x01, FakeImage.pattern(128, 2))
+        .build();
+    RegionReader in = FakeImage.reader(image);
+    Jv3Layout layout = Jv3Layout.detect(in);
+
+    assertNotNull(layout);
+    assertEquals(2, layout.trackCount());
+    assertEquals(1, layout.sideCount());
+    assertEquals(Arrays.asList(0, 1), Arrays.asList(layout.sectorNumbers(in, 0, 0).toArray()));
+    assertArrayEquals(FakeImage.pattern(256, 0), layout.readSector(in, 0, 0, 0));
+    assertArrayEquals(FakeImage.pattern(128, 2), layout.readSector(in, 1, 0, 0));
+    assertNull(layout.readSector(in, 1, 0, 1));
+
+    Map<Integer, byte[]> track = layout.readTrack(in, 0, 0);
+    assertArrayEquals(FakeImage.pattern(256, 1), track.get(1));
+  }
+
+  @Test
+  public void skipsFreeSectorsOfAllSizes() throws ApiException {
+    byte[] image = new Image()
+        .sector(0, 0, FakeImage.pattern(256, 0))
+        .free()
+        // A free 128-byte sector.
+        .sector(0xFF, 0xFF, 0xFE, new byte[128])
+        .sector(0, 1, FakeImage.pattern(256, 1))
+        .build();
+    RegionReader in = FakeImage.reader(image);
+    Jv3Layout layout = Jv3Layout.detect(in);
+
+    assertNotNull(layout);
+    assertArrayEquals(FakeImage.pattern(256, 1), layout.readSector(in, 0, 0, 1));
+  }
+
+  @Test
+  public void acceptsDataOfTrailingFreeSectors() throws ApiException {
+    byte[] image = new Image()
+        .sector(0, 0, FakeImage.pattern(256, 0))
+        .free()
+        .free()
+        .build();
+    assertNotNull(Jv3Layout.detect(FakeImage.reader(image)));
+    // Only part of the trailing free sectors are stored.
+    assertNotNull(Jv3Layout.detect(FakeImage.reader(Arrays.copyOf(image, image.length - 256))));
+    // Less than a sector is not.
+    assertNull(Jv3Layout.detect(FakeImage.reader(Arrays.copyOf(image, image.length - 100))));
+  }
+
+  @Test
+  public void readsSecondSide() throws ApiException {
+    byte[] image = new Image()
+        .sector(0, 0, FakeImage.pattern(256, 0))
+        .sector(0, 0, SIDE_1, FakeImage.pattern(256, 1))
+        .build();
+    RegionReader in = FakeImage.reader(image);
+    Jv3Layout layout = Jv3Layout.detect(in);
+
+    assertEquals(2, layout.sideCount());
+    assertArrayEquals(FakeImage.pattern(256, 1), layout.readSector(in, 0, 1, 0));
+  }
+
+  @Test
+  public void rejectsTruncatedImages() throws ApiException {
+    byte[] image = new Image()
+        .sector(0, 0, FakeImage.pattern(256, 0))
+        .sector(0, 1, FakeImage.pattern(256, 1))
+        .build();
+    assertNull(Jv3Layout.detect(FakeImage.reader(Arrays.copyOf(image, image.length - 1))));
+    assertNull(Jv3Layout.detect(FakeImage.reader(new byte[100])));
+  }
+
+  @Test
+  public void readsSecondBlock() throws ApiException {
+    Image first = new Image();
+    for (int i = 0; i < 2901; ++i) {
+      first.sector(i / 18, i % 18, 0x01, FakeImage.pattern(128, i));
+    }
+    byte[] second = new Image().sector(200, 5, FakeImage.pattern(256, 7)).build();
+    byte[] image = first.build();
+    image = Arrays.copyOf(image, image.length + second.length);
+    System.arraycopy(second, 0, image, image.length - second.length, second.length);
+    RegionReader in = FakeImage.reader(image);
+    Jv3Layout layout = Jv3Layout.detect(in);
+
+    assertNotNull(layout);
+    assertEquals(201, layout.trackCount());
+    assertArrayEquals(FakeImage.pattern(128, 2900), layout.readSector(in, 161, 0, 2));
+    assertArrayEquals(FakeImage.pattern(256, 7), layout.readSector(in, 200, 0, 5));
+  }
+
+  @Test
+  public void opensAsDisk() throws ApiException {
+    byte[] image = new Image()
+        .sector(0, 0, FakeImage.pattern(256, 0))
+        .free()
+        .sector(17, 0, FakeImage.pattern(256, 17))
+        .build();
+    DiskImageReader disk = DiskImageReader.open(FakeImage.client(image),
+        FakeImage.ref("game.dsk", image));
+
+    assertEquals(DiskFormat.JV3, disk.getFormat());
+    assertArrayEquals(FakeImage.pattern(256, 17), disk.readSector(17, 0, 0));
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.media;
+
+import org.junit.Test;
+import org.retrostore.buffer.SegmentedBuffer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ExportSinkTest {
+
+  private static SegmentedBuffer buffer(String content) {
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    return SegmentedBuffer.newBuilder().append(bytes, 0, bytes.length).build();
+  }
+
+  private static void write(ExportSink sink, String appId, String filename, String content)
+      throws IOException {
+    try (SegmentedBuffer data = buffer(content)) {
+      sink.write(appId, filename, data);
+    }
+  }
+
+  @Test
+  public void testZipEntriesAreUnique() throws IOException {
+    Path zipFile = Files.createTempFile("export", ".zip");
+    try {
+      try (ExportSink sink = ExportSink.toZip(zipFile)) {
+        write(sink, "app", "disk.dsk", "1");
+        write(sink, "app", "disk.dsk", "2");
+        write(sink, "app", "a/b", "3");
+        write(sink, "app", "a_b", "4");
+        write(sink, "app", "DISK.dsk", "5");
+      }
+      List<String> names = new ArrayList<>();
+      try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(zipFile))) {
+        for (ZipEntry entry; (entry = zip.getNextEntry()) != null; ) {
+          names.add(entry.getName());
+        }
+      }
+      assertEquals(List.of("app/disk.dsk", "app/disk_2.dsk", "app/a_b", "app/a_b_2",
+          "app/DISK_3.dsk"), names);
+    } finally {
+      Files.deleteIfExists(zipFile);
+    }
+  }
+
+  @Test
+  public void testDirectoryFilesAreNotOverwritten() throws IOException {
+    Path directory = Files.createTempDirectory("export");
+    try {
+      try (ExportSink sink = ExportSink.toDirectory(directory)) {
+        write(sink, "app", "cmd.cmd", "first");
+        write(sink, "app", "cmd.cmd", "second");
+      }
+      assertArrayEquals("first".getBytes(StandardCharsets.UTF_8),
+          Files.readAllBytes(directory.resolve("app/cmd.cmd")));
+      assertArrayEquals("second".getBytes(StandardCharsets.UTF_8),
+          Files.readAllBytes(directory.resolve("app/cmd_2.cmd")));
+    } finally {
+      try (Stream<Path> paths = Files.walk(directory)) {
+        paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+      }
+    }
+  }
+
+  @Test
+  public void testSafeNameCannotEscape() {
+    assertEquals("_..", ExportSink.safeName(".."));
+    assertEquals("_", ExportSink.safeName(""));
+    assertEquals(".._etc_passwd", ExportSink.safeName("../etc/passwd"));
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.media;
+
+import com.google.protobuf.GeneratedMessageLite;
+import org.junit.Test;
+import org.retrostore.net.ConditionalResponse;
+import org.retrostore.net.UrlFetcher;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ScreenshotLoaderTest {
+
+  /** A fetcher that only supports the GET request inherited from the interface. */
+  @SuppressWarnings("deprecation")
+  private static class PostOnlyFetcher implements UrlFetcher {
+    @Override
+    public byte[] fetchUrl(String url, byte[] body) throws IOException {
+      throw new IOException("Not supported.");
+    }
+
+    @Override
+    public byte[] fetchUrl(String url, GeneratedMessageLite<?, ?> obj) throws IOException {
+      throw new IOException("Not supported.");
+    }
+
+    @Override
+    public byte[] fetchUrl(String url, Object obj) throws IOException {
+      throw new IOException("Not supported.");
+    }
+  }
+
+  private static void assertFailsPromptly(CompletableFuture<byte[]> future)
+      throws InterruptedException {
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail("Expected the load to fail.");
+    } catch (ExecutionException e) {
+      // Expected.
+    } catch (TimeoutException e) {
+      fail("The load never completed.");
+    }
+  }
+
+  @Test
+  public void testCustomFetcherUsesDefaultGet() throws Exception {
+    Path file = Files.createTempFile("screenshot", ".png");
+    try {
+      Files.write(file, "pixels".getBytes(StandardCharsets.UTF_8));
+      try (ScreenshotLoader loader =
+               ScreenshotLoader.newBuilder().setUrlFetcher(new PostOnlyFetcher()).build()) {
+        byte[] data = loader.load(file.toUri().toString()).get(5, TimeUnit.SECONDS);
+        assertArrayEquals("pixels".getBytes(StandardCharsets.UTF_8), data);
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public void testCloseCompletesPendingLoads() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    UrlFetcher blocking = new PostOnlyFetcher() {
+      @Override
+      public ConditionalResponse fetchUrlIfModified(URL url, String eTag, String lastModified) {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return ConditionalResponse.modified(new byte[1], null, null);
+      }
+    };
+    ScreenshotLoader loader = ScreenshotLoader.newBuilder()
+        .setUrlFetcher(blocking)
+        .setMaxConcurrentLoads(1)
+        .build();
+    try {
+      CompletableFuture<byte[]> running = loader.load("http://example.com/1.png");
+      // Queued behind the running one, so it never starts.
+      CompletableFuture<byte[]> queued = loader.load("http://example.com/2.png");
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      loader.close();
+      assertFailsPromptly(running);
+      assertFailsPromptly(queued);
+      assertFailsPromptly(loader.load("http://example.com/3.png"));
+    } finally {
+      release.countDown();
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.net;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveChunkerTest {
+  private static final String ENDPOINT = "test";
+  private static final long TOTAL_BYTES = 16 * 1024 * 1024;
+
+  /** Feeds the chunker timings of a simulated link for a number of downloads. */
+  private static void simulate(AdaptiveChunker chunker, double rttSeconds,
+                               double bytesPerSecond, double jitterSeconds) {
+    Random random = new Random(42);
+    for (int download = 0; download < 64; ++download) {
+      AdaptiveChunker.Plan plan = chunker.plan(ENDPOINT, TOTAL_BYTES);
+      int p = plan.getParallelism();
+      for (int i = 0; i < p; ++i) {
+        double seconds = rttSeconds + (double) plan.getChunkSize() * p / bytesPerSecond
+            + random.nextDouble() * jitterSeconds;
+        chunker.record(ENDPOINT, plan.getChunkSize(), (long) (seconds * 1e9), p);
+      }
+    }
+  }
+
+  /** Asserts that most plans use a chunk size within a factor of two of the given one. */
+  private static void assertConverged(AdaptiveChunker chunker, int chunkSize) {
+    int matching = 0;
+    for (int i = 0; i < 16; ++i) {
+      int planned = chunker.plan(ENDPOINT, TOTAL_BYTES).getChunkSize();
+      if (planned >= chunkSize / 2 && planned <= chunkSize * 2) {
+        ++matching;
+      }
+    }
+    // Only the occasional probe may be off.
+    assertTrue("Only " + matching + " of 16 plans converged", matching >= 14);
+  }
+
+  @Test
+  public void testUnknownEndpointUsesInitialChunkSize() {
+    AdaptiveChunker chunker = AdaptiveChunker.newBuilder().setInitialChunkSize(32 * 1024).build();
+    assertEquals(-1, chunker.getBandwidthDelayProduct(ENDPOINT), 0);
+    assertEquals(32 * 1024, chunker.plan(ENDPOINT, TOTAL_BYTES).getChunkSize());
+  }
+
+  @Test
+  public void testEqualChunksDoNotInflateEstimate() {
+    AdaptiveChunker chunker = AdaptiveChunker.newBuilder().build();
+    Random random = new Random(1);
+    for (int i = 0; i < 16; ++i) {
+      double seconds = 0.05 + 65536 / 10e6 + random.nextDouble() * 0.002;
+      chunker.record(ENDPOINT, 65536, (long) (seconds * 1e9), 1);
+    }
+    // A single size class cannot be fitted; the chunker has to probe instead.
+    assertEquals(-1, chunker.getBandwidthDelayProduct(ENDPOINT), 0);
+  }
+
+  @Test
+  public void testConvergesOnWan() {
+    // 50 ms at 10 MB/s: a bandwidth-delay product of 500 KB.
+    AdaptiveChunker chunker = AdaptiveChunker.newBuilder().build();
+    simulate(chunker, 0.05, 10e6, 0.002);
+    assertEquals(500_000, chunker.getBandwidthDelayProduct(ENDPOINT), 100_000);
+    assertConverged(chunker, 500_000);
+  }
+
+  @Test
+  public void testConvergesOnLan() {
+    // 0.5 ms at 100 MB/s: a bandwidth-delay product of 50 KB.
+    AdaptiveChunker chunker = AdaptiveChunker.newBuilder().build();
+    simulate(chunker, 0.0005, 100e6, 0.00002);
+    assertEquals(50_000, chunker.getBandwidthDelayProduct(ENDPOINT), 10_000);
+    assertConverged(chunker, 50_000);
+  }
+
+  @Test
+  public void testSatelliteIsClampedToMaximum() {
+    // 600 ms at 5 MB/s: a bandwidth-delay product of 3 MB, above the maximum.
+    AdaptiveChunker chunker = AdaptiveChunker.newBuilder()
+        .setChunkSizeBounds(4096, 1024 * 1024)
+        .build();
+    simulate(chunker, 0.6, 5e6, 0.01);
+    assertEquals(3_000_000, chunker.getBandwidthDelayProduct(ENDPOINT), 600_000);
+    assertConverged(chunker, 1024 * 1024);
+    // The rest of the pipe is filled with parallel requests.
+    AdaptiveChunker.Plan plan = chunker.plan(ENDPOINT, TOTAL_BYTES);
+    assertTrue(plan.toString(), plan.getParallelism() >= 4);
+  }
+
+  @Test
+  public void testFollowsLinkChange() {
+    // The WAN link of testConvergesOnWan turns into the LAN link of testConvergesOnLan.
+    AdaptiveChunker chunker = AdaptiveChunker.newBuilder().build();
+    simulate(chunker, 0.05, 10e6, 0.002);
+    simulate(chunker, 0.0005, 100e6, 0.00002);
+    assertEquals(50_000, chunker.getBandwidthDelayProduct(ENDPOINT), 10_000);
+    assertConverged(chunker, 50_000);
+  }
+
+  @Test
+  public void testParallelismIsLimitedByChunkCount() {
+    AdaptiveChunker chunker = AdaptiveChunker.newBuilder().setInitialChunkSize(1024).build();
+    assertEquals(1, chunker.plan(ENDPOINT, 1000).getParallelism());
+  }
+}
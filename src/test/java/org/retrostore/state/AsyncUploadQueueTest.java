@@ -0,0 +1,117 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.state;
+
+import org.junit.Test;
+import org.retrostore.ApiException;
+import org.retrostore.RetrostoreClient;
+import org.retrostore.client.common.proto.SystemState;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class AsyncUploadQueueTest {
+  private static final SystemState STATE = SystemState.getDefaultInstance();
+
+  private static RetrostoreClient client() {
+    return (RetrostoreClient) Proxy.newProxyInstance(RetrostoreClient.class.getClassLoader(),
+        new Class<?>[]{RetrostoreClient.class}, (proxy, method, args) -> {
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+
+  @Test
+  public void failingListenerDoesNotStopTheSlot() throws Exception {
+    AtomicLong uploads = new AtomicLong();
+    AsyncUploadQueue queue = AsyncUploadQueue.newBuilder(client())
+        .setUploader(state -> {
+          if (uploads.incrementAndGet() == 1) {
+            throw new ApiException("Server reported error: 'Busy'");
+          }
+          return uploads.get();
+        })
+        .setListener(new AsyncUploadQueue.Listener() {
+          @Override
+          public void onUploaded(String slot, long token) {
+            throw new IllegalStateException("Listener bug.");
+          }
+
+          @Override
+          public void onFailed(String slot, ApiException e) {
+            throw new IllegalStateException("Listener bug.");
+          }
+        })
+        .build();
+    try {
+      try {
+        queue.submit("auto", STATE).get(5, TimeUnit.SECONDS);
+        fail("The first upload must fail.");
+      } catch (ExecutionException e) {
+        assertEquals(ApiException.class, e.getCause().getClass());
+      }
+      // Give the listener time to throw before submitting again.
+      Thread.sleep(50);
+      assertEquals(2L, (long) queue.submit("auto", STATE).get(5, TimeUnit.SECONDS));
+      assertEquals(3L, (long) queue.submit("auto", STATE).get(5, TimeUnit.SECONDS));
+    } finally {
+      queue.close();
+    }
+  }
+
+  @Test
+  public void runtimeFailuresReachTheListener() throws Exception {
+    IllegalArgumentException failure = new IllegalArgumentException("Broken state.");
+    List<ApiException> failures = new CopyOnWriteArrayList<>();
+    AsyncUploadQueue queue = AsyncUploadQueue.newBuilder(client())
+        .setUploader(state -> {
+          throw failure;
+        })
+        .setListener(new AsyncUploadQueue.Listener() {
+          @Override
+          public void onUploaded(String slot, long token) {
+          }
+
+          @Override
+          public void onFailed(String slot, ApiException e) {
+            failures.add(e);
+          }
+        })
+        .build();
+    try {
+      queue.submit("auto", STATE).get(5, TimeUnit.SECONDS);
+      fail("The upload must fail.");
+    } catch (ExecutionException e) {
+      assertSame(failure, e.getCause());
+    } finally {
+      queue.close();
+    }
+    // The listener is called after the futures complete.
+    for (int i = 0; i < 100 && failures.isEmpty(); ++i) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, failures.size());
+    assertSame(failure, failures.get(0).getCause());
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.retrostore.wire;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import org.junit.Test;
+import org.retrostore.client.common.proto.ApiResponseApps;
+import org.retrostore.client.common.proto.ApiResponseMediaImages;
+import org.retrostore.client.common.proto.App;
+import org.retrostore.client.common.proto.MediaImage;
+import org.retrostore.client.common.proto.MediaType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ApiResponseStreamReaderTest {
+
+  private static App app(int i) {
+    return App.newBuilder()
+        .setId("app-" + i)
+        .setName("Grüne Höhle " + i)
+        .setDescription("An adventure")
+        .setReleaseYear(1980 + i)
+        .addScreenshotUrl("http://example.com/" + i + ".png")
+        .setAuthor("Author " + i)
+        .build();
+  }
+
+  private static MediaImage image(int i) {
+    byte[] data = new byte[1000 * (i + 1)];
+    Arrays.fill(data, (byte) i);
+    return MediaImage.newBuilder()
+        .setType(MediaType.DISK)
+        .setFilename("disk" + i + ".dsk")
+        .setData(ByteString.copyFrom(data))
+        .setUploadTime(1_500_000_000_000L + i)
+        .build();
+  }
+
+  /** Fields no version of the API defines, one of each wire type. */
+  private static byte[] unknownFields() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+    out.writeUInt64(15, 1L << 40);
+    out.writeByteArray(16, new byte[300]);
+    out.writeFixed64(17, 42);
+    out.writeFixed32(18, 7);
+    out.writeGroup(19, App.newBuilder().setId("group").build());
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static byte[] concat(byte[]... parts) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    for (byte[] part : parts) {
+      bytes.write(part, 0, part.length);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static <T extends MessageLite> List<T> drain(ApiResponseStreamReader<T> reader) {
+    List<T> entries = new ArrayList<>();
+    while (reader.hasNext()) {
+      entries.add(reader.next());
+    }
+    return entries;
+  }
+
+  @Test
+  public void readsApps() throws IOException {
+    ApiResponseApps.Builder response = ApiResponseApps.newBuilder().setSuccess(true);
+    for (int i = 0; i < 5; ++i) {
+      response.addApp(app(i));
+    }
+    byte[] bytes = response.build().toByteArray();
+
+    try (ApiResponseStreamReader<App> reader =
+             ApiResponseStreamReader.forApps(new ByteArrayInputStream(bytes))) {
+      assertEquals(ApiResponseApps.parseFrom(bytes).getAppList(), drain(reader));
+      assertTrue(reader.isSuccess());
+      assertEquals("", reader.getMessage());
+    }
+  }
+
+  @Test
+  public void readsMediaImages() throws IOException {
+    byte[] bytes = ApiResponseMediaImages.newBuilder()
+        .setSuccess(true)
+        .setMessage("ok")
+        .addMediaImage(image(0))
+        .addMediaImage(image(1))
+        .build()
+        .toByteArray();
+
+    try (ApiResponseStreamReader<MediaImage> reader =
+             ApiResponseStreamReader.forMediaImages(new ByteArrayInputStream(bytes))) {
+      assertEquals(ApiResponseMediaImages.parseFrom(bytes).getMediaImageList(), drain(reader));
+      assertTrue(reader.isSuccess());
+      assertEquals("ok", reader.getMessage());
+    }
+  }
+
+  @Test
+  public void readsFailureResponse() throws IOException {
+    byte[] bytes = ApiResponseMediaImages.newBuilder()
+        .setMessage("Unknown app ID")
+        .build()
+        .toByteArray();
+
+    try (ApiResponseStreamReader<MediaImage> reader =
+             ApiResponseStreamReader.forMediaImages(new ByteArrayInputStream(bytes))) {
+      assertTrue(drain(reader).isEmpty());
+      assertFalse(reader.isSuccess());
+      assertEquals(ApiResponseMediaImages.parseFrom(bytes).getMessage(), reader.getMessage());
+    }
+  }
+
+  @Test
+  public void skipsUnknownFields() throws IOException {
+    // Concatenated messages merge, so the entries of both parts are listed.
+    byte[] bytes = concat(
+        unknownFields(),
+        ApiResponseApps.newBuilder().setSuccess(true).addApp(app(0)).build().toByteArray(),
+        unknownFields(),
+        ApiResponseApps.newBuilder().setMessage("more").addApp(app(1)).build().toByteArray(),
+        unknownFields());
+    ApiResponseApps parsed = ApiResponseApps.parseFrom(bytes);
+
+    try (ApiResponseStreamReader<App> reader =
+             ApiResponseStreamReader.forApps(new ByteArrayInputStream(bytes))) {
+      assertEquals(parsed.getAppList(), drain(reader));
+      assertEquals(parsed.getSuccess(), reader.isSuccess());
+      assertEquals(parsed.getMessage(), reader.getMessage());
+    }
+  }
+
+  @Test
+  public void failsOnTruncatedEntry() throws IOException {
+    byte[] bytes = ApiResponseMediaImages.newBuilder()
+        .setSuccess(true)
+        .addMediaImage(image(0))
+        .addMediaImage(image(1))
+        .build()
+        .toByteArray();
+    byte[] truncated = Arrays.copyOf(bytes, bytes.length - 10);
+
+    try (ApiResponseStreamReader<MediaImage> reader =
+             ApiResponseStreamReader.forMediaImages(new ByteArrayInputStream(truncated))) {
+      assertEquals(image(0), reader.next());
+      try {
+        reader.hasNext();
+        fail("Truncated entry was not detected.");
+      } catch (UncheckedIOException e) {
+        // Expected.
+      }
+    }
+  }
+}
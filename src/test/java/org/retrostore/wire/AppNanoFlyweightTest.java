@@ -0,0 +1,188 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.retrostore.wire;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.junit.Test;
+import org.retrostore.client.common.proto.ApiResponseAppsNano;
+import org.retrostore.client.common.proto.AppNano;
+import org.retrostore.client.common.proto.Trs80Extension;
+import org.retrostore.client.common.proto.Trs80Model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AppNanoFlyweightTest {
+
+  private static List<AppNano> apps() {
+    char[] longName = new char[300];
+    Arrays.fill(longName, 'x');
+    return Arrays.asList(
+        AppNano.newBuilder()
+            .setId("a1")
+            .setName("Dancing Demon")
+            .setVersion("1.0")
+            .setReleaseYear(1979)
+            .setAuthor("Leo Christopherson")
+            .setExtTrs80(Trs80Extension.newBuilder().setModel(Trs80Model.MODEL_I))
+            .build(),
+        AppNano.newBuilder()
+            .setId("a2")
+            .setName("Höhlen 日本 🎮")
+            .setAuthor("Jürgen")
+            .setReleaseYear(-1)
+            .build(),
+        // A name longer than 127 bytes has a multi-byte length prefix.
+        AppNano.newBuilder()
+            .setId("a3")
+            .setName(new String(longName))
+            .setExtTrs80(Trs80Extension.getDefaultInstance())
+            .build());
+  }
+
+  private static List<AppNano> readAll(AppNanoFlyweight flyweight)
+      throws InvalidProtocolBufferException {
+    List<AppNano> apps = new ArrayList<>();
+    while (flyweight.next()) {
+      AppNano app = flyweight.toAppNano();
+      assertEquals(app.getId(), flyweight.getIdView().toString());
+      assertEquals(app.getName(), flyweight.getNameView().toString());
+      assertEquals(app.getName().length(), flyweight.getNameView().length());
+      apps.add(app);
+    }
+    return apps;
+  }
+
+  /** Fields no version of the API defines, one of each wire type except groups. */
+  private static byte[] unknownFields() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+    out.writeUInt64(15, 1L << 40);
+    out.writeByteArray(16, new byte[200]);
+    out.writeFixed64(17, 42);
+    out.writeFixed32(18, 7);
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  @Test
+  public void readsLikeParseFrom() throws IOException {
+    byte[] bytes = ApiResponseAppsNano.newBuilder()
+        .setSuccess(true)
+        .setMessage("Grüße")
+        .addAllApp(apps())
+        .build()
+        .toByteArray();
+    ApiResponseAppsNano parsed = ApiResponseAppsNano.parseFrom(bytes);
+
+    AppNanoFlyweight flyweight = AppNanoFlyweight.of(bytes);
+    assertTrue(flyweight.isSuccess());
+    assertEquals(parsed.getMessage(), flyweight.getMessage());
+    assertEquals(3, flyweight.getAppCount());
+    assertEquals(parsed.getAppList(), readAll(flyweight));
+
+    flyweight.rewind();
+    assertTrue(flyweight.next());
+    assertEquals(1979, flyweight.getReleaseYear());
+    assertEquals(Trs80Model.MODEL_I, flyweight.getModel());
+  }
+
+  @Test
+  public void readsFromBufferPosition() throws IOException {
+    byte[] response = ApiResponseAppsNano.newBuilder()
+        .setSuccess(true)
+        .addAllApp(apps())
+        .build()
+        .toByteArray();
+    byte[] padded = new byte[response.length + 20];
+    System.arraycopy(response, 0, padded, 10, response.length);
+    ByteBuffer buffer = ByteBuffer.wrap(padded, 10, response.length);
+
+    assertEquals(apps(), readAll(AppNanoFlyweight.of(buffer)));
+    assertEquals(10, buffer.position());
+  }
+
+  @Test
+  public void skipsUnknownFields() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+    out.writeBool(ApiResponseAppsNano.SUCCESS_FIELD_NUMBER, true);
+    out.writeRawBytes(unknownFields());
+    for (AppNano app : apps()) {
+      byte[] record = app.toByteArray();
+      byte[] extended = Arrays.copyOf(record, record.length + unknownFields().length);
+      System.arraycopy(unknownFields(), 0, extended, record.length, unknownFields().length);
+      out.writeByteArray(ApiResponseAppsNano.APP_FIELD_NUMBER, extended);
+      out.writeRawBytes(unknownFields());
+    }
+    out.flush();
+
+    AppNanoFlyweight flyweight = AppNanoFlyweight.of(bytes.toByteArray());
+    assertTrue(flyweight.isSuccess());
+    assertEquals(3, flyweight.getAppCount());
+    assertEquals(apps(), readAll(flyweight));
+    assertEquals(3, ApiResponseAppsNano.parseFrom(bytes.toByteArray()).getAppCount());
+  }
+
+  @Test
+  public void rejectsTruncatedInputLikeParseFrom() throws IOException {
+    byte[] bytes = ApiResponseAppsNano.newBuilder()
+        .setSuccess(true)
+        .addAllApp(apps())
+        .build()
+        .toByteArray();
+    // A cut at a field boundary leaves a valid, shorter response.
+    for (int length = 0; length < bytes.length; ++length) {
+      byte[] truncated = Arrays.copyOf(bytes, length);
+      List<AppNano> expected;
+      try {
+        expected = ApiResponseAppsNano.parseFrom(truncated).getAppList();
+      } catch (InvalidProtocolBufferException e) {
+        expected = null;
+      }
+      try {
+        List<AppNano> actual = readAll(AppNanoFlyweight.of(truncated));
+        if (expected == null) {
+          fail("Truncation to " + length + " bytes was not detected.");
+        }
+        assertEquals(expected, actual);
+      } catch (InvalidProtocolBufferException e) {
+        assertTrue("Valid prefix of " + length + " bytes was rejected.", expected == null);
+      }
+    }
+  }
+
+  @Test
+  public void emptyResponse() throws IOException {
+    AppNanoFlyweight flyweight = AppNanoFlyweight.of(new byte[0]);
+    assertFalse(flyweight.isSuccess());
+    assertEquals("", flyweight.getMessage());
+    assertEquals(0, flyweight.getAppCount());
+    assertFalse(flyweight.next());
+  }
+}
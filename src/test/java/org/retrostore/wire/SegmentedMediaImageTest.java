@@ -0,0 +1,50 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.retrostore.wire;
+
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+import org.retrostore.buffer.ChunkPool;
+import org.retrostore.buffer.SegmentedBuffer;
+import org.retrostore.client.common.proto.MediaImage;
+import org.retrostore.client.common.proto.MediaType;
+
+import static org.junit.Assert.assertEquals;
+
+public class SegmentedMediaImageTest {
+
+  @Test
+  public void toMediaImageKeepsDataAndMetadata() {
+    byte[] data = new byte[10_000];
+    for (int i = 0; i < data.length; ++i) {
+      data[i] = (byte) (i * 7);
+    }
+    MediaImage metadata = MediaImage.newBuilder()
+        .setType(MediaType.DISK)
+        .setFilename("game.dsk")
+        .setUploadTime(1234)
+        .build();
+    SegmentedBuffer buffer = SegmentedBuffer.newBuilder(new ChunkPool(4096, 0))
+        .append(data, 0, data.length)
+        .build();
+
+    try (SegmentedMediaImage image = new SegmentedMediaImage(metadata, buffer)) {
+      assertEquals(metadata.toBuilder().setData(ByteString.copyFrom(data)).build(),
+          image.toMediaImage());
+    }
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.retrostore.wire;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import org.junit.Test;
+import org.retrostore.buffer.ChunkPool;
+import org.retrostore.buffer.SegmentedBuffer;
+import org.retrostore.client.common.proto.AppNano;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class StreamWireReaderTest {
+  private static final long[] VARINTS = {0, 1, 127, 128, 300, 1L << 40, -1};
+
+  private interface Writer {
+    void write(CodedOutputStream out) throws IOException;
+  }
+
+  private static byte[] encode(Writer writer) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+    writer.write(out);
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static StreamWireReader reader(byte[] bytes) {
+    return new StreamWireReader(new ByteArrayInputStream(bytes));
+  }
+
+  private static int tag(int fieldNumber, int wireType) {
+    return (fieldNumber << 3) | wireType;
+  }
+
+  @Test
+  public void readsVarints() throws IOException {
+    byte[] bytes = encode(out -> {
+      for (int i = 0; i < VARINTS.length; ++i) {
+        out.writeUInt64(i + 1, VARINTS[i]);
+      }
+      // Field numbers above 15 have multi-byte tags.
+      out.writeUInt64(1000, 5);
+    });
+    StreamWireReader in = reader(bytes);
+    for (int i = 0; i < VARINTS.length; ++i) {
+      assertEquals(tag(i + 1, WireFormat.WIRETYPE_VARINT), in.readTag());
+      assertEquals(VARINTS[i], in.readVarint());
+    }
+    assertEquals(tag(1000, WireFormat.WIRETYPE_VARINT), in.readTag());
+    assertEquals(5, in.readVarint());
+    assertEquals(0, in.readTag());
+    assertEquals(bytes.length, in.getPosition());
+  }
+
+  @Test
+  public void readsStringsAndBytes() throws IOException {
+    byte[] data = new byte[20_000];
+    for (int i = 0; i < data.length; ++i) {
+      data[i] = (byte) (i * 13);
+    }
+    byte[] bytes = encode(out -> {
+      out.writeString(1, "Höhle 🎮");
+      out.writeByteArray(2, data);
+    });
+    StreamWireReader in = reader(bytes);
+    assertEquals(tag(1, WireFormat.WIRETYPE_LENGTH_DELIMITED), in.readTag());
+    assertEquals("Höhle 🎮", in.readString());
+    assertEquals(tag(2, WireFormat.WIRETYPE_LENGTH_DELIMITED), in.readTag());
+    SegmentedBuffer.Builder builder = SegmentedBuffer.newBuilder(new ChunkPool(4096, 0));
+    in.readBytes(builder);
+    try (SegmentedBuffer buffer = builder.build()) {
+      assertArrayEquals(data, buffer.toByteArray());
+    }
+    assertEquals(0, in.readTag());
+    assertEquals(bytes.length, in.getPosition());
+  }
+
+  @Test
+  public void skipsFields() throws IOException {
+    byte[] bytes = encode(out -> {
+      out.writeUInt64(1, -1);
+      out.writeFixed64(2, 42);
+      out.writeByteArray(3, new byte[20_000]);
+      out.writeFixed32(4, 7);
+      out.writeMessage(5, AppNano.newBuilder().setId("skipped").build());
+      out.writeString(6, "kept");
+    });
+    StreamWireReader in = reader(bytes);
+    for (int i = 0; i < 5; ++i) {
+      in.skipField(in.readTag());
+    }
+    assertEquals(tag(6, WireFormat.WIRETYPE_LENGTH_DELIMITED), in.readTag());
+    assertEquals("kept", in.readString());
+    assertEquals(bytes.length, in.getPosition());
+  }
+
+  @Test
+  public void rejectsGroups() throws IOException {
+    byte[] bytes = encode(out -> out.writeGroup(1, AppNano.getDefaultInstance()));
+    StreamWireReader in = reader(bytes);
+    try {
+      in.skipField(in.readTag());
+      fail("Group was skipped.");
+    } catch (InvalidProtocolBufferException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void detectsTruncation() throws IOException {
+    byte[] varint = encode(out -> out.writeUInt64(1, 1L << 40));
+    byte[] string = encode(out -> out.writeString(1, "truncated"));
+    byte[] fixed = encode(out -> out.writeFixed64(1, 42));
+    byte[] bytes = encode(out -> out.writeByteArray(1, new byte[100]));
+
+    StreamWireReader in = reader(Arrays.copyOf(varint, varint.length - 1));
+    assertTruncated(() -> {
+      in.readTag();
+      in.readVarint();
+    });
+    StreamWireReader stringIn = reader(Arrays.copyOf(string, string.length - 1));
+    assertTruncated(() -> {
+      stringIn.readTag();
+      stringIn.readString();
+    });
+    StreamWireReader fixedIn = reader(Arrays.copyOf(fixed, fixed.length - 1));
+    assertTruncated(() -> fixedIn.skipField(fixedIn.readTag()));
+    StreamWireReader bytesIn = reader(Arrays.copyOf(bytes, bytes.length - 1));
+    assertTruncated(() -> {
+      bytesIn.readTag();
+      bytesIn.readBytes(SegmentedBuffer.newBuilder(new ChunkPool(64, 0)));
+    });
+  }
+
+  private interface Read {
+    void run() throws IOException;
+  }
+
+  private static void assertTruncated(Read read) throws IOException {
+    try {
+      read.run();
+      fail("Truncation was not detected.");
+    } catch (EOFException e) {
+      // Expected.
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2026, Sascha Häberling
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.retrostore.wire;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class Utf8CharSequenceTest {
+
+  /** Places the bytes in the middle of a larger buffer and returns a view of them. */
+  private static Utf8CharSequence view(Utf8CharSequence sequence, byte[] bytes) {
+    byte[] padded = new byte[bytes.length + 8];
+    padded[0] = 'x';
+    System.arraycopy(bytes, 0, padded, 4, bytes.length);
+    sequence.set(ByteBuffer.wrap(padded), 4, bytes.length);
+    return sequence;
+  }
+
+  private static void assertDecodes(String expected, byte[] bytes) {
+    Utf8CharSequence sequence = view(new Utf8CharSequence(), bytes);
+    assertEquals(expected, sequence.toString());
+    assertEquals(expected.length(), sequence.length());
+    for (int i = 0; i < expected.length(); ++i) {
+      assertEquals(expected.charAt(i), sequence.charAt(i));
+    }
+  }
+
+  private static void assertDecodes(String text) {
+    assertDecodes(text, text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void decodesAscii() {
+    assertDecodes("");
+    assertDecodes("Dancing Demon");
+  }
+
+  @Test
+  public void decodesMultiByteSequences() {
+    // Two, three and four bytes per code point, the last one as a surrogate pair.
+    assertDecodes("Müller");
+    assertDecodes("日本語");
+    assertDecodes("play 🎮 now");
+  }
+
+  @Test
+  public void replacesMalformedInput() {
+    // A lone continuation byte, a missing continuation byte and a cut-off sequence.
+    assertDecodes("a�b", new byte[]{'a', (byte) 0x80, 'b'});
+    assertDecodes("�b", new byte[]{(byte) 0xC3, 'b'});
+    assertDecodes("a�", new byte[]{'a', (byte) 0xE6, (byte) 0x97});
+  }
+
+  @Test
+  public void reusesInstance() {
+    Utf8CharSequence sequence = new Utf8CharSequence();
+    assertEquals("日本語",
+        view(sequence, "日本語".getBytes(StandardCharsets.UTF_8)).toString());
+    assertEquals("ab", view(sequence, "ab".getBytes(StandardCharsets.UTF_8)).toString());
+    assertEquals("ü", view(sequence, "ü".getBytes(StandardCharsets.UTF_8)).toString());
+    sequence.clear();
+    assertEquals(0, sequence.length());
+    assertEquals("", sequence.toString());
+  }
+
+  @Test
+  public void subSequence() {
+    Utf8CharSequence sequence =
+        view(new Utf8CharSequence(), "Müller".getBytes(StandardCharsets.UTF_8));
+    assertEquals("ül", sequence.subSequence(1, 3).toString());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void charAtPastEnd() {
+    view(new Utf8CharSequence(), "ab".getBytes(StandardCharsets.UTF_8)).charAt(2);
+  }
+}